@@ -0,0 +1,40 @@
+package com.devik.config;
+
+import com.devik.service.embedder.CachingEmbeddingService;
+import com.devik.service.embedder.CoalescingEmbeddingService;
+import com.devik.service.embedder.LocalEmbedderService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class EmbeddingConfig {
+
+    private static final long MB = 1024 * 1024;
+
+    /**
+     * Page text from the crawl; goes through the coalescer so cache misses are still batched
+     */
+    @Bean
+    public CachingEmbeddingService documentEmbeddings(
+            CoalescingEmbeddingService coalescingEmbeddingService,
+            @Value("${crawler.embedder.cache.document.memory-mb:256}") long memoryMb,
+            @Value("${crawler.embedder.cache.document.disk-path:}") String diskPath,
+            @Value("${crawler.embedder.cache.document.disk-max-mb:4096}") long diskMaxMb
+    ) {
+        return new CachingEmbeddingService("document", coalescingEmbeddingService, memoryMb * MB, diskPath, diskMaxMb * MB);
+    }
+
+    /**
+     * Search queries; sent straight to the embedder so they never wait for a batch window
+     */
+    @Bean
+    public CachingEmbeddingService queryEmbeddings(
+            LocalEmbedderService localEmbedderService,
+            @Value("${crawler.embedder.cache.query.memory-mb:32}") long memoryMb,
+            @Value("${crawler.embedder.cache.query.disk-path:}") String diskPath,
+            @Value("${crawler.embedder.cache.query.disk-max-mb:256}") long diskMaxMb
+    ) {
+        return new CachingEmbeddingService("query", localEmbedderService, memoryMb * MB, diskPath, diskMaxMb * MB);
+    }
+}
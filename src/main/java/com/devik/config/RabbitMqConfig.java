@@ -1,7 +1,15 @@
 package com.devik.config;
 
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -12,4 +20,71 @@ public class RabbitMqConfig {
     public Queue crawlTasksQueue(@Value("${crawler.queue.name}") String queueName) {
         return new Queue(queueName, false, false, true);
     }
+
+    /**
+     * Fetched pages waiting for the index stage; durable, since a lost page is not fetched again.
+     * Rejected pages are dead-lettered to the parking queue instead of being dropped.
+     */
+    @Bean
+    public Queue crawlResultsQueue(@Value("${crawler.pipeline.results-queue:crawl-results}") String queueName) {
+        return QueueBuilder.durable(queueName)
+                .deadLetterExchange(deadLetterExchangeName(queueName))
+                .build();
+    }
+
+    @Bean
+    public DirectExchange crawlResultsDeadLetterExchange(@Value("${crawler.pipeline.results-queue:crawl-results}") String queueName) {
+        return new DirectExchange(deadLetterExchangeName(queueName), true, false);
+    }
+
+    /**
+     * Pages the index stage could not read or index, kept until they are moved back for another try
+     */
+    @Bean
+    public Queue crawlResultsParkingQueue(@Value("${crawler.pipeline.parked-queue:crawl-results.parked}") String queueName) {
+        return new Queue(queueName, true);
+    }
+
+    @Bean
+    public Binding crawlResultsParkingBinding(@Qualifier("crawlResultsParkingQueue") Queue parkingQueue,
+                                              @Qualifier("crawlResultsDeadLetterExchange") DirectExchange deadLetterExchange,
+                                              @Value("${crawler.pipeline.results-queue:crawl-results}") String queueName) {
+        // Dead-lettered messages keep the routing key they were published with, the queue name
+        return BindingBuilder.bind(parkingQueue).to(deadLetterExchange).with(queueName);
+    }
+
+    private static String deadLetterExchangeName(String resultsQueueName) {
+        return resultsQueueName + ".dlx";
+    }
+
+    /**
+     * Consumers of the index stage, which receive pages in batches
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory crawlResultsListenerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${crawler.pipeline.mode:inline}") String mode,
+            @Value("${crawler.pipeline.index.enabled:true}") boolean indexEnabled,
+            @Value("${crawler.pipeline.index.concurrency:2}") int concurrency,
+            @Value("${crawler.pipeline.index.batch-size:16}") int batchSize,
+            @Value("${crawler.pipeline.index.batch-wait-ms:1000}") long batchWaitMillis
+    ) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(concurrency);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(batchWaitMillis);
+
+        // Pages are large, so buffer only what the next batches need
+        factory.setPrefetchCount(batchSize * 2);
+
+        // Pages that fail are parked rather than redelivered forever
+        factory.setDefaultRequeueRejected(false);
+        factory.setAutoStartup("staged".equals(mode) && indexEnabled);
+        return factory;
+    }
 }
@@ -40,6 +40,39 @@ public class CrawlerController {
         return ResponseEntity.ok(results);
     }
 
+    @GetMapping("/stats")
+    public ResponseEntity<?> stats() {
+        return ResponseEntity.ok(crawlerService.getCrawlStats());
+    }
+
+    @PostMapping("/reset")
+    public ResponseEntity<?> reset() {
+        log.info("Received crawl data reset request");
+        return ResponseEntity.accepted().body(crawlerService.resetCrawlData());
+    }
+
+    @GetMapping("/reset")
+    public ResponseEntity<?> resetProgress() {
+        return ResponseEntity.ok(crawlerService.getResetProgress());
+    }
+
+    @PostMapping("/reindex")
+    public ResponseEntity<?> reindex() {
+        log.info("Received re-index request");
+        return ResponseEntity.accepted().body(crawlerService.reindexArchive());
+    }
+
+    @GetMapping("/reindex")
+    public ResponseEntity<?> reindexProgress() {
+        return ResponseEntity.ok(crawlerService.getReindexProgress());
+    }
+
+    @PostMapping("/reindex/lost")
+    public ResponseEntity<?> replayLostPages() {
+        log.info("Received lost page replay request");
+        return ResponseEntity.ok(crawlerService.replayLostPages());
+    }
+
     @GetMapping("/ping")
     public String ping(){
         return "pong";
@@ -0,0 +1,170 @@
+package com.devik.indexer;
+
+import com.devik.model.CrawlResult;
+import com.devik.model.SearchRequest;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Accepts each page once and indexes it into several backends in the background.
+ * <p>
+ * Every backend has its own {@link IndexingLane}, so Elasticsearch and the vector store fill
+ * independently: a slow or unavailable backend only grows its own backlog while the crawler and
+ * the other backends carry on. Pages a lane loses are recorded in its {@link LostPageLog} and
+ * can be replayed into that lane alone. Searches go to a single configured strategy. The bean
+ * only exists when it is the configured strategy, so other nodes start no lanes or lost-page logs.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "crawler.index.strategy", havingValue = "composite")
+public class CompositeIndexer implements IndexerStrategy {
+
+    private final Map<String, IndexingLane> lanes = new LinkedHashMap<>();
+    private final Map<String, LostPageLog> lostPages = new LinkedHashMap<>();
+    private final Path lostPagesPath;
+    private final IndexerStrategy searchStrategy;
+    private final long closeTimeoutMillis;
+
+    @Autowired
+    public CompositeIndexer(ElasticSearchIndexer elasticSearchIndexer,
+                            LLMIndexer llmIndexer,
+                            HybridIndexer hybridIndexer,
+                            @Value("${crawler.index.composite.backends:elasticsearch,llm}") List<String> backends,
+                            @Value("${crawler.index.composite.search:hybrid}") String search,
+                            @Value("${crawler.index.composite.elasticsearch.queue-capacity:10000}") int elasticsearchCapacity,
+                            @Value("${crawler.index.composite.elasticsearch.workers:2}") int elasticsearchWorkers,
+                            @Value("${crawler.index.composite.elasticsearch.max-in-flight:2000}") int elasticsearchMaxInFlight,
+                            @Value("${crawler.index.composite.elasticsearch.max-retries:5}") int elasticsearchRetries,
+                            @Value("${crawler.index.composite.elasticsearch.backoff-ms:500}") long elasticsearchBackoffMillis,
+                            @Value("${crawler.index.composite.llm.queue-capacity:10000}") int llmCapacity,
+                            @Value("${crawler.index.composite.llm.workers:4}") int llmWorkers,
+                            @Value("${crawler.index.composite.llm.max-in-flight:64}") int llmMaxInFlight,
+                            @Value("${crawler.index.composite.llm.max-retries:5}") int llmRetries,
+                            @Value("${crawler.index.composite.llm.backoff-ms:1000}") long llmBackoffMillis,
+                            @Value("${crawler.index.composite.max-backoff-ms:30000}") long maxBackoffMillis,
+                            @Value("${crawler.index.composite.close-timeout-ms:30000}") long closeTimeoutMillis,
+                            @Value("${crawler.index.composite.lost-pages-path:data/index-lost}") String lostPagesPath) {
+        this.lostPagesPath = Path.of(lostPagesPath);
+        if (backends.contains("elasticsearch")) {
+            addLane("elasticsearch", elasticSearchIndexer, elasticsearchCapacity, elasticsearchWorkers,
+                    elasticsearchMaxInFlight, elasticsearchRetries, elasticsearchBackoffMillis, maxBackoffMillis);
+        }
+        if (backends.contains("llm")) {
+            addLane("llm", llmIndexer, llmCapacity, llmWorkers,
+                    llmMaxInFlight, llmRetries, llmBackoffMillis, maxBackoffMillis);
+        }
+        if (lanes.isEmpty()) {
+            throw new IllegalArgumentException("No known indexing backends in " + backends + ", expected elasticsearch or llm");
+        }
+
+        // Writes fan out to every lane, but a search reads from one backend
+        this.searchStrategy = switch (search) {
+            case "elasticsearch" -> elasticSearchIndexer;
+            case "llm" -> llmIndexer;
+            default -> hybridIndexer;
+        };
+        this.closeTimeoutMillis = closeTimeoutMillis;
+    }
+
+    private void addLane(String name, IndexerStrategy backend, int capacity, int workers, int maxInFlight,
+                         int maxRetries, long backoffMillis, long maxBackoffMillis) {
+        LostPageLog lost;
+        try {
+            lost = new LostPageLog(lostPagesPath.resolve(name + ".log"));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open lost page log for indexing lane " + name, e);
+        }
+        lostPages.put(name, lost);
+        lanes.put(name, new IndexingLane(name, backend, capacity, workers, maxInFlight,
+                maxRetries, backoffMillis, maxBackoffMillis, result -> lost.record(result.getId())));
+    }
+
+    /**
+     * Queue the page in every lane; returns without waiting for any backend
+     */
+    @Override
+    public void indexDocument(CrawlResult result) {
+        lanes.values().forEach(lane -> lane.offer(result));
+    }
+
+    @Override
+    public List<Map<String, Object>> search(SearchRequest request) {
+        return searchStrategy.search(request);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lanes.forEach((name, lane) -> {
+            Map<String, Object> laneStats = lane.getStats();
+            laneStats.put("lostPendingReplay", lostPages.get(name).size());
+            stats.put(name, laneStats);
+        });
+        return stats;
+    }
+
+    /**
+     * Queue the pages each lane lost back into that lane
+     *
+     * @param loader rebuilds a page by id, empty if it can no longer be found
+     * @return per lane, how many lost pages were queued again and how many could not be found
+     */
+    public Map<String, Object> replayLost(Function<UUID, Optional<CrawlResult>> loader) {
+        Map<String, Object> replayed = new LinkedHashMap<>();
+        lanes.forEach((name, lane) -> {
+            LostPageLog lost = lostPages.get(name);
+            int queued = 0;
+            int missing = 0;
+            int failed = 0;
+            try {
+                for (UUID id : lost.drain()) {
+                    try {
+                        Optional<CrawlResult> result = loader.apply(id);
+                        if (result.isEmpty()) {
+                            missing++;
+                        } else if (lane.offer(result.get())) {
+                            // A page the lane drops again goes straight back into the log
+                            queued++;
+                        }
+                    } catch (RuntimeException e) {
+                        log.warn("Failed to rebuild lost page {}: {}", id, e.getMessage());
+                        lost.record(id);
+                        failed++;
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read lost page log of indexing lane " + name, e);
+            }
+            log.info("Replayed {} lost pages into indexing lane {}, {} no longer found, {} failed", queued, name, missing, failed);
+            replayed.put(name, Map.of("queued", queued, "missing", missing, "failed", failed));
+        });
+        return replayed;
+    }
+
+    /**
+     * Let the lanes drain before the backends shut down
+     */
+    @PreDestroy
+    public void shutdown() {
+        lanes.values().forEach(lane -> lane.close(closeTimeoutMillis));
+        lostPages.forEach((name, lost) -> {
+            try {
+                lost.close();
+            } catch (IOException e) {
+                log.error("Failed to close lost page log of indexing lane {}", name, e);
+            }
+        });
+    }
+}
@@ -4,75 +4,238 @@ package com.devik.indexer;
 import com.devik.model.CrawlResult;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.ClosePointInTimeRequest;
+import org.elasticsearch.action.search.OpenPointInTimeRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
-import org.elasticsearch.client.indices.CreateIndexRequest;
-import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.core.TimeValue;
 import org.elasticsearch.index.query.MultiMatchQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.fetch.subphase.highlight.HighlightBuilder;
+import org.elasticsearch.search.fetch.subphase.highlight.HighlightField;
+import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.xcontent.XContentType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Indexes crawl results into Elasticsearch.
+ * <p>
+ * In bulk mode documents are buffered in a {@link BulkProcessor} and sent by count, size or
+ * interval, whichever comes first, so a crawl thread only pays for an in-memory add. At most
+ * concurrent-requests bulks are in flight; once they are, {@code indexDocument} blocks, which
+ * slows the crawl down instead of piling up requests while Elasticsearch is struggling.
+ * Bulks and items rejected with 429 are retried with exponential backoff.
+ */
+@Slf4j
 @Component
 public class ElasticSearchIndexer implements IndexerStrategy {
 
     @Autowired
     private RestHighLevelClient client;
-    private static final String INDEX_NAME = "web_pages";
+    @Autowired
+    private WebPagesIndex webPagesIndex;
+    private static final String INDEX_NAME = WebPagesIndex.ALIAS;
+    private static final String[] RESULT_FIELDS = {"url", "title", "crawledAt"};
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    @Value("${crawler.index.elasticsearch.bulk.enabled:true}")
+    private boolean bulkEnabled;
+
+    @Value("${crawler.index.elasticsearch.bulk.actions:500}")
+    private int bulkActions;
+
+    @Value("${crawler.index.elasticsearch.bulk.size-mb:5}")
+    private long bulkSizeMb;
+
+    @Value("${crawler.index.elasticsearch.bulk.flush-interval-ms:1000}")
+    private long flushIntervalMillis;
+
+    @Value("${crawler.index.elasticsearch.bulk.concurrent-requests:2}")
+    private int concurrentRequests;
+
+    @Value("${crawler.index.elasticsearch.bulk.backoff-ms:100}")
+    private long backoffMillis;
+
+    @Value("${crawler.index.elasticsearch.bulk.max-retries:5}")
+    private int maxRetries;
+
+    @Value("${crawler.index.elasticsearch.bulk.close-timeout-ms:30000}")
+    private long closeTimeoutMillis;
+
+    @Value("${crawler.search.pit-keep-alive:1m}")
+    private String pitKeepAlive;
+
+    @Value("${crawler.search.snippet-length:160}")
+    private int snippetLength;
+
+    private BulkProcessor bulkProcessor;
+    // Pages handed to the bulk processor by indexDocumentAsync, by request identity
+    private final Map<DocWriteRequest<?>, CompletableFuture<Void>> pendingRequests =
+            Collections.synchronizedMap(new IdentityHashMap<>());
+
     @PostConstruct
     public void initialize() {
         try {
-            // Check if index exists
-            GetIndexRequest getIndexRequest = new GetIndexRequest(INDEX_NAME);
-            boolean exists = client.indices().exists(getIndexRequest, RequestOptions.DEFAULT);
-
-            // Create index if not exists
-            if (!exists) {
-                CreateIndexRequest createIndexRequest = new CreateIndexRequest(INDEX_NAME);
-                client.indices().create(createIndexRequest, RequestOptions.DEFAULT);
-            }
+            // Create the mapped index behind the alias, migrating an older index if there is one
+            webPagesIndex.initialize();
         } catch (IOException e) {
             throw new RuntimeException("Failed to initialize Elasticsearch client", e);
         }
+
+        if (bulkEnabled) {
+            bulkProcessor = BulkProcessor.builder(
+                            (request, listener) -> client.bulkAsync(request, RequestOptions.DEFAULT, listener),
+                            new BulkListener(), "web-pages-bulk")
+                    .setBulkActions(bulkActions)
+                    .setBulkSize(new ByteSizeValue(bulkSizeMb, ByteSizeUnit.MB))
+                    .setFlushInterval(TimeValue.timeValueMillis(flushIntervalMillis))
+                    .setConcurrentRequests(concurrentRequests)
+                    .setBackoffPolicy(BackoffPolicy.exponentialBackoff(TimeValue.timeValueMillis(backoffMillis), maxRetries))
+                    .build();
+        }
+    }
+
+    /**
+     * Flush buffered documents and wait for in-flight bulks before the client is closed, then
+     * leave the bulk-load profile
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (bulkProcessor != null) {
+            try {
+                if (!bulkProcessor.awaitClose(closeTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    log.warn("Timed out flushing Elasticsearch bulk requests");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (pendingRequests) {
+            pendingRequests.values().forEach(stored -> stored.completeExceptionally(new IllegalStateException("Indexer closed")));
+            pendingRequests.clear();
+        }
+        webPagesIndex.restoreSettings();
     }
 
     @Override
     public void indexDocument(CrawlResult result) {
-        try {
-            Map<String, Object> document = new HashMap<>();
-            document.put("url", result.getUrl());
-            document.put("title", result.getTitle());
-            document.put("content", result.getContent());
-            document.put("crawledAt", result.getCrawledAt().toString());
+        IndexRequest indexRequest = indexRequest(result);
 
-            IndexRequest indexRequest = new IndexRequest(INDEX_NAME)
-                    .id(result.getId().toString())
-                    .source(document, XContentType.JSON);
+        if (bulkProcessor != null) {
+            // Blocks only while all concurrent bulks are in flight
+            bulkProcessor.add(indexRequest);
+            return;
+        }
 
+        try {
             client.index(indexRequest, RequestOptions.DEFAULT);
         } catch (IOException e) {
             throw new RuntimeException("Failed to index document", e);
         }
     }
 
+    /**
+     * In bulk mode the future completes when the bulk holding the page comes back, with the
+     * outcome of the page's own item
+     */
+    @Override
+    public CompletableFuture<Void> indexDocumentAsync(CrawlResult result) {
+        if (bulkProcessor == null) return IndexerStrategy.super.indexDocumentAsync(result);
+
+        IndexRequest indexRequest = indexRequest(result);
+        CompletableFuture<Void> stored = new CompletableFuture<>();
+        pendingRequests.put(indexRequest, stored);
+        try {
+            bulkProcessor.add(indexRequest);
+        } catch (RuntimeException e) {
+            pendingRequests.remove(indexRequest);
+            stored.completeExceptionally(e);
+        }
+        return stored;
+    }
+
+    private IndexRequest indexRequest(CrawlResult result) {
+        Map<String, Object> document = new HashMap<>();
+        document.put("url", result.getUrl());
+        document.put("title", result.getTitle());
+        document.put("content", result.getContent());
+        document.put("links", result.getLinks());
+        document.put("crawledAt", result.getCrawledAt().toString());
+
+        return new IndexRequest(INDEX_NAME)
+                .id(result.getId().toString())
+                .source(document, XContentType.JSON);
+    }
+
+    private class BulkListener implements BulkProcessor.Listener {
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request) {
+            log.debug("Sending bulk {} with {} documents", executionId, request.numberOfActions());
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+            if (!response.hasFailures()) {
+                log.debug("Bulk {} indexed {} documents in {}", executionId, request.numberOfActions(), response.getTook());
+            }
+
+            // Items still failing here were not retryable or ran out of retries
+            for (BulkItemResponse item : response.getItems()) {
+                CompletableFuture<Void> stored = pendingRequests.remove(request.requests().get(item.getItemId()));
+                if (item.isFailed()) {
+                    log.error("Failed to index document {}: {}", item.getId(), item.getFailureMessage());
+                    if (stored != null) stored.completeExceptionally(new RuntimeException(item.getFailureMessage()));
+                } else if (stored != null) {
+                    stored.complete(null);
+                }
+            }
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+            log.error("Bulk {} of {} documents failed: {}", executionId, request.numberOfActions(), failure.getMessage());
+            for (DocWriteRequest<?> item : request.requests()) {
+                CompletableFuture<Void> stored = pendingRequests.remove(item);
+                if (stored != null) stored.completeExceptionally(failure);
+            }
+        }
+    }
+
     @Override
     public List<Map<String, Object>> search(com.devik.model.SearchRequest request) {
         try {
-            SearchRequest searchRequest = new SearchRequest(INDEX_NAME);
             SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
 
             // Create multi-match query (searching in title and content)
@@ -82,37 +245,113 @@ public class ElasticSearchIndexer implements IndexerStrategy {
                     .field("title", 2.0f); // Boost title field
 
             searchSourceBuilder.query(multiMatchQuery);
-            searchSourceBuilder.from(request.getPage() * request.getLimit());
+
+            // Never fetch the page body; the snippet comes from the highlighter
+            searchSourceBuilder.fetchSource(RESULT_FIELDS, null);
+            searchSourceBuilder.highlighter(new HighlightBuilder()
+                    .field(new HighlightBuilder.Field("content")
+                            .fragmentSize(snippetLength)
+                            .numOfFragments(1)
+                            .noMatchSize(snippetLength)));
+            searchSourceBuilder.trackTotalHits(false);
             searchSourceBuilder.size(request.getLimit());
 
-            searchRequest.source(searchSourceBuilder);
+            SearchCursor cursor = request.getCursor() == null ? null : SearchCursor.decode(request.getCursor());
+            if (cursor == null && !request.isWithCursors()) {
+                searchSourceBuilder.from(request.getPage() * request.getLimit());
+                SearchResponse response = client.search(new SearchRequest(INDEX_NAME).source(searchSourceBuilder), RequestOptions.DEFAULT);
+                return prepareResponse(response, false);
+            }
+
+            // Page through a point in time so results stay stable while the crawl writes
+            searchSourceBuilder.sort(SortBuilders.scoreSort());
+            searchSourceBuilder.sort(SortBuilders.pitTiebreaker());
+
+            String pitId = cursor != null ? cursor.pit() : openPointInTime();
+            searchSourceBuilder.pointInTimeBuilder(new PointInTimeBuilder(pitId).setKeepAlive(pitKeepAlive));
+            if (cursor != null) {
+                searchSourceBuilder.searchAfter(cursor.after());
+            } else {
+                searchSourceBuilder.from(request.getPage() * request.getLimit());
+            }
 
-            SearchResponse response = client.search(searchRequest, RequestOptions.DEFAULT);
+            // The point in time selects the index
+            SearchResponse response = client.search(new SearchRequest().source(searchSourceBuilder), RequestOptions.DEFAULT);
 
-            return prepareResponse(response);
+            // A short page is the last one, so its point in time is no longer needed
+            boolean lastPage = response.getHits().getHits().length < request.getLimit();
+            if (lastPage) {
+                closePointInTime(response.pointInTimeId() != null ? response.pointInTimeId() : pitId);
+            }
+            return prepareResponse(response, !lastPage);
+        } catch (ElasticsearchStatusException e) {
+            if (e.status() == RestStatus.NOT_FOUND && request.getCursor() != null) {
+                throw new RuntimeException("Search cursor has expired, start a new search", e);
+            }
+            throw e;
         } catch (IOException e) {
             throw new RuntimeException("Failed to search documents", e);
         }
     }
 
-    private static List<Map<String, Object>> prepareResponse(SearchResponse response) {
+    private String openPointInTime() throws IOException {
+        OpenPointInTimeRequest request = new OpenPointInTimeRequest(INDEX_NAME)
+                .keepAlive(TimeValue.parseTimeValue(pitKeepAlive, "crawler.search.pit-keep-alive"));
+        return client.openPointInTime(request, RequestOptions.DEFAULT).getPointInTimeId();
+    }
+
+    private void closePointInTime(String pitId) {
+        try {
+            client.closePointInTime(new ClosePointInTimeRequest(pitId), RequestOptions.DEFAULT);
+        } catch (IOException | ElasticsearchStatusException e) {
+            // It expires after the keep-alive anyway
+            log.debug("Failed to close point in time: {}", e.getMessage());
+        }
+    }
+
+    private static List<Map<String, Object>> prepareResponse(SearchResponse response, boolean withCursors) {
         List<Map<String, Object>> results = new ArrayList<>();
         for (SearchHit hit : response.getHits().getHits()) {
             Map<String, Object> result = hit.getSourceAsMap();
 
-            // Truncate 'content' field if it's too long
-            Object content = result.get("content");
-            if (content instanceof String contentStr) {
-                if (contentStr.length() > 100) {
-                    result.put("content", contentStr.substring(0, 50) + "...");
-                }
+            // Use the highlighted fragment as the content snippet
+            HighlightField snippet = hit.getHighlightFields().get("content");
+            if (snippet != null && snippet.getFragments().length > 0) {
+                result.put("content", snippet.getFragments()[0].string());
             }
 
             result.put("score", hit.getScore());
+            if (withCursors) {
+                result.put("cursor", new SearchCursor(response.pointInTimeId(), hit.getSortValues()).encode());
+            }
             results.add(result);
         }
         return results;
     }
 
+    /**
+     * Position after a hit: the point in time searched and the hit's sort values
+     */
+    record SearchCursor(String pit, Object[] after) {
+
+        private static final ObjectMapper MAPPER = new ObjectMapper();
+
+        String encode() {
+            try {
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(this));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to encode search cursor", e);
+            }
+        }
 
-}
\ No newline at end of file
+        static SearchCursor decode(String cursor) {
+            try {
+                SearchCursor decoded = MAPPER.readValue(Base64.getUrlDecoder().decode(cursor), SearchCursor.class);
+                if (decoded.pit() == null || decoded.after() == null) throw new IllegalArgumentException("Incomplete search cursor");
+                return decoded;
+            } catch (IOException | IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid search cursor", e);
+            }
+        }
+    }
+}
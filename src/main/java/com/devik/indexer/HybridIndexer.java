@@ -0,0 +1,232 @@
+package com.devik.indexer;
+
+import com.devik.model.CrawlResult;
+import com.devik.model.SearchRequest;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Indexes pages in both Elasticsearch and the vector store, and searches both at once.
+ * <p>
+ * Each backend gets its own timeout and its own bounded pool of search threads, so a backend
+ * that slows down cannot hold up searches of the other. One that is slow, failing or saturated
+ * is left out of the fusion, and a search past its timeout is cancelled, so the request
+ * degrades to the other backend's results instead of waiting. Results are merged by
+ * URL with reciprocal rank fusion, which needs no comparable scores, or with weighted sums of
+ * min-max normalized scores. The bean only exists when it is the configured strategy, so other
+ * nodes start no search pools.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "crawler.index.strategy", havingValue = "hybrid")
+public class HybridIndexer implements IndexerStrategy {
+
+    private record Backend(String name, IndexerStrategy indexer, long timeoutMillis, double weight, ExecutorService executor) {}
+
+    private record BackendResult(Backend backend, List<Map<String, Object>> hits, boolean failed) {}
+
+    private final List<Backend> backends;
+    private final boolean reciprocalRank;
+    private final int rrfK;
+    private final int window;
+
+    @Autowired
+    public HybridIndexer(ElasticSearchIndexer elasticSearchIndexer,
+                         LLMIndexer llmIndexer,
+                         @Value("${crawler.index.hybrid.fusion:rrf}") String fusion,
+                         @Value("${crawler.index.hybrid.rrf-k:60}") int rrfK,
+                         @Value("${crawler.index.hybrid.window:50}") int window,
+                         @Value("${crawler.index.hybrid.lexical.timeout-ms:500}") long lexicalTimeoutMillis,
+                         @Value("${crawler.index.hybrid.lexical.weight:1.0}") double lexicalWeight,
+                         @Value("${crawler.index.hybrid.lexical.threads:4}") int lexicalThreads,
+                         @Value("${crawler.index.hybrid.lexical.max-queued:32}") int lexicalMaxQueued,
+                         @Value("${crawler.index.hybrid.semantic.timeout-ms:1000}") long semanticTimeoutMillis,
+                         @Value("${crawler.index.hybrid.semantic.weight:1.0}") double semanticWeight,
+                         @Value("${crawler.index.hybrid.semantic.threads:4}") int semanticThreads,
+                         @Value("${crawler.index.hybrid.semantic.max-queued:32}") int semanticMaxQueued) {
+        this.backends = List.of(
+                new Backend("lexical", elasticSearchIndexer, lexicalTimeoutMillis, lexicalWeight,
+                        searchExecutor("lexical", lexicalThreads, lexicalMaxQueued)),
+                new Backend("semantic", llmIndexer, semanticTimeoutMillis, semanticWeight,
+                        searchExecutor("semantic", semanticThreads, semanticMaxQueued)));
+
+        // Anything but "weighted" fuses by reciprocal rank, which needs no score calibration
+        this.reciprocalRank = !"weighted".equals(fusion);
+        this.rrfK = rrfK;
+        this.window = window;
+    }
+
+    /**
+     * Fixed pool with a bounded queue; a search that finds it full is rejected instead of queueing
+     */
+    private static ExecutorService searchExecutor(String name, int threads, int maxQueued) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maxQueued),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "hybrid-search-" + name + "-" + count.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public void indexDocument(CrawlResult result) {
+        indexDocuments(List.of(result));
+    }
+
+    @Override
+    public void indexDocuments(List<CrawlResult> results) {
+        // A failure in one backend must not keep the pages out of the other
+        RuntimeException failure = null;
+        for (Backend backend : backends) {
+            try {
+                backend.indexer().indexDocuments(results);
+            } catch (RuntimeException e) {
+                log.error("Failed to index {} pages in {} backend: {}", results.size(), backend.name(), e.getMessage());
+                failure = e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    @Override
+    public List<Map<String, Object>> search(SearchRequest request) {
+        // Fuse over the top of each list; later pages come from the same fused ranking
+        int offset = request.getPage() * request.getLimit();
+        SearchRequest backendRequest = new SearchRequest();
+        backendRequest.setQuery(request.getQuery());
+        backendRequest.setLimit(Math.max(window, offset + request.getLimit()));
+        backendRequest.setHnswEf(request.getHnswEf());
+        backendRequest.setExact(request.getExact());
+        backendRequest.setScoreThreshold(request.getScoreThreshold());
+
+        long start = System.nanoTime();
+        List<Future<List<Map<String, Object>>>> pending = backends.stream()
+                .map(backend -> submit(backend, backendRequest))
+                .toList();
+
+        List<BackendResult> results = new ArrayList<>(backends.size());
+        for (int i = 0; i < backends.size(); i++) {
+            results.add(await(backends.get(i), pending.get(i), start));
+        }
+        if (results.stream().allMatch(BackendResult::failed)) {
+            throw new RuntimeException("All search backends failed or timed out");
+        }
+        results.stream()
+                .filter(BackendResult::failed)
+                .forEach(result -> log.warn("Returning partial results without {} search", result.backend().name()));
+
+        return fuse(results).stream()
+                .skip(offset)
+                .limit(request.getLimit())
+                .toList();
+    }
+
+    private static Future<List<Map<String, Object>>> submit(Backend backend, SearchRequest request) {
+        try {
+            return backend.executor().submit(() -> backend.indexer().search(request));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("too many searches queued"));
+        }
+    }
+
+    /**
+     * Wait for a backend until its timeout, counted from when the search started
+     */
+    private static BackendResult await(Backend backend, Future<List<Map<String, Object>>> search, long start) {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(backend.timeoutMillis()) - (System.nanoTime() - start);
+        try {
+            return new BackendResult(backend, search.get(Math.max(0, remaining), TimeUnit.NANOSECONDS), false);
+        } catch (TimeoutException e) {
+            // Free the backend's thread rather than let the search run on for nobody
+            search.cancel(true);
+            log.warn("{} search timed out after {}ms", backend.name(), backend.timeoutMillis());
+        } catch (ExecutionException e) {
+            log.warn("{} search failed: {}", backend.name(), e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            search.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        return new BackendResult(backend, List.of(), true);
+    }
+
+    private List<Map<String, Object>> fuse(List<BackendResult> results) {
+        Map<Object, Map<String, Object>> pages = new LinkedHashMap<>();
+        Map<Object, Double> scores = new HashMap<>();
+
+        for (BackendResult result : results) {
+            List<Map<String, Object>> hits = result.hits();
+            double[] normalized = reciprocalRank ? null : normalize(hits);
+            for (int rank = 0; rank < hits.size(); rank++) {
+                Map<String, Object> hit = hits.get(rank);
+                Object url = hit.get("url");
+                if (url == null) continue;
+
+                double contribution = result.backend().weight() * (reciprocalRank
+                        ? 1.0 / (rrfK + rank + 1)
+                        : normalized[rank]);
+                scores.merge(url, contribution, Double::sum);
+
+                // The first backend to return a page supplies its fields, so lexical snippets win
+                Map<String, Object> page = pages.computeIfAbsent(url, key -> {
+                    Map<String, Object> fields = new HashMap<>(hit);
+                    fields.remove("cursor");
+                    fields.put("matchedBy", new ArrayList<String>());
+                    return fields;
+                });
+                @SuppressWarnings("unchecked")
+                List<String> matchedBy = (List<String>) page.get("matchedBy");
+                if (!matchedBy.contains(result.backend().name())) matchedBy.add(result.backend().name());
+            }
+        }
+
+        pages.forEach((url, page) -> page.put("score", scores.get(url)));
+        return pages.values().stream()
+                .sorted(Comparator.comparingDouble((Map<String, Object> page) -> (double) page.get("score")).reversed())
+                .toList();
+    }
+
+    /**
+     * Scale one backend's scores to 0..1, so BM25 and cosine scores can be added
+     */
+    private static double[] normalize(List<Map<String, Object>> hits) {
+        double[] scores = new double[hits.size()];
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < hits.size(); i++) {
+            scores[i] = ((Number) hits.get(i).getOrDefault("score", 0)).doubleValue();
+            min = Math.min(min, scores[i]);
+            max = Math.max(max, scores[i]);
+        }
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = max > min ? (scores[i] - min) / (max - min) : 1.0;
+        }
+        return scores;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backends.forEach(backend -> backend.executor().shutdownNow());
+    }
+}
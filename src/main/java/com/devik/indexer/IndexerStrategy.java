@@ -5,9 +5,30 @@ import com.devik.model.SearchRequest;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface IndexerStrategy {
     void indexDocument(CrawlResult result);
+
+    /**
+     * Index a page without waiting for the backend to store it; the future completes once it
+     * has, or fails if it could not. Strategies without a write pipeline index synchronously.
+     */
+    default CompletableFuture<Void> indexDocumentAsync(CrawlResult result) {
+        try {
+            indexDocument(result);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Index several pages at once; strategies that gain nothing from batching index them one by one
+     */
+    default void indexDocuments(List<CrawlResult> results) {
+        results.forEach(this::indexDocument);
+    }
+
     List<Map<String, Object>> search(SearchRequest request);
 }
-
@@ -0,0 +1,222 @@
+package com.devik.indexer;
+
+import com.devik.model.CrawlResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Feeds one indexing backend from its own bounded queue and worker threads.
+ * <p>
+ * Offering never blocks: when the queue is full the page is dropped, so a backend that is down
+ * builds a backlog up to the queue size without slowing the crawler or the other lanes.
+ * Workers hand pages to the backend without waiting for them to be stored, up to max-in-flight
+ * at a time, and a page counts as indexed only once the backend reports it stored. A failed
+ * page is retried with exponential backoff while it keeps its in-flight slot, which also slows
+ * the lane down while its backend recovers. Pages that are dropped, given up on or abandoned
+ * at shutdown go to the lost-page callback so they can be replayed.
+ */
+@Slf4j
+final class IndexingLane {
+
+    private record Task(CrawlResult result, long enqueuedNanos) {}
+
+    private final String name;
+    private final IndexerStrategy backend;
+    private final int maxRetries;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final int maxInFlight;
+    private final Consumer<CrawlResult> lost;
+    private final BlockingQueue<Task> queue;
+    private final Semaphore inFlightSlots;
+    private final ScheduledExecutorService retries;
+    // Tasks waiting out a backoff; whoever removes one runs or abandons it
+    private final Set<Task> backingOff = ConcurrentHashMap.newKeySet();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile long lastLagMillis;
+    private volatile long lastIndexedAt;
+
+    IndexingLane(String name, IndexerStrategy backend, int capacity, int workerCount, int maxInFlight,
+                 int maxRetries, long backoffMillis, long maxBackoffMillis, Consumer<CrawlResult> lost) {
+        this.name = name;
+        this.backend = backend;
+        this.maxRetries = maxRetries;
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.maxInFlight = maxInFlight;
+        this.lost = lost;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.inFlightSlots = new Semaphore(maxInFlight);
+
+        // Retries run on their own threads, so a backoff never holds up a worker
+        AtomicInteger retryThreads = new AtomicInteger();
+        this.retries = Executors.newScheduledThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "index-" + name + "-retry-" + retryThreads.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::work, "index-" + name + "-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Queue a page; false if the lane is full or closed and the page was dropped
+     */
+    boolean offer(CrawlResult result) {
+        if (running && queue.offer(new Task(result, System.nanoTime()))) {
+            enqueued.incrementAndGet();
+            return true;
+        }
+        dropped.incrementAndGet();
+        log.warn("Indexing lane {} is full, dropped {}", name, result.getUrl());
+        lost.accept(result);
+        return false;
+    }
+
+    private void work() {
+        // Keep going after close until the queue is drained or the workers are interrupted
+        while (running || !queue.isEmpty()) {
+            try {
+                // Take a slot first, so a page waiting for one stays in the queue
+                if (!inFlightSlots.tryAcquire(100, TimeUnit.MILLISECONDS)) continue;
+                Task task = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (task == null) {
+                    inFlightSlots.release();
+                    continue;
+                }
+
+                inFlight.incrementAndGet();
+                attempt(task, 0);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void attempt(Task task, int attempt) {
+        CompletableFuture<Void> stored;
+        try {
+            stored = backend.indexDocumentAsync(task.result());
+        } catch (RuntimeException e) {
+            stored = CompletableFuture.failedFuture(e);
+        }
+        stored.whenComplete((ignored, failure) -> {
+            if (failure == null) {
+                indexed.incrementAndGet();
+                lastIndexedAt = System.currentTimeMillis();
+                lastLagMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - task.enqueuedNanos());
+                finish();
+            } else {
+                retryOrGiveUp(task, attempt, failure);
+            }
+        });
+    }
+
+    private void retryOrGiveUp(Task task, int attempt, Throwable failure) {
+        if (attempt < maxRetries) {
+            long delay = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt, 20));
+            log.warn("Indexing {} in {} failed, retrying in {} ms: {}", task.result().getUrl(), name, delay, failure.getMessage());
+            backingOff.add(task);
+            try {
+                retries.schedule(() -> {
+                    if (backingOff.remove(task)) attempt(task, attempt + 1);
+                }, delay, TimeUnit.MILLISECONDS);
+                retried.incrementAndGet();
+                return;
+            } catch (RejectedExecutionException e) {
+                // The lane has closed; unless close already took the task, give up on it here
+                if (!backingOff.remove(task)) return;
+            }
+        }
+        failed.incrementAndGet();
+        log.error("Giving up indexing {} in {} after {} attempts: {}",
+                task.result().getUrl(), name, attempt + 1, failure.getMessage());
+        lost.accept(task.result());
+        finish();
+    }
+
+    private void finish() {
+        inFlight.decrementAndGet();
+        inFlightSlots.release();
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queued", queue.size());
+        stats.put("inFlight", inFlight.get());
+        stats.put("enqueued", enqueued.get());
+        stats.put("indexed", indexed.get());
+        stats.put("retries", retried.get());
+        stats.put("failed", failed.get());
+        stats.put("dropped", dropped.get());
+
+        // How far behind the crawl this backend is, up to the moment a page is stored
+        Task oldest = queue.peek();
+        stats.put("oldestQueuedMs", oldest == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.enqueuedNanos()));
+        stats.put("lastLagMs", lastLagMillis);
+        stats.put("lastIndexedAt", lastIndexedAt);
+        return stats;
+    }
+
+    /**
+     * Stop accepting pages and give the lane until the timeout to drain its queue and have the
+     * backend store what is in flight
+     */
+    void close(long timeoutMillis) {
+        running = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            for (Thread worker : workers) {
+                worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            }
+            workers.forEach(Thread::interrupt);
+            if (!inFlightSlots.tryAcquire(maxInFlight, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                log.warn("Indexing lane {} closed with {} pages still in flight", name, inFlight.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        retries.shutdownNow();
+
+        List<Task> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        for (Task task : List.copyOf(backingOff)) {
+            if (backingOff.remove(task)) abandoned.add(task);
+        }
+        if (!abandoned.isEmpty()) {
+            log.warn("Abandoning {} queued or retrying pages in indexing lane {}", abandoned.size(), name);
+            abandoned.forEach(task -> lost.accept(task.result()));
+        }
+    }
+}
@@ -2,35 +2,88 @@ package com.devik.indexer;
 
 import com.devik.model.CrawlResult;
 import com.devik.model.SearchRequest;
+import com.devik.repository.vector.VectorSearchOptions;
 import com.devik.repository.vector.VectorStore;
 import com.devik.service.embedder.EmbeddingService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+/**
+ * Indexes pages as embeddings in the vector store.
+ * <p>
+ * In chunked mode the whole page text is split into overlapping windows, embedded in one
+ * batch and stored as one vector per chunk, linked to the page by its id. The first chunk
+ * reuses the page id, so it replaces a vector written in prefix mode. Searches fetch extra
+ * chunk hits, fold them into one result per page and show the best chunk as the snippet.
+ */
 @Slf4j
 @Component
 public class LLMIndexer implements IndexerStrategy {
 
-    private final EmbeddingService embeddingService;
+    private final EmbeddingService documentEmbeddings;
+    private final EmbeddingService queryEmbeddings;
     private final VectorStore vectorStore;
+    private final boolean chunked;
+    private final TextChunker chunker;
+    private final int maxChunks;
+    private final boolean sumScores;
+    private final int candidatesPerResult;
 
     @Autowired
-    public LLMIndexer(EmbeddingService embeddingService, VectorStore vectorStore) {
-        this.embeddingService = embeddingService;
+    public LLMIndexer(@Qualifier("documentEmbeddings") EmbeddingService documentEmbeddings,
+                      @Qualifier("queryEmbeddings") EmbeddingService queryEmbeddings,
+                      VectorStore vectorStore,
+                      @Value("${crawler.index.llm.mode:chunked}") String mode,
+                      @Value("${crawler.index.llm.chunk-words:160}") int chunkWords,
+                      @Value("${crawler.index.llm.chunk-overlap-words:32}") int overlapWords,
+                      @Value("${crawler.index.llm.max-chunks:64}") int maxChunks,
+                      @Value("${crawler.index.llm.aggregation:max}") String aggregation,
+                      @Value("${crawler.index.llm.candidates-per-result:4}") int candidatesPerResult) {
+        this.documentEmbeddings = documentEmbeddings;
+        this.queryEmbeddings = queryEmbeddings;
         this.vectorStore = vectorStore;
+
+        // Anything but "prefix" embeds every chunk of the page
+        this.chunked = !"prefix".equals(mode);
+        this.chunker = new TextChunker(chunkWords, overlapWords, maxChunks);
+        this.maxChunks = maxChunks;
+        this.sumScores = "sum".equals(aggregation);
+        this.candidatesPerResult = candidatesPerResult;
     }
 
     @Override
     public void indexDocument(CrawlResult result) {
+        indexDocumentAsync(result);
+    }
+
+    /**
+     * Embeds the page before returning; the future completes when the vector store has
+     * accepted all of its vectors
+     */
+    @Override
+    public CompletableFuture<Void> indexDocumentAsync(CrawlResult result) {
 
         log.info("Indexing document:{}", result.getUrl());
+        if (chunked) {
+            return indexChunks(result);
+        }
+
         // 1. Generate embedding for the document content
         String content = result.getContent().substring(0, Math.min(result.getContent().length(), 1000));
-        List<Float> embedding = embeddingService.embed(content);
+        float[] embedding = documentEmbeddings.embed(content);
 
         // 2. Save embedding and metadata into the vector store
         Map<String, Object> metadata = Map.of(
@@ -40,20 +93,127 @@ public class LLMIndexer implements IndexerStrategy {
                 "crawledAt", result.getCrawledAt().toString()
         );
 
-        vectorStore.insert(result.getId(), toPrimitiveArray(embedding), metadata);
+        return vectorStore.insertAsync(result.getId(), embedding, metadata)
+                .whenComplete((ignored, failure) -> logFailure(result, failure));
+    }
+
+    /**
+     * In chunked mode the chunks of all pages go to the embedder in one batch. Returns once the
+     * vector store has accepted every page, and throws if any of them failed.
+     */
+    @Override
+    public void indexDocuments(List<CrawlResult> results) {
+        List<CompletableFuture<Void>> writes = new ArrayList<>(results.size());
+        if (chunked) {
+            // 1. Embed the chunks of every page in one batch
+            List<List<String>> pageChunks = results.stream().map(this::chunksOf).toList();
+            List<float[]> embeddings = documentEmbeddings.embedBatch(pageChunks.stream().flatMap(List::stream).toList());
+
+            int first = 0;
+            for (int i = 0; i < results.size(); i++) {
+                List<String> chunks = pageChunks.get(i);
+                writes.add(storeChunks(results.get(i), chunks, embeddings.subList(first, first + chunks.size())));
+                first += chunks.size();
+            }
+        } else {
+            results.forEach(result -> writes.add(indexDocumentAsync(result)));
+        }
+
+        try {
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Failed to store batch of " + results.size() + " pages", e.getCause());
+        }
+    }
+
+    private CompletableFuture<Void> indexChunks(CrawlResult result) {
+        // 1. Embed all chunks of the page in one batch
+        List<String> chunks = chunksOf(result);
+        return storeChunks(result, chunks, documentEmbeddings.embedBatch(chunks));
+    }
+
+    private List<String> chunksOf(CrawlResult result) {
+        List<String> chunks = chunker.split(result.getContent());
+        // Keep pages without text findable by title
+        return chunks.isEmpty() ? List.of(result.getTitle()) : chunks;
+    }
+
+    private CompletableFuture<Void> storeChunks(CrawlResult result, List<String> chunks, List<float[]> embeddings) {
+        // 2. Queue one vector per chunk, linked to the page; the store batches the writes
+        List<CompletableFuture<Void>> writes = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            Map<String, Object> metadata = Map.of(
+                    "url", result.getUrl(),
+                    "title", result.getTitle(),
+                    "content", chunks.get(i),
+                    "crawledAt", result.getCrawledAt().toString(),
+                    "parentId", result.getId().toString(),
+                    "chunk", i
+            );
+            writes.add(vectorStore.insertAsync(chunkId(result.getId(), i), embeddings.get(i), metadata));
+        }
+
+        // 3. Drop chunks left over from a longer earlier version of the page, queued behind the upserts
+        List<UUID> stale = new ArrayList<>();
+        for (int i = chunks.size(); i < maxChunks; i++) {
+            stale.add(chunkId(result.getId(), i));
+        }
+        writes.add(vectorStore.deleteAsync(stale));
+
+        log.debug("Queued {} chunks of {}", chunks.size(), result.getUrl());
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture[0]))
+                .whenComplete((ignored, failure) -> logFailure(result, failure));
+    }
+
+    private static void logFailure(CrawlResult result, Throwable failure) {
+        if (failure != null) {
+            log.error("Failed to store vectors of {}: {}", result.getUrl(), failure.getMessage());
+        }
+    }
+
+    private static UUID chunkId(UUID parentId, int chunk) {
+        return chunk == 0 ? parentId : CrawlResult.generateUUID("chunk", parentId + ":" + chunk);
     }
 
     @Override
     public List<Map<String, Object>> search(SearchRequest request) {
-        List<Float> queryEmbedding = embeddingService.embed(request.getQuery());
-        return vectorStore.query(queryEmbedding, request.getLimit());
+        float[] queryEmbedding = queryEmbeddings.embed(request.getQuery());
+        if (!chunked) {
+            return vectorStore.query(queryEmbedding, request.getLimit(), VectorSearchOptions.of(request));
+        }
+
+        // Several chunks of one page can match, so fetch more hits than results
+        List<Map<String, Object>> hits = vectorStore.query(queryEmbedding, request.getLimit() * candidatesPerResult,
+                VectorSearchOptions.of(request));
+
+        return groupByPage(hits, sumScores, request.getLimit());
     }
 
-    private float[] toPrimitiveArray(List<Float> list) {
-        float[] array = new float[list.size()];
-        for (int i = 0; i < list.size(); i++) {
-            array[i] = list.get(i);
+    /**
+     * Merge chunk hits into one result per page, scored by its best chunk or the sum of its chunks
+     */
+    static List<Map<String, Object>> groupByPage(List<Map<String, Object>> hits, boolean sumScores, int limit) {
+        // Hits come best first, so the first hit of a page holds its best chunk
+        Map<Object, Map<String, Object>> pages = new LinkedHashMap<>();
+        for (Map<String, Object> hit : hits) {
+            Object pageKey = hit.getOrDefault("parentId", hit.get("url"));
+            double score = ((Number) hit.getOrDefault("score", 0)).doubleValue();
+
+            Map<String, Object> page = pages.get(pageKey);
+            if (page == null) {
+                page = new HashMap<>(hit);
+                page.remove("parentId");
+                page.remove("chunk");
+                page.put("score", score);
+                pages.put(pageKey, page);
+            } else if (sumScores) {
+                page.put("score", (double) page.get("score") + score);
+            }
         }
-        return array;
+
+        return pages.values().stream()
+                .sorted(Comparator.comparingDouble((Map<String, Object> page) -> (double) page.get("score")).reversed())
+                .limit(limit)
+                .toList();
     }
 }
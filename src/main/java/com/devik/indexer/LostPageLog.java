@@ -0,0 +1,86 @@
+package com.devik.indexer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Ids of the pages an indexing lane lost, one per line, kept on disk until they are replayed.
+ * <p>
+ * The crawler has already marked these URLs visited, so without the log they would never be
+ * indexed in that backend. A line cut short by a crash is skipped on reading.
+ */
+@Slf4j
+final class LostPageLog implements Closeable {
+
+    private final Path path;
+    private BufferedWriter writer;
+    private long size;
+
+    LostPageLog(Path path) throws IOException {
+        this.path = path;
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        this.size = Files.exists(path) ? read().size() : 0;
+        this.writer = open();
+    }
+
+    synchronized void record(UUID id) {
+        try {
+            writer.write(id.toString());
+            writer.newLine();
+            writer.flush();
+            size++;
+        } catch (IOException e) {
+            log.error("Failed to record lost page {} in {}: {}", id, path, e.getMessage());
+        }
+    }
+
+    /**
+     * Take every recorded id, leaving the log empty
+     */
+    synchronized List<UUID> drain() throws IOException {
+        writer.close();
+        List<UUID> ids = new ArrayList<>(read());
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        size = 0;
+        return ids;
+    }
+
+    synchronized long size() {
+        return size;
+    }
+
+    private Set<UUID> read() throws IOException {
+        Set<UUID> ids = new LinkedHashSet<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            try {
+                ids.add(UUID.fromString(line.trim()));
+            } catch (IllegalArgumentException e) {
+                log.warn("Skipping malformed line in {}: {}", path, line);
+            }
+        }
+        return ids;
+    }
+
+    private BufferedWriter open() throws IOException {
+        return Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
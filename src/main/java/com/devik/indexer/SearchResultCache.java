@@ -0,0 +1,147 @@
+package com.devik.indexer;
+
+import com.devik.model.CrawlResult;
+import com.devik.model.SearchRequest;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches search results by normalized query, strategy, page, limit and search tuning.
+ * <p>
+ * Concurrent identical searches share one backend call: Guava runs a single load per key and
+ * the other callers wait for it. Indexing a page bumps a generation counter that is part of the
+ * key, so entries from before it are never read again and simply age out. The counter is read
+ * at most once per max-staleness window; a crawl indexes pages continuously, and without the
+ * window every search would miss. Cursors are tied to a point in time that expires long before
+ * an entry does, so searches that page by cursor or ask for cursors bypass the cache, and any
+ * cursor a backend returns anyway is stripped before caching.
+ */
+@Component
+public class SearchResultCache {
+
+    private record Key(String strategy, String query, int page, int limit,
+                       Integer hnswEf, Boolean exact, Float scoreThreshold, long generation) {}
+
+    private final Cache<Key, List<Map<String, Object>>> cache;
+    private final long maxStalenessNanos;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile long visibleGeneration;
+    private volatile long visibleSince = System.nanoTime();
+
+    public SearchResultCache(
+            @Value("${crawler.search.cache.enabled:true}") boolean enabled,
+            @Value("${crawler.search.cache.max-entries:10000}") long maxEntries,
+            @Value("${crawler.search.cache.ttl-seconds:300}") long ttlSeconds,
+            @Value("${crawler.search.cache.max-staleness-ms:1000}") long maxStalenessMillis
+    ) {
+        this.cache = !enabled ? null : CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMillis);
+    }
+
+    /**
+     * Wrap a strategy so its searches are cached and its indexing invalidates them
+     */
+    public IndexerStrategy wrap(String strategyName, IndexerStrategy strategy) {
+        if (cache == null) return strategy;
+
+        return new IndexerStrategy() {
+            @Override
+            public void indexDocument(CrawlResult result) {
+                strategy.indexDocument(result);
+                generation.incrementAndGet();
+            }
+
+            @Override
+            public CompletableFuture<Void> indexDocumentAsync(CrawlResult result) {
+                return strategy.indexDocumentAsync(result).thenRun(generation::incrementAndGet);
+            }
+
+            @Override
+            public void indexDocuments(List<CrawlResult> results) {
+                strategy.indexDocuments(results);
+                generation.incrementAndGet();
+            }
+
+            @Override
+            public List<Map<String, Object>> search(SearchRequest request) {
+                return SearchResultCache.this.search(strategyName, strategy, request);
+            }
+        };
+    }
+
+    private List<Map<String, Object>> search(String strategyName, IndexerStrategy strategy, SearchRequest request) {
+        if (request.getCursor() != null || request.isWithCursors() || request.getQuery() == null) {
+            return strategy.search(request);
+        }
+
+        Key key = new Key(strategyName, normalize(request.getQuery()), request.getPage(), request.getLimit(),
+                request.getHnswEf(), request.getExact(), request.getScoreThreshold(), currentGeneration());
+        try {
+            return cache.get(key, () -> strategy.search(request).stream()
+                    .map(SearchResultCache::withoutCursor)
+                    .toList());
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            // Failed searches are not cached; rethrow what the strategy threw
+            if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            if (e.getCause() instanceof Error error) throw error;
+            throw new RuntimeException("Search failed", e.getCause());
+        }
+    }
+
+    private static Map<String, Object> withoutCursor(Map<String, Object> result) {
+        if (!result.containsKey("cursor")) return Collections.unmodifiableMap(result);
+        Map<String, Object> copy = new HashMap<>(result);
+        copy.remove("cursor");
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private long currentGeneration() {
+        long now = System.nanoTime();
+        if (now - visibleSince >= maxStalenessNanos) {
+            visibleGeneration = generation.get();
+            visibleSince = now;
+        }
+        return visibleGeneration;
+    }
+
+    /**
+     * Case and whitespace do not change what the backends match
+     */
+    private static String normalize(String query) {
+        return query.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", cache != null);
+        if (cache == null) return stats;
+
+        CacheStats cacheStats = cache.stats();
+        stats.put("entries", cache.size());
+        stats.put("hits", cacheStats.hitCount());
+        stats.put("misses", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("evictions", cacheStats.evictionCount());
+        stats.put("generation", generation.get());
+        return stats;
+    }
+}
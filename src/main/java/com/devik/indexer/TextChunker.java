@@ -0,0 +1,50 @@
+package com.devik.indexer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits page text into overlapping windows of whitespace-separated words.
+ * <p>
+ * Words stand in for model tokens; a window of N words stays under the embedder's input limit
+ * as long as N leaves room for sub-word splits. Windows are slices of the original text, so
+ * they can be shown as snippets.
+ */
+final class TextChunker {
+
+    private final int windowWords;
+    private final int overlapWords;
+    private final int maxChunks;
+
+    TextChunker(int windowWords, int overlapWords, int maxChunks) {
+        if (windowWords <= 0 || overlapWords < 0 || overlapWords >= windowWords) {
+            throw new IllegalArgumentException("Chunk overlap must be smaller than the window");
+        }
+        this.windowWords = windowWords;
+        this.overlapWords = overlapWords;
+        this.maxChunks = maxChunks;
+    }
+
+    List<String> split(String text) {
+        // Start and end offsets of every word
+        List<int[]> words = new ArrayList<>();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(text.charAt(i))) i++;
+            if (i == length) break;
+            int start = i;
+            while (i < length && !Character.isWhitespace(text.charAt(i))) i++;
+            words.add(new int[]{start, i});
+        }
+
+        List<String> chunks = new ArrayList<>();
+        int step = windowWords - overlapWords;
+        for (int first = 0; first < words.size() && chunks.size() < maxChunks; first += step) {
+            int last = Math.min(words.size(), first + windowWords) - 1;
+            chunks.add(text.substring(words.get(first)[0], words.get(last)[1]));
+            if (last == words.size() - 1) break;
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,248 @@
+package com.devik.indexer;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.core.CountRequest;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.client.tasks.TaskSubmissionResponse;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.reindex.ReindexRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creates and migrates the web pages index.
+ * <p>
+ * Documents live in a versioned index with the explicit mapping from
+ * {@code elasticsearch/web_pages.json}; readers and writers use the {@link #ALIAS} pointing at
+ * it. With migrate enabled, an older index, either the unmapped {@code web_pages} index itself
+ * or another version behind the alias, is reindexed into the new one in the background and the
+ * alias is switched atomically. The alias is only switched once the reindex task finished without errors or
+ * failed documents and the new index holds as many documents as the old ones; otherwise the
+ * old index stays in place. Pages written to the old index while the reindex runs are not
+ * copied and fail that check, so migration is off by default and meant to be enabled for one
+ * start with the crawlers stopped.
+ */
+@Slf4j
+@Component
+public class WebPagesIndex {
+
+    public static final String ALIAS = "web_pages";
+
+    private static final String DEFINITION = "elasticsearch/web_pages.json";
+    private static final String BULK_LOAD_PROFILE = "bulk-load";
+
+    private final RestHighLevelClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${crawler.index.elasticsearch.index:web_pages_v2}")
+    private String indexName;
+
+    @Value("${crawler.index.elasticsearch.shards:1}")
+    private int shards;
+
+    @Value("${crawler.index.elasticsearch.replicas:1}")
+    private int replicas;
+
+    @Value("${crawler.index.elasticsearch.refresh-interval:1s}")
+    private String refreshInterval;
+
+    @Value("${crawler.index.elasticsearch.profile:default}")
+    private String profile;
+
+    @Value("${crawler.index.elasticsearch.bulk-load.refresh-interval:30s}")
+    private String bulkLoadRefreshInterval;
+
+    @Value("${crawler.index.elasticsearch.migrate:false}")
+    private boolean migrate;
+
+    @Value("${crawler.index.elasticsearch.migrate-poll-ms:5000}")
+    private long migratePollMillis;
+
+    @Autowired
+    public WebPagesIndex(RestHighLevelClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Make sure the versioned index exists, the alias points at it and the profile is applied
+     */
+    public void initialize() throws IOException {
+        if (!client.indices().exists(new GetIndexRequest(indexName), RequestOptions.DEFAULT)) {
+            create();
+        }
+
+        GetAliasesRequest aliasRequest = new GetAliasesRequest(ALIAS);
+        if (client.indices().existsAlias(aliasRequest, RequestOptions.DEFAULT)) {
+            Set<String> current = client.indices().getAlias(aliasRequest, RequestOptions.DEFAULT).getAliases().keySet();
+            if (!current.contains(indexName)) {
+                if (migrate) {
+                    startMigration(current.toArray(new String[0]), false);
+                } else {
+                    log.warn("Alias {} points to {}, not {}; stop the crawlers and enable crawler.index.elasticsearch.migrate to move it",
+                            ALIAS, current, indexName);
+                }
+            }
+        } else if (client.indices().exists(new GetIndexRequest(ALIAS), RequestOptions.DEFAULT)) {
+            // A concrete index from before the alias was introduced
+            if (migrate) {
+                startMigration(new String[]{ALIAS}, true);
+            } else {
+                log.warn("Index {} has no explicit mapping; stop the crawlers and enable crawler.index.elasticsearch.migrate to move it to {}",
+                        ALIAS, indexName);
+            }
+        } else {
+            client.indices().updateAliases(new IndicesAliasesRequest()
+                    .addAliasAction(AliasActions.add().index(indexName).alias(ALIAS)), RequestOptions.DEFAULT);
+        }
+
+        if (BULK_LOAD_PROFILE.equals(profile)) {
+            // Fewer refreshes and no replica writes while a large crawl loads the index
+            applySettings(bulkLoadRefreshInterval, 0);
+            log.info("Applied bulk-load profile to {}: refresh every {}, no replicas", indexName, bulkLoadRefreshInterval);
+        } else {
+            applySettings(refreshInterval, replicas);
+        }
+    }
+
+    /**
+     * Undo the bulk-load profile so searches see new pages at the normal refresh interval
+     */
+    public void restoreSettings() {
+        if (!BULK_LOAD_PROFILE.equals(profile)) return;
+        try {
+            applySettings(refreshInterval, replicas);
+        } catch (IOException e) {
+            log.error("Failed to restore settings of {}: {}", indexName, e.getMessage());
+        }
+    }
+
+    private void create() throws IOException {
+        Map<String, Object> definition;
+        try (InputStream in = new ClassPathResource(DEFINITION).getInputStream()) {
+            definition = objectMapper.readValue(in, new TypeReference<>() {});
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> settings = new HashMap<>((Map<String, Object>) definition.get("settings"));
+        settings.put("number_of_shards", shards);
+        settings.put("number_of_replicas", replicas);
+        settings.put("refresh_interval", refreshInterval);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> mappings = (Map<String, Object>) definition.get("mappings");
+
+        client.indices().create(new CreateIndexRequest(indexName).settings(settings).mapping(mappings), RequestOptions.DEFAULT);
+        log.info("Created index {} with {} shards and {} replicas", indexName, shards, replicas);
+    }
+
+    private void applySettings(String refresh, int replicaCount) throws IOException {
+        UpdateSettingsRequest request = new UpdateSettingsRequest(indexName).settings(Settings.builder()
+                .put("index.refresh_interval", refresh)
+                .put("index.number_of_replicas", replicaCount)
+                .build());
+        client.indices().putSettings(request, RequestOptions.DEFAULT);
+    }
+
+    /**
+     * Migrate in the background; until it finishes the alias keeps pointing at the old indices
+     */
+    private void startMigration(String[] from, boolean removeOld) {
+        Thread migration = new Thread(() -> {
+            try {
+                migrate(from, removeOld);
+            } catch (Exception e) {
+                log.error("Migration of {} into {} failed, alias {} left unchanged: {}",
+                        String.join(",", from), indexName, ALIAS, e.getMessage());
+            }
+        }, "web-pages-migration");
+        migration.setDaemon(true);
+        migration.start();
+    }
+
+    /**
+     * Copy the documents of the old indices into the new one, check the copy, then point the
+     * alias at it.
+     *
+     * @param removeOld delete the old index in the same alias update; needed when its name is the alias
+     */
+    private void migrate(String[] from, boolean removeOld) throws IOException {
+        log.info("Reindexing {} into {}", String.join(",", from), indexName);
+
+        ReindexRequest reindex = new ReindexRequest()
+                .setSourceIndices(from)
+                .setDestIndex(indexName)
+                .setSourceBatchSize(1000)
+                .setRefresh(true);
+
+        // Run as a task and poll it, a large reindex outlives the client socket timeout
+        TaskSubmissionResponse task = client.submitReindexTask(reindex, RequestOptions.DEFAULT);
+        JsonNode result = awaitTask(task.getTask());
+
+        // Any error, failed document or missing document leaves the old index as the only complete copy
+        if (result.hasNonNull("error")) {
+            throw new IOException("Reindex task failed: " + result.get("error"));
+        }
+        JsonNode failures = result.path("response").path("failures");
+        if (!failures.isEmpty()) {
+            throw new IOException(failures.size() + " documents failed to reindex, first: " + failures.get(0));
+        }
+        long expected = client.count(new CountRequest(from), RequestOptions.DEFAULT).getCount();
+        long copied = client.count(new CountRequest(indexName), RequestOptions.DEFAULT).getCount();
+        if (copied < expected) {
+            throw new IOException("Copied " + copied + " of " + expected + " documents; stop the crawlers and restart to migrate again");
+        }
+
+        IndicesAliasesRequest aliases = new IndicesAliasesRequest();
+        if (removeOld) {
+            aliases.addAliasAction(AliasActions.removeIndex().indices(from));
+        } else {
+            aliases.addAliasAction(AliasActions.remove().indices(from).alias(ALIAS));
+        }
+        aliases.addAliasAction(AliasActions.add().index(indexName).alias(ALIAS));
+        client.indices().updateAliases(aliases, RequestOptions.DEFAULT);
+
+        log.info("Alias {} now points to {} with {} documents", ALIAS, indexName, copied);
+    }
+
+    /**
+     * Poll a task until it completes and return the stored task result, which holds its error
+     * and failures; the high level client's task response leaves those out
+     */
+    private JsonNode awaitTask(String taskId) throws IOException {
+        while (true) {
+            Response response = client.getLowLevelClient().performRequest(new Request("GET", "/_tasks/" + taskId));
+            JsonNode status;
+            try (InputStream in = response.getEntity().getContent()) {
+                status = objectMapper.readTree(in);
+            }
+            if (status.path("completed").asBoolean()) return status;
+
+            try {
+                Thread.sleep(migratePollMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reindexing into " + indexName, e);
+            }
+        }
+    }
+}
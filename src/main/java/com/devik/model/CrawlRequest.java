@@ -6,4 +6,6 @@ import lombok.Data;
 public class CrawlRequest {
     private String url;
     private int depth;
+    // Number of times the fetch was delayed because the host throttled us
+    private int attempt;
 }
@@ -7,4 +7,15 @@ public class SearchRequest {
     private String query;
     private int limit = 10;
     private int page = 0;
+
+    // Return a cursor with each result, for paging through a point in time (Elasticsearch only)
+    private boolean withCursors;
+
+    // Cursor of the last result of the previous page; when set, page is ignored
+    private String cursor;
+
+    // Vector search tuning, ignored by Elasticsearch; null uses the configured defaults
+    private Integer hnswEf;
+    private Boolean exact;
+    private Float scoreThreshold;
 }
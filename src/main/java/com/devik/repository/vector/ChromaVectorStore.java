@@ -41,7 +41,7 @@ public class ChromaVectorStore implements VectorStore {
 
 
     @Override
-    public List<Map<String, Object>> query(List<Float> embedding, int topK) {
+    public List<Map<String, Object>> query(float[] embedding, int topK) {
         String url = chromaDbUrl + "/api/v1/collections/" + COLLECTION_NAME + "/query";
 
         HttpHeaders headers = new HttpHeaders();
@@ -70,5 +70,20 @@ public class ChromaVectorStore implements VectorStore {
         }
     }
 
+    @Override
+    public void delete(List<UUID> ids) {
+        String url = chromaDbUrl + "/api/v1/collections/" + COLLECTION_NAME + "/delete";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        HttpEntity<Map<String, Object>> request = new HttpEntity<>(Map.of("ids", ids), headers);
+        ResponseEntity<String> response = restTemplate.postForEntity(url, request, String.class);
+
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            throw new RuntimeException("Failed to delete embeddings: " + response.getStatusCode());
+        }
+    }
+
 }
 
@@ -0,0 +1,285 @@
+package com.devik.repository.vector;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * VectorStore that runs inside the JVM, for single-node deployments and tests.
+ * <p>
+ * Vectors and the graph live in an {@link HnswIndex} over memory-mapped segments under the
+ * configured path, payloads in a {@link PayloadLog} next to them. A checkpoint forces both to
+ * disk and only then records how much of them is complete in the header, which has two slots
+ * written in turn so a torn write leaves the previous one intact. Startup maps the segments
+ * back as they are and ignores everything past the last checkpoint, so a crash loses at most
+ * one checkpoint interval of inserts and the graph is never rebuilt. Nodes replaced by a newer
+ * vector for the same id are only flagged deleted once the checkpoint that makes the newer one
+ * durable has written its header; the OS may write mapped pages back at any time, and an
+ * earlier flag would lose the page in a crash.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "crawler.vector.store", havingValue = "embedded")
+public class EmbeddedVectorStore implements VectorStore {
+
+    private static final int MAGIC = 0x484E5357;
+    private static final int VERSION = 1;
+    private static final int HEADER_SLOT_BYTES = 64;
+
+    private final Path directory;
+    private final int dimensions;
+    private final int m;
+    private final int efSearch;
+    private final HnswIndex index;
+    private final PayloadLog payloads;
+    private final FileChannel header;
+    private final Map<UUID, Integer> nodes = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> payloadOffsets = new ConcurrentHashMap<>();
+    // Replaced nodes, flagged deleted by the next checkpoint
+    private final Set<Integer> replacedNodes = ConcurrentHashMap.newKeySet();
+    // Inserts share the lock, a checkpoint takes it alone
+    private final ReadWriteLock writeLock = new ReentrantReadWriteLock();
+    private final AtomicLong changes = new AtomicLong();
+    private final ScheduledExecutorService checkpointer;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private long checkpointedChanges;
+    private long sequence;
+
+    public EmbeddedVectorStore(
+            @Value("${crawler.vector.embedded.path:data/vectors}") String path,
+            @Value("${crawler.vector.embedded.vector-size:384}") int dimensions,
+            @Value("${crawler.vector.embedded.m:16}") int m,
+            @Value("${crawler.vector.embedded.ef-construct:100}") int efConstruction,
+            @Value("${crawler.vector.embedded.ef-search:64}") int efSearch,
+            @Value("${crawler.vector.embedded.checkpoint-interval-ms:5000}") long checkpointMillis
+    ) {
+        this.directory = Path.of(path);
+        this.dimensions = dimensions;
+        this.m = m;
+        this.efSearch = efSearch;
+
+        try {
+            Files.createDirectories(directory);
+            this.header = FileChannel.open(directory.resolve("index.header"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Checkpoint checkpoint = readHeader();
+            this.index = new HnswIndex(directory, dimensions, m, efConstruction, checkpoint.snapshot());
+            this.payloads = new PayloadLog(directory.resolve("payloads.log"), checkpoint.payloadBytes());
+            loadPayloadOffsets();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open vector index in " + directory, e);
+        }
+        log.info("Opened vector index in {} with {} vectors", directory, nodes.size());
+
+        this.checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vector-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpoint, checkpointMillis, checkpointMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void loadPayloadOffsets() throws IOException {
+        int size = index.size();
+        payloads.forEach(entry -> {
+            if (entry.node() >= size || index.isDeleted(entry.node())) return;
+            Integer previous = nodes.put(entry.id(), entry.node());
+            // The delete of a replaced vector may not have reached the last checkpoint
+            if (previous != null) {
+                index.markDeleted(previous);
+                payloadOffsets.remove(previous);
+            }
+            payloadOffsets.put(entry.node(), entry.offset());
+        });
+    }
+
+    @Override
+    public void insert(UUID id, float[] embedding, Map<String, Object> metadata) {
+        writeLock.readLock().lock();
+        try {
+            int node = index.add(embedding);
+            payloadOffsets.put(node, payloads.append(node, id, objectMapper.writeValueAsBytes(metadata)));
+
+            // Replace an earlier vector with the same id; without a payload it is left out of results
+            Integer previous = nodes.put(id, node);
+            if (previous != null) {
+                payloadOffsets.remove(previous);
+                replacedNodes.add(previous);
+            }
+            changes.incrementAndGet();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store vector " + id, e);
+        } finally {
+            writeLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> query(float[] embedding, int topK) {
+        return query(embedding, topK, VectorSearchOptions.DEFAULT);
+    }
+
+    @Override
+    public List<Map<String, Object>> query(float[] embedding, int topK, VectorSearchOptions options) {
+        int ef = options.hnswEf() != null && options.hnswEf() > 0 ? options.hnswEf() : efSearch;
+        boolean exact = Boolean.TRUE.equals(options.exact());
+        // Replaced nodes not yet flagged can still take places among the hits
+        int extra = Math.min(topK, replacedNodes.size());
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (HnswIndex.Hit hit : index.search(embedding, topK + extra, ef, exact)) {
+            if (results.size() == topK) break;
+            if (hit.score() <= 0) continue;
+            if (options.scoreThreshold() != null && hit.score() < options.scoreThreshold()) continue;
+
+            // Null while the insert that added the node is still writing its payload
+            Long offset = payloadOffsets.get(hit.node());
+            if (offset == null) continue;
+            try {
+                Map<String, Object> result = objectMapper.readValue(payloads.read(offset), new TypeReference<HashMap<String, Object>>() {});
+                result.put("score", hit.score());
+                results.add(result);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read payload of vector node " + hit.node(), e);
+            }
+        }
+        log.debug("Found {} results", results.size());
+        return results;
+    }
+
+    @Override
+    public void delete(List<UUID> ids) {
+        writeLock.readLock().lock();
+        try {
+            for (UUID id : ids) {
+                Integer node = nodes.remove(id);
+                if (node == null) continue;
+                index.markDeleted(node);
+                payloadOffsets.remove(node);
+                changes.incrementAndGet();
+            }
+        } finally {
+            writeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Make everything inserted so far survive a crash
+     */
+    public synchronized void checkpoint() {
+        // Inserts wait while pages are flushed, so every replaced node has its replacement
+        // within the snapshot
+        writeLock.writeLock().lock();
+        try {
+            long pending = changes.get();
+            if (pending == checkpointedChanges) return;
+
+            HnswIndex.Snapshot snapshot = index.snapshot();
+            index.force();
+            payloads.force();
+            writeHeader(snapshot, payloads.size());
+            checkpointedChanges = pending;
+
+            // Only now that the replacements are durable may the old nodes be flagged; the flags
+            // reach disk with a later checkpoint, and startup flags any that did not
+            replacedNodes.forEach(index::markDeleted);
+            replacedNodes.clear();
+            log.debug("Checkpointed {} vectors", snapshot.size());
+        } catch (IOException e) {
+            log.error("Failed to checkpoint vector index in {}", directory, e);
+        } finally {
+            writeLock.writeLock().unlock();
+        }
+    }
+
+    private record Checkpoint(HnswIndex.Snapshot snapshot, long payloadBytes) {}
+
+    // Slot layout: magic, version, sequence, dimensions, m, size, upper blocks, entry node,
+    // max level, payload bytes, then a CRC of all of it
+    private Checkpoint readHeader() throws IOException {
+        Checkpoint latest = new Checkpoint(HnswIndex.Snapshot.EMPTY, 0);
+        for (int slot = 0; slot < 2; slot++) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SLOT_BYTES);
+            header.read(buffer, (long) slot * HEADER_SLOT_BYTES);
+            if (buffer.position() < HEADER_SLOT_BYTES) continue;
+            buffer.flip();
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, 48);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(48) != (int) crc.getValue()) continue;
+
+            buffer.position(8);
+            long slotSequence = buffer.getLong();
+            if (slotSequence < sequence) continue;
+            int storedDimensions = buffer.getInt();
+            int storedM = buffer.getInt();
+            if (storedDimensions != dimensions || storedM != m) {
+                throw new IllegalStateException("Vector index in " + directory + " was built with " + storedDimensions
+                        + " dimensions and m=" + storedM + ", configured " + dimensions + " and m=" + m);
+            }
+            HnswIndex.Snapshot snapshot = new HnswIndex.Snapshot(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+            latest = new Checkpoint(snapshot, buffer.getLong());
+            sequence = slotSequence;
+        }
+        return latest;
+    }
+
+    private void writeHeader(HnswIndex.Snapshot snapshot, long payloadBytes) throws IOException {
+        long next = sequence + 1;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SLOT_BYTES);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(next)
+                .putInt(dimensions).putInt(m)
+                .putInt(snapshot.size()).putInt(snapshot.upperBlocks())
+                .putInt(snapshot.entryNode()).putInt(snapshot.maxLevel())
+                .putLong(payloadBytes);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, 48);
+        buffer.putInt((int) crc.getValue());
+        buffer.clear();
+
+        long position = (next % 2) * HEADER_SLOT_BYTES;
+        while (buffer.hasRemaining()) {
+            header.write(buffer, position + buffer.position());
+        }
+        header.force(false);
+        sequence = next;
+    }
+
+    @PreDestroy
+    public void close() {
+        checkpointer.shutdown();
+        checkpoint();
+        try {
+            index.close();
+            payloads.close();
+            header.close();
+        } catch (IOException e) {
+            log.error("Failed to close vector index in {}", directory, e);
+        }
+    }
+}
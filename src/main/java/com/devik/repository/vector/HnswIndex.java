@@ -0,0 +1,604 @@
+package com.devik.repository.vector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Hierarchical navigable small world graph over memory-mapped vectors.
+ * <p>
+ * Vectors are normalized on insert, so cosine similarity is a plain dot product. Every node has
+ * a fixed record holding its flags, its level and its level-0 links; a node above level 0 also
+ * owns one block of links per upper level. Inserts run concurrently and lock only the link
+ * lists they change. Searches take no locks; one that reads a list mid-update loses a little
+ * recall, never correctness, because every id ever written to a list has its vector in place.
+ */
+final class HnswIndex implements Closeable {
+
+    /**
+     * Counters that describe a consistent index; everything past them is ignored on reopen
+     */
+    record Snapshot(int size, int upperBlocks, int entryNode, int maxLevel) {
+        static final Snapshot EMPTY = new Snapshot(0, 0, -1, -1);
+    }
+
+    record Hit(int node, float score) {}
+
+    private static final int SEGMENT_NODES = 1 << 15;
+    private static final int MAX_LEVEL = 15;
+    private static final int DELETED = 1;
+    private static final int LOCK_STRIPES = 1024;
+    private static final int SCAN_CHUNK = 4096;
+    private static final long NO_ENTRY = -1L;
+
+    // Node record: flags, level, first upper block, level-0 link count, level-0 links
+    private static final int FLAGS = 0;
+    private static final int LEVEL = 4;
+    private static final int UPPER = 8;
+    private static final int LINKS = 12;
+
+    private final int dimensions;
+    private final int m;
+    private final int m0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final MappedSegments vectors;
+    private final MappedSegments nodes;
+    private final MappedSegments upper;
+    private final AtomicInteger size;
+    private final AtomicInteger upperBlocks;
+    // Max level in the high half and entry node in the low half, so both change together
+    private final AtomicLong entry;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final ThreadLocal<SearchState> searchStates;
+
+    HnswIndex(Path directory, int dimensions, int m, int efConstruction, Snapshot snapshot) throws IOException {
+        this.dimensions = dimensions;
+        this.m = m;
+        this.m0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.vectors = new MappedSegments(directory, "vectors", dimensions * 4, SEGMENT_NODES);
+        this.nodes = new MappedSegments(directory, "nodes", LINKS + 4 + m0 * 4, SEGMENT_NODES);
+        this.upper = new MappedSegments(directory, "upper", 4 + m * 4, SEGMENT_NODES);
+        this.size = new AtomicInteger(snapshot.size());
+        this.upperBlocks = new AtomicInteger(snapshot.upperBlocks());
+        this.entry = new AtomicLong(snapshot.entryNode() < 0 ? NO_ENTRY : pack(snapshot.maxLevel(), snapshot.entryNode()));
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        this.searchStates = ThreadLocal.withInitial(() -> new SearchState(dimensions, m0));
+    }
+
+    /**
+     * Add a vector and link it into the graph; returns its node id
+     */
+    int add(float[] vector) {
+        float[] query = normalize(vector);
+        int node = size.getAndIncrement();
+        int level = randomLevel();
+
+        vectors.floats(node).put(vectors.offset(node) / 4, query);
+        ByteBuffer record = nodes.segment(node);
+        int offset = nodes.offset(node);
+        record.putInt(offset + FLAGS, 0);
+        record.putInt(offset + LEVEL, level);
+        record.putInt(offset + LINKS, 0);
+        if (level > 0) {
+            int first = upperBlocks.getAndAdd(level);
+            record.putInt(offset + UPPER, first);
+            for (int block = first; block < first + level; block++) {
+                upper.segment(block).putInt(upper.offset(block), 0);
+            }
+        } else {
+            record.putInt(offset + UPPER, -1);
+        }
+
+        connect(node, query, level);
+        return node;
+    }
+
+    private void connect(int node, float[] query, int level) {
+        long current = entry.get();
+        if (current == NO_ENTRY) {
+            if (entry.compareAndSet(NO_ENTRY, pack(level, node))) return;
+            current = entry.get();
+        }
+        int maxLevel = (int) (current >>> 32);
+        SearchState state = searchStates.get();
+
+        int nearest = (int) current;
+        for (int l = maxLevel; l > level; l--) {
+            nearest = greedy(query, nearest, l, state);
+        }
+        float nearestDistance = distance(query, nearest, state);
+
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            NodeHeap found = searchLayer(query, nearest, nearestDistance, efConstruction, l, state);
+
+            // Drain the furthest-first heap into closest-first arrays. A concurrent insert may
+            // already have linked this node, so it can find itself.
+            int count = 0;
+            int[] candidates = new int[found.size()];
+            float[] distances = new float[found.size()];
+            for (int i = found.size() - 1; i >= 0; i--) {
+                float d = found.topDistance();
+                int candidate = found.pop();
+                if (candidate == node) continue;
+                candidates[count] = candidate;
+                distances[count++] = d;
+            }
+            if (count == 0) continue;
+            reverse(candidates, distances, count);
+            nearest = candidates[0];
+            nearestDistance = distances[0];
+
+            int selected = selectNeighbors(candidates, distances, count, m, state);
+            synchronized (lock(node)) {
+                writeLinks(node, l, candidates, selected);
+            }
+            for (int i = 0; i < selected; i++) {
+                addLink(candidates[i], node, l, state);
+            }
+        }
+
+        // Raise the entry point unless another insert already went higher
+        while (level > maxLevel) {
+            if (entry.compareAndSet(current, pack(level, node))) break;
+            current = entry.get();
+            maxLevel = (int) (current >>> 32);
+        }
+    }
+
+    /**
+     * Keep candidates that are closer to the base node than to any neighbour already kept,
+     * which spreads links in different directions. Candidates must be sorted closest first;
+     * the kept ones are moved to the front and their count returned.
+     */
+    private int selectNeighbors(int[] candidates, float[] distances, int count, int limit, SearchState state) {
+        int kept = 0;
+        for (int i = 0; i < count && kept < limit; i++) {
+            boolean diverse = true;
+            for (int j = 0; j < kept && diverse; j++) {
+                diverse = distanceBetween(candidates[i], candidates[j], state) >= distances[i];
+            }
+            if (!diverse) continue;
+
+            int node = candidates[kept];
+            float distance = distances[kept];
+            candidates[kept] = candidates[i];
+            distances[kept] = distances[i];
+            candidates[i] = node;
+            distances[i] = distance;
+            kept++;
+        }
+        return kept;
+    }
+
+    private void addLink(int neighbor, int node, int level, SearchState state) {
+        int capacity = level == 0 ? m0 : m;
+        synchronized (lock(neighbor)) {
+            int[] links = state.pruneLinks;
+            int count = readLinks(neighbor, level, links);
+            for (int i = 0; i < count; i++) {
+                if (links[i] == node) return;
+            }
+            links[count++] = node;
+            if (count <= capacity) {
+                writeLinks(neighbor, level, links, count);
+                return;
+            }
+
+            // Full: choose again among the old links and the new node
+            float[] distances = state.pruneDistances;
+            readVector(neighbor, state.right);
+            for (int i = 0; i < count; i++) {
+                readVector(links[i], state.left);
+                distances[i] = 1 - dot(state.right, state.left);
+            }
+            sortByDistance(links, distances, count);
+            writeLinks(neighbor, level, links, selectNeighbors(links, distances, count, capacity, state));
+        }
+    }
+
+    private int greedy(float[] query, int start, int level, SearchState state) {
+        int limit = size.get();
+        int nearest = start;
+        float nearestDistance = distance(query, start, state);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int count = readLinks(nearest, level, state.links);
+            for (int i = 0; i < count; i++) {
+                int candidate = state.links[i];
+                if (candidate < 0 || candidate >= limit) continue;
+                float d = distance(query, candidate, state);
+                if (d < nearestDistance) {
+                    nearest = candidate;
+                    nearestDistance = d;
+                    changed = true;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Best-first search of one level; returns up to ef nodes, furthest on top
+     */
+    private NodeHeap searchLayer(float[] query, int start, float startDistance, int ef, int level, SearchState state) {
+        int limit = size.get();
+        state.startVisit(limit);
+        NodeHeap candidates = state.candidates.clear();
+        NodeHeap results = state.results.clear();
+
+        state.visit(start);
+        candidates.push(start, -startDistance);
+        results.push(start, startDistance);
+        while (candidates.size() > 0) {
+            if (results.size() >= ef && -candidates.topDistance() > results.topDistance()) break;
+            int current = candidates.pop();
+
+            int count = readLinks(current, level, state.links);
+            for (int i = 0; i < count; i++) {
+                int neighbor = state.links[i];
+                // Ids at or past the limit are links to vectors lost with an unfinished checkpoint
+                if (neighbor < 0 || neighbor >= limit || !state.visit(neighbor)) continue;
+
+                float d = distance(query, neighbor, state);
+                if (results.size() < ef || d < results.topDistance()) {
+                    candidates.push(neighbor, -d);
+                    results.push(neighbor, d);
+                    if (results.size() > ef) results.pop();
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The k most similar live vectors, best first
+     *
+     * @param ef    candidates explored on level 0, raised to k if lower
+     * @param exact compare against every vector instead of walking the graph
+     */
+    List<Hit> search(float[] vector, int k, int ef, boolean exact) {
+        float[] query = normalize(vector);
+        if (exact) return scan(query, k);
+
+        long current = entry.get();
+        if (current == NO_ENTRY) return List.of();
+
+        SearchState state = searchStates.get();
+        int nearest = (int) current;
+        for (int l = (int) (current >>> 32); l > 0; l--) {
+            nearest = greedy(query, nearest, l, state);
+        }
+        NodeHeap results = searchLayer(query, nearest, distance(query, nearest, state), Math.max(ef, k), 0, state);
+
+        List<Hit> hits = new ArrayList<>(results.size());
+        while (results.size() > 0) {
+            float d = results.topDistance();
+            int node = results.pop();
+            if (!isDeleted(node)) hits.add(new Hit(node, 1 - d));
+        }
+        Collections.reverse(hits);
+        return hits.size() > k ? hits.subList(0, k) : hits;
+    }
+
+    /**
+     * Brute-force search, split into chunks scanned in parallel
+     */
+    private List<Hit> scan(float[] query, int k) {
+        int limit = size.get();
+        return IntStream.range(0, (limit + SCAN_CHUNK - 1) / SCAN_CHUNK)
+                .parallel()
+                .mapToObj(chunk -> {
+                    NodeHeap top = new NodeHeap();
+                    float[] vector = new float[dimensions];
+                    for (int node = chunk * SCAN_CHUNK; node < Math.min(limit, (chunk + 1) * SCAN_CHUNK); node++) {
+                        if (isDeleted(node)) continue;
+                        readVector(node, vector);
+                        float d = 1 - dot(query, vector);
+                        if (top.size() < k || d < top.topDistance()) {
+                            top.push(node, d);
+                            if (top.size() > k) top.pop();
+                        }
+                    }
+                    List<Hit> hits = new ArrayList<>(top.size());
+                    while (top.size() > 0) {
+                        float d = top.topDistance();
+                        hits.add(new Hit(top.pop(), 1 - d));
+                    }
+                    return hits;
+                })
+                .flatMap(List::stream)
+                .sorted(Comparator.comparingDouble(Hit::score).reversed())
+                .limit(k)
+                .toList();
+    }
+
+    void markDeleted(int node) {
+        synchronized (lock(node)) {
+            ByteBuffer record = nodes.segment(node);
+            int offset = nodes.offset(node) + FLAGS;
+            record.putInt(offset, record.getInt(offset) | DELETED);
+        }
+    }
+
+    boolean isDeleted(int node) {
+        return (nodes.segment(node).getInt(nodes.offset(node) + FLAGS) & DELETED) != 0;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Only consistent while no insert is running
+     */
+    Snapshot snapshot() {
+        long current = entry.get();
+        return current == NO_ENTRY
+                ? new Snapshot(size.get(), upperBlocks.get(), -1, -1)
+                : new Snapshot(size.get(), upperBlocks.get(), (int) current, (int) (current >>> 32));
+    }
+
+    /**
+     * Write dirty vector and graph pages to disk
+     */
+    void force() {
+        vectors.force();
+        nodes.force();
+        upper.force();
+    }
+
+    private int readLinks(int node, int level, int[] out) {
+        ByteBuffer buffer;
+        int offset;
+        if (level == 0) {
+            buffer = nodes.segment(node);
+            offset = nodes.offset(node) + LINKS;
+        } else {
+            ByteBuffer record = nodes.segment(node);
+            int base = nodes.offset(node);
+            // A stale link after reopen can point at a reused id that no longer reaches this level
+            if (record.getInt(base + LEVEL) < level) return 0;
+            int block = record.getInt(base + UPPER) + level - 1;
+            buffer = upper.segment(block);
+            offset = upper.offset(block);
+        }
+
+        int count = Math.max(0, Math.min(buffer.getInt(offset), level == 0 ? m0 : m));
+        for (int i = 0; i < count; i++) {
+            out[i] = buffer.getInt(offset + 4 + i * 4);
+        }
+        return count;
+    }
+
+    // Links first, count last, so a concurrent reader never sees a count past the written ids
+    private void writeLinks(int node, int level, int[] links, int count) {
+        ByteBuffer buffer;
+        int offset;
+        if (level == 0) {
+            buffer = nodes.segment(node);
+            offset = nodes.offset(node) + LINKS;
+        } else {
+            int block = nodes.segment(node).getInt(nodes.offset(node) + UPPER) + level - 1;
+            buffer = upper.segment(block);
+            offset = upper.offset(block);
+        }
+
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(offset + 4 + i * 4, links[i]);
+        }
+        buffer.putInt(offset, count);
+    }
+
+    private void readVector(int node, float[] out) {
+        vectors.floats(node).get(vectors.offset(node) / 4, out);
+    }
+
+    private float distance(float[] query, int node, SearchState state) {
+        readVector(node, state.left);
+        return 1 - dot(query, state.left);
+    }
+
+    private float distanceBetween(int a, int b, SearchState state) {
+        readVector(a, state.left);
+        readVector(b, state.right);
+        return 1 - dot(state.left, state.right);
+    }
+
+    /**
+     * Dot product over plain arrays with four independent sums, a shape the JIT unrolls and
+     * vectorizes; vectors are bulk-copied out of their segment first
+     */
+    static float dot(float[] a, float[] b) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int bound = a.length & ~3; i < bound; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private float[] normalize(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected a vector of " + dimensions + " dimensions, got " + vector.length);
+        }
+        float norm = (float) Math.sqrt(dot(vector, vector));
+        float[] normalized = new float[dimensions];
+        if (norm == 0) return normalized;
+        for (int i = 0; i < dimensions; i++) {
+            normalized[i] = vector[i] / norm;
+        }
+        return normalized;
+    }
+
+    private int randomLevel() {
+        double level = -Math.log(ThreadLocalRandom.current().nextDouble()) * levelMultiplier;
+        return (int) Math.min(MAX_LEVEL, level);
+    }
+
+    private Object lock(int node) {
+        return locks[node & (LOCK_STRIPES - 1)];
+    }
+
+    private static long pack(int level, int node) {
+        return ((long) level << 32) | (node & 0xFFFFFFFFL);
+    }
+
+    private static void reverse(int[] nodes, float[] distances, int count) {
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            int node = nodes[i];
+            nodes[i] = nodes[j];
+            nodes[j] = node;
+            float distance = distances[i];
+            distances[i] = distances[j];
+            distances[j] = distance;
+        }
+    }
+
+    private static void sortByDistance(int[] nodes, float[] distances, int count) {
+        for (int i = 1; i < count; i++) {
+            int node = nodes[i];
+            float distance = distances[i];
+            int j = i - 1;
+            while (j >= 0 && distances[j] > distance) {
+                nodes[j + 1] = nodes[j];
+                distances[j + 1] = distances[j];
+                j--;
+            }
+            nodes[j + 1] = node;
+            distances[j + 1] = distance;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        vectors.close();
+        nodes.close();
+        upper.close();
+    }
+
+    /**
+     * Per-thread scratch space, so searches allocate nothing per visited node
+     */
+    private static final class SearchState {
+        final float[] left;
+        final float[] right;
+        final int[] links;
+        final int[] pruneLinks;
+        final float[] pruneDistances;
+        final NodeHeap candidates = new NodeHeap();
+        final NodeHeap results = new NodeHeap();
+        int[] visited = new int[0];
+        int mark;
+
+        SearchState(int dimensions, int m0) {
+            this.left = new float[dimensions];
+            this.right = new float[dimensions];
+            this.links = new int[m0];
+            this.pruneLinks = new int[m0 + 1];
+            this.pruneDistances = new float[m0 + 1];
+        }
+
+        void startVisit(int limit) {
+            if (visited.length < limit) {
+                visited = new int[Math.max(limit, visited.length * 2)];
+                mark = 0;
+            }
+            if (++mark == Integer.MAX_VALUE) {
+                Arrays.fill(visited, 0);
+                mark = 1;
+            }
+        }
+
+        /**
+         * Mark a node visited; false if it already was
+         */
+        boolean visit(int node) {
+            if (visited[node] == mark) return false;
+            visited[node] = mark;
+            return true;
+        }
+    }
+
+    /**
+     * Binary max-heap of nodes by distance; push negated distances to use it as a min-heap
+     */
+    private static final class NodeHeap {
+        private int[] nodes = new int[64];
+        private float[] distances = new float[64];
+        private int size;
+
+        NodeHeap clear() {
+            size = 0;
+            return this;
+        }
+
+        int size() {
+            return size;
+        }
+
+        float topDistance() {
+            return distances[0];
+        }
+
+        void push(int node, float distance) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (distances[parent] >= distance) break;
+                nodes[i] = nodes[parent];
+                distances[i] = distances[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            distances[i] = distance;
+        }
+
+        /**
+         * Remove the top and return its node
+         */
+        int pop() {
+            int top = nodes[0];
+            int lastNode = nodes[--size];
+            float last = distances[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && distances[child + 1] > distances[child]) child++;
+                if (distances[child] <= last) break;
+                nodes[i] = nodes[child];
+                distances[i] = distances[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            distances[i] = last;
+            return top;
+        }
+    }
+}
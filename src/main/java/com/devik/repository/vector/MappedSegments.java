@@ -0,0 +1,120 @@
+package com.devik.repository.vector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fixed-size records spread over memory-mapped segment files named {@code <prefix>-<n>.seg}.
+ * <p>
+ * Each segment holds a fixed number of records and is mapped whole, so records live off-heap
+ * and are paged in by the OS. Segments are created sparse on first use. Records are read and
+ * written with absolute buffer operations, which are safe to call from several threads. Files
+ * are little-endian whatever the platform.
+ */
+final class MappedSegments implements Closeable {
+
+    private record Segment(MappedByteBuffer bytes, FloatBuffer floats) {}
+
+    private final Path directory;
+    private final String prefix;
+    private final int recordBytes;
+    private final int recordsPerSegment;
+    private final List<FileChannel> channels = new ArrayList<>();
+    private volatile Segment[] segments = new Segment[0];
+
+    MappedSegments(Path directory, String prefix, int recordBytes, int recordsPerSegment) throws IOException {
+        if ((long) recordBytes * recordsPerSegment > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment of " + recordsPerSegment + " records of " + recordBytes + " bytes is too large");
+        }
+        this.directory = directory;
+        this.prefix = prefix;
+        this.recordBytes = recordBytes;
+        this.recordsPerSegment = recordsPerSegment;
+
+        Files.createDirectories(directory);
+        while (Files.exists(path(segments.length))) {
+            map(segments.length);
+        }
+    }
+
+    /**
+     * The segment holding a record, mapping new segments as needed
+     */
+    MappedByteBuffer segment(int record) {
+        return find(record).bytes();
+    }
+
+    /**
+     * The segment holding a record as floats; index it with {@code offset(record) / 4}
+     */
+    FloatBuffer floats(int record) {
+        return find(record).floats();
+    }
+
+    private Segment find(int record) {
+        int index = record / recordsPerSegment;
+        Segment[] current = segments;
+        return index < current.length ? current[index] : grow(index);
+    }
+
+    /**
+     * Byte offset of a record within its segment
+     */
+    int offset(int record) {
+        return (record % recordsPerSegment) * recordBytes;
+    }
+
+    private synchronized Segment grow(int index) {
+        try {
+            while (segments.length <= index) {
+                map(segments.length);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to map segment " + path(index), e);
+        }
+        return segments[index];
+    }
+
+    private void map(int index) throws IOException {
+        FileChannel channel = FileChannel.open(path(index),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channels.add(channel);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordBytes * recordsPerSegment);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        Segment[] grown = Arrays.copyOf(segments, index + 1);
+        grown[index] = new Segment(buffer, buffer.asFloatBuffer());
+        segments = grown;
+    }
+
+    private Path path(int index) {
+        return directory.resolve(prefix + "-" + index + ".seg");
+    }
+
+    /**
+     * Write dirty pages of every segment to disk
+     */
+    void force() {
+        for (Segment segment : segments) {
+            segment.bytes().force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        for (FileChannel channel : channels) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.devik.repository.vector;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Append-only file of vector payloads.
+ * <p>
+ * Each record is the node id, the point id, the payload length and the payload bytes. The file
+ * is cut back to the length recorded at the last checkpoint when opened, so records written
+ * after it never come back.
+ */
+final class PayloadLog implements Closeable {
+
+    record Entry(int node, UUID id, long offset) {}
+
+    private static final int HEADER_BYTES = 4 + 16 + 4;
+
+    private final FileChannel channel;
+    private long size;
+
+    PayloadLog(Path path, long committedBytes) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.size = Math.min(committedBytes, channel.size());
+        channel.truncate(size);
+    }
+
+    /**
+     * Append a payload; returns the offset to read it back from
+     */
+    synchronized long append(int node, UUID id, byte[] payload) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.putInt(node)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .putInt(payload.length)
+                .put(payload)
+                .flip();
+
+        long offset = size;
+        long position = offset;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        size = position;
+        return offset;
+    }
+
+    byte[] read(long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(length, offset + HEADER_BYTES - 4);
+        ByteBuffer payload = ByteBuffer.allocate(length.flip().getInt());
+        readFully(payload, offset + HEADER_BYTES);
+        return payload.array();
+    }
+
+    /**
+     * Visit every record in file order; a later record for the same id supersedes earlier ones
+     */
+    void forEach(Consumer<Entry> consumer) throws IOException {
+        long end = size();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(0)), 1 << 16));
+        long offset = 0;
+        while (offset < end) {
+            int node = in.readInt();
+            UUID id = new UUID(in.readLong(), in.readLong());
+            int length = in.readInt();
+            in.skipNBytes(length);
+            consumer.accept(new Entry(node, id, offset));
+            offset += HEADER_BYTES + length;
+        }
+    }
+
+    synchronized long size() {
+        return size;
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new EOFException("Truncated payload record");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+}
@@ -0,0 +1,205 @@
+package com.devik.repository.vector;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.grpc.Points;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathers upserts and deletes from many callers into batched, pipelined updates.
+ * <p>
+ * A dispatcher sends a batch once batch-size writes are queued or linger-ms after the first
+ * one, keeping at most max-in-flight batches outstanding. A batch goes out as one update whose
+ * operations keep the order the writes were queued in, so a delete never overtakes an upsert
+ * queued before it. Without wait, Qdrant acknowledges a batch once it is in the write-ahead log
+ * instead of after it is applied, so a round trip costs little and throughput is bound by
+ * Qdrant itself. Callers block only when max-pending writes are already queued.
+ */
+@Slf4j
+final class QdrantBatchWriter {
+
+    /**
+     * One queued write: a point to upsert, or ids to delete
+     */
+    private record Pending(Points.PointStruct point, List<Points.PointId> deletes, CompletableFuture<Void> result) {}
+
+    private final QdrantClient client;
+    private final String collection;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final int maxInFlight;
+    private final boolean waitForApply;
+    private final Semaphore inFlight;
+    private final BlockingQueue<Pending> queue;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    QdrantBatchWriter(QdrantClient client, String collection, int batchSize, long lingerMillis,
+                      int maxInFlight, int maxPending, boolean waitForApply) {
+        this.client = client;
+        this.collection = collection;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.maxInFlight = maxInFlight;
+        this.waitForApply = waitForApply;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.queue = new ArrayBlockingQueue<>(maxPending);
+
+        this.dispatcher = new Thread(this::dispatch, "qdrant-writer");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Queue a point; the future completes when Qdrant accepts the batch holding it
+     */
+    CompletableFuture<Void> submit(Points.PointStruct point) {
+        return enqueue(point, null);
+    }
+
+    /**
+     * Queue a delete behind the writes already queued; the future completes when Qdrant accepts it
+     */
+    CompletableFuture<Void> delete(List<Points.PointId> ids) {
+        return enqueue(null, ids);
+    }
+
+    private CompletableFuture<Void> enqueue(Points.PointStruct point, List<Points.PointId> deletes) {
+        if (!running) return CompletableFuture.failedFuture(new IllegalStateException("Qdrant writer is closed"));
+
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        try {
+            queue.put(new Pending(point, deletes, result));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        return result;
+    }
+
+    private void dispatch() {
+        // Keep going after close until everything queued has been sent
+        while (running || !queue.isEmpty()) {
+            List<Pending> batch = new ArrayList<>(batchSize);
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    if (batch.size() >= batchSize) break;
+
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+
+                inFlight.acquire();
+                try {
+                    send(batch);
+                } catch (RuntimeException e) {
+                    // The client refused the request, so no callback will release the permit
+                    inFlight.release();
+                    fail(batch, e);
+                }
+            } catch (InterruptedException e) {
+                batch.forEach(pending -> pending.result().completeExceptionally(e));
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void send(List<Pending> batch) {
+        // Merge runs of upserts and runs of deletes, keeping the queue order between them
+        List<Points.PointsUpdateOperation> operations = new ArrayList<>();
+        List<Points.PointStruct> upserts = new ArrayList<>();
+        List<Points.PointId> deletes = new ArrayList<>();
+        for (Pending pending : batch) {
+            if (pending.point() != null) {
+                addDeletes(operations, deletes);
+                upserts.add(pending.point());
+            } else {
+                addUpserts(operations, upserts);
+                deletes.addAll(pending.deletes());
+            }
+        }
+        addDeletes(operations, deletes);
+        addUpserts(operations, upserts);
+
+        Points.UpdateBatchPoints request = Points.UpdateBatchPoints.newBuilder()
+                .setCollectionName(collection)
+                .addAllOperations(operations)
+                .setWait(waitForApply)
+                .build();
+
+        Futures.addCallback(client.batchUpdateAsync(request, null), new FutureCallback<>() {
+            @Override
+            public void onSuccess(List<Points.UpdateResult> result) {
+                inFlight.release();
+                batch.forEach(pending -> pending.result().complete(null));
+                log.debug("Sent batch of {} writes", batch.size());
+            }
+
+            @Override
+            public void onFailure(Throwable failure) {
+                inFlight.release();
+                fail(batch, failure);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private static void addUpserts(List<Points.PointsUpdateOperation> operations, List<Points.PointStruct> upserts) {
+        if (upserts.isEmpty()) return;
+        operations.add(Points.PointsUpdateOperation.newBuilder()
+                .setUpsert(Points.PointsUpdateOperation.PointStructList.newBuilder().addAllPoints(upserts))
+                .build());
+        upserts.clear();
+    }
+
+    private static void addDeletes(List<Points.PointsUpdateOperation> operations, List<Points.PointId> deletes) {
+        if (deletes.isEmpty()) return;
+        operations.add(Points.PointsUpdateOperation.newBuilder()
+                .setDeletePoints(Points.PointsUpdateOperation.DeletePoints.newBuilder()
+                        .setPoints(Points.PointsSelector.newBuilder()
+                                .setPoints(Points.PointsIdsList.newBuilder().addAllIds(deletes))))
+                .build());
+        deletes.clear();
+    }
+
+    private static void fail(List<Pending> batch, Throwable failure) {
+        log.error("Failed to send batch of {} writes: {}", batch.size(), failure.getMessage());
+        batch.forEach(pending -> pending.result().completeExceptionally(failure));
+    }
+
+    /**
+     * Send everything still queued and wait for outstanding upserts
+     */
+    void close(long timeoutMillis) {
+        running = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            dispatcher.join(Math.max(1, timeoutMillis));
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            if (!inFlight.tryAcquire(maxInFlight, remaining, TimeUnit.NANOSECONDS)) {
+                log.warn("Timed out waiting for Qdrant upserts to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -3,14 +3,21 @@ package com.devik.repository.vector;
 import io.qdrant.client.QdrantClient;
 import io.qdrant.client.QdrantGrpcClient;
 import io.qdrant.client.grpc.Collections;
+import io.qdrant.client.grpc.JsonWithInt;
 import io.qdrant.client.grpc.Points;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 
 import static io.qdrant.client.ValueFactory.value;
@@ -18,34 +25,130 @@ import static io.qdrant.client.VectorsFactory.vectors;
 
 @Slf4j
 @Component
+@ConditionalOnProperty(name = "crawler.vector.store", havingValue = "qdrant", matchIfMissing = true)
 public class QdrantVectorStore implements VectorStore {
 
     private static final String COLLECTION_NAME = "WEB_PAGES";
     private final QdrantClient client;
+    private final QdrantBatchWriter writer;
+    private final long closeTimeoutMillis;
 
-    public QdrantVectorStore() throws ExecutionException, InterruptedException {
+    @Value("${crawler.vector.qdrant.collection.vector-size:384}")
+    private int vectorSize;
+
+    @Value("${crawler.vector.qdrant.collection.hnsw-m:16}")
+    private int hnswM;
+
+    @Value("${crawler.vector.qdrant.collection.hnsw-ef-construct:100}")
+    private int hnswEfConstruct;
+
+    @Value("${crawler.vector.qdrant.collection.on-disk-vectors:false}")
+    private boolean onDiskVectors;
+
+    @Value("${crawler.vector.qdrant.collection.on-disk-payload:true}")
+    private boolean onDiskPayload;
+
+    @Value("${crawler.vector.qdrant.collection.quantization:none}")
+    private String quantization;
+
+    @Value("${crawler.vector.qdrant.collection.quantization-always-ram:true}")
+    private boolean quantizationAlwaysRam;
+
+    @Value("${crawler.vector.qdrant.search.hnsw-ef:0}")
+    private int defaultHnswEf;
+
+    @Value("${crawler.vector.qdrant.search.rescore:true}")
+    private boolean rescore;
+
+    @Value("${crawler.vector.qdrant.search.oversampling:2.0}")
+    private double oversampling;
+
+    public QdrantVectorStore(
+            @Value("${crawler.vector.qdrant.host:qdrant}") String host,
+            @Value("${crawler.vector.qdrant.port:6334}") int port,
+            @Value("${crawler.vector.qdrant.write.batch-size:256}") int batchSize,
+            @Value("${crawler.vector.qdrant.write.linger-ms:20}") long lingerMillis,
+            @Value("${crawler.vector.qdrant.write.max-in-flight:4}") int maxInFlight,
+            @Value("${crawler.vector.qdrant.write.max-pending:10000}") int maxPending,
+            @Value("${crawler.vector.qdrant.write.wait:false}") boolean waitForApply,
+            @Value("${crawler.vector.qdrant.write.close-timeout-ms:30000}") long closeTimeoutMillis
+    ) {
         this.client = new QdrantClient(
-                QdrantGrpcClient.newBuilder("qdrant", 6334, false)
+                QdrantGrpcClient.newBuilder(host, port, false)
                         .build()
         );
+        this.writer = new QdrantBatchWriter(client, COLLECTION_NAME, batchSize, lingerMillis, maxInFlight, maxPending, waitForApply);
+        this.closeTimeoutMillis = closeTimeoutMillis;
+    }
+
+    @PostConstruct
+    public void initialize() throws ExecutionException, InterruptedException {
         createCollectionIfNotExists();
+
+        // Lets url filters and lookups skip a full scan; a no-op if the index exists
+        client.createPayloadIndexAsync(COLLECTION_NAME, "url", Collections.PayloadSchemaType.Keyword,
+                null, true, null, null).get();
     }
 
+    /**
+     * Collection settings only apply when the collection is created
+     */
     private void createCollectionIfNotExists() throws ExecutionException, InterruptedException {
 
         Boolean isCollectionPresent = client.collectionExistsAsync(COLLECTION_NAME).get();
         if (!isCollectionPresent) {
             Collections.VectorParams vectorParams = Collections.VectorParams.newBuilder()
                     .setDistance(Collections.Distance.Cosine)
-                    .setSize(384)
+                    .setSize(vectorSize)
+                    .setOnDisk(onDiskVectors)
                     .build();
 
-            client.createCollectionAsync(COLLECTION_NAME, vectorParams).get();
+            Collections.CreateCollection.Builder collection = Collections.CreateCollection.newBuilder()
+                    .setCollectionName(COLLECTION_NAME)
+                    .setVectorsConfig(Collections.VectorsConfig.newBuilder().setParams(vectorParams))
+                    .setHnswConfig(Collections.HnswConfigDiff.newBuilder()
+                            .setM(hnswM)
+                            .setEfConstruct(hnswEfConstruct))
+                    .setOnDiskPayload(onDiskPayload);
+
+            // Quantized vectors stay in RAM for the search; originals can live on disk for rescoring
+            if ("scalar".equals(quantization)) {
+                collection.setQuantizationConfig(Collections.QuantizationConfig.newBuilder()
+                        .setScalar(Collections.ScalarQuantization.newBuilder()
+                                .setType(Collections.QuantizationType.Int8)
+                                .setQuantile(0.99f)
+                                .setAlwaysRam(quantizationAlwaysRam)));
+            } else if ("binary".equals(quantization)) {
+                collection.setQuantizationConfig(Collections.QuantizationConfig.newBuilder()
+                        .setBinary(Collections.BinaryQuantization.newBuilder()
+                                .setAlwaysRam(quantizationAlwaysRam)));
+            }
+
+            client.createCollectionAsync(collection.build()).get();
+            log.info("Created collection {} (m={}, ef_construct={}, quantization={})",
+                    COLLECTION_NAME, hnswM, hnswEfConstruct, quantization);
         }
     }
 
+    /**
+     * Flush queued points before shutdown
+     */
+    @PreDestroy
+    public void shutdown() {
+        writer.close(closeTimeoutMillis);
+    }
+
     @Override
     public void insert(UUID id, float[] embedding, Map<String, Object> metadata) {
+        try {
+            insertAsync(id, embedding, metadata).join();
+        } catch (CompletionException e) {
+            log.error("Error while inserting vector", e.getCause());
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> insertAsync(UUID id, float[] embedding, Map<String, Object> metadata) {
 
         Points.PointStruct point = Points.PointStruct.newBuilder()
                 .setId(
@@ -53,49 +156,56 @@ public class QdrantVectorStore implements VectorStore {
                                 .setUuid(id.toString())
                                 .build()
                 )
-                .putAllPayload(
-                        Map.of(
-                                "title", value(metadata.getOrDefault("title", "").toString()),
-                                "content", value(metadata.getOrDefault("content", "").toString()),
-                                "url", value(metadata.getOrDefault("url", "").toString()))
-                )
+                .putAllPayload(toPayload(metadata))
                 .setVectors(vectors(embedding))
                 .build();
 
-        try {
-            log.info("Inserting record {}", point);
-            client.upsertAsync(COLLECTION_NAME, List.of(point)).get();
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("Error while inserting vector", e);
-        }
+        log.debug("Queueing point {}", id);
+        return writer.submit(point);
+    }
+
+    @Override
+    public List<Map<String, Object>> query(float[] embedding, int topK) {
+        return query(embedding, topK, VectorSearchOptions.DEFAULT);
     }
 
     @Override
-    public List<Map<String, Object>> query(List<Float> embedding, int topK) {
+    public List<Map<String, Object>> query(float[] embedding, int topK, VectorSearchOptions options) {
+        Points.SearchParams.Builder params = Points.SearchParams.newBuilder();
+        int hnswEf = options.hnswEf() != null ? options.hnswEf() : defaultHnswEf;
+        if (hnswEf > 0) params.setHnswEf(hnswEf);
+        if (options.exact() != null) params.setExact(options.exact());
+        if (!"none".equals(quantization)) {
+            // Re-rank oversampled quantized candidates with the original vectors
+            params.setQuantization(Points.QuantizationSearchParams.newBuilder()
+                    .setRescore(rescore)
+                    .setOversampling(oversampling));
+        }
+
+        Points.SearchPoints.Builder search = Points.SearchPoints.newBuilder()
+                .setCollectionName(COLLECTION_NAME)
+                .setLimit(topK)
+                .setParams(params)
+                .setWithPayload(
+                        Points.WithPayloadSelector.newBuilder()
+                                .setEnable(true)
+                                .build());
+        if (options.scoreThreshold() != null) search.setScoreThreshold(options.scoreThreshold());
+        for (float value : embedding) {
+            search.addVector(value);
+        }
+
         try {
-            List<Points.ScoredPoint> scoredPoints = client.searchAsync(
-                            Points.SearchPoints.newBuilder()
-                                    .setCollectionName(COLLECTION_NAME)
-                                    .addAllVector(embedding)
-                                    .setLimit(topK)
-                                    .setWithPayload(
-                                            Points.WithPayloadSelector.newBuilder()
-                                                    .setEnable(true)
-                                                    .build())
-                                    .build())
-                    .get();
-
-            log.info("Found {} results", scoredPoints);
+            List<Points.ScoredPoint> scoredPoints = client.searchAsync(search.build()).get();
+
+            log.debug("Found {} results", scoredPoints.size());
 
             return scoredPoints.stream()
                     .filter(x -> x.getScore() > 0)
-                    .map(Points.ScoredPoint::getPayloadMap)
-                    .map(payload -> {
-                        Map<String, Object> objectObjectHashMap = new HashMap<>();
-                        objectObjectHashMap.put("title", payload.get("title").getStringValue());
-                        objectObjectHashMap.put("content", payload.get("content").getStringValue());
-                        objectObjectHashMap.put("url", payload.get("url").getStringValue());
-                        return objectObjectHashMap;
+                    .map(point -> {
+                        Map<String, Object> result = fromPayload(point.getPayloadMap());
+                        result.put("score", point.getScore());
+                        return result;
                     })
                     .toList();
 
@@ -104,4 +214,49 @@ public class QdrantVectorStore implements VectorStore {
         }
     }
 
+    @Override
+    public void delete(List<UUID> ids) {
+        try {
+            deleteAsync(ids).join();
+        } catch (CompletionException e) {
+            log.error("Error while deleting vectors", e.getCause());
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAsync(List<UUID> ids) {
+        if (ids.isEmpty()) return CompletableFuture.completedFuture(null);
+
+        List<Points.PointId> pointIds = ids.stream()
+                .map(id -> Points.PointId.newBuilder().setUuid(id.toString()).build())
+                .toList();
+        return writer.delete(pointIds);
+    }
+
+    /**
+     * Store every metadata entry; whole numbers stay numeric so they can be filtered on
+     */
+    private static Map<String, JsonWithInt.Value> toPayload(Map<String, Object> metadata) {
+        Map<String, JsonWithInt.Value> payload = new HashMap<>();
+        metadata.forEach((key, item) -> {
+            if (item instanceof Integer || item instanceof Long) {
+                payload.put(key, value(((Number) item).longValue()));
+            } else if (item != null) {
+                payload.put(key, value(item.toString()));
+            }
+        });
+        return payload;
+    }
+
+    private static Map<String, Object> fromPayload(Map<String, JsonWithInt.Value> payload) {
+        Map<String, Object> result = new HashMap<>();
+        payload.forEach((key, item) -> result.put(key, switch (item.getKindCase()) {
+            case INTEGER_VALUE -> item.getIntegerValue();
+            case DOUBLE_VALUE -> item.getDoubleValue();
+            case BOOL_VALUE -> item.getBoolValue();
+            default -> item.getStringValue();
+        }));
+        return result;
+    }
+
 }
@@ -0,0 +1,19 @@
+package com.devik.repository.vector;
+
+import com.devik.model.SearchRequest;
+
+/**
+ * Per-query tuning of a vector search; null fields use the store's defaults.
+ *
+ * @param hnswEf         candidates explored in the HNSW graph, higher is slower with better recall
+ * @param exact          skip the index and compare against every vector
+ * @param scoreThreshold drop hits scoring below this
+ */
+public record VectorSearchOptions(Integer hnswEf, Boolean exact, Float scoreThreshold) {
+
+    public static final VectorSearchOptions DEFAULT = new VectorSearchOptions(null, null, null);
+
+    public static VectorSearchOptions of(SearchRequest request) {
+        return new VectorSearchOptions(request.getHnswEf(), request.getExact(), request.getScoreThreshold());
+    }
+}
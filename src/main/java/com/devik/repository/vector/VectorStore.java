@@ -3,10 +3,40 @@ package com.devik.repository.vector;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public interface VectorStore {
     void insert(UUID id, float[] embedding, Map<String, Object> metadata);
 
-    List<Map<String, Object>> query(List<Float> embedding, int topK);
+    /**
+     * Queue a vector for writing; the future completes once the store has accepted it.
+     * Stores without a write pipeline insert synchronously.
+     */
+    default CompletableFuture<Void> insertAsync(UUID id, float[] embedding, Map<String, Object> metadata) {
+        insert(id, embedding, metadata);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    List<Map<String, Object>> query(float[] embedding, int topK);
+
+    /**
+     * Query with per-search tuning; stores that cannot tune searches ignore the options
+     */
+    default List<Map<String, Object>> query(float[] embedding, int topK, VectorSearchOptions options) {
+        return query(embedding, topK);
+    }
+
+    /**
+     * Remove vectors by id; ids that do not exist are ignored
+     */
+    void delete(List<UUID> ids);
+
+    /**
+     * Queue a delete behind the writes already queued; stores without a write pipeline delete synchronously
+     */
+    default CompletableFuture<Void> deleteAsync(List<UUID> ids) {
+        delete(ids);
+        return CompletableFuture.completedFuture(null);
+    }
 }
 
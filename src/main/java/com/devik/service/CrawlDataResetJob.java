@@ -0,0 +1,159 @@
+package com.devik.service;
+
+import com.devik.service.dedup.NearDuplicateIndex;
+import com.devik.service.dedup.UrlClaimService;
+import com.devik.service.dedup.UrlSeenFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background job that clears crawl data from Redis.
+ * <p>
+ * Keys are walked with an incremental SCAN cursor and removed in batches with UNLINK, so
+ * Redis never blocks on a full keyspace walk or a large synchronous delete.
+ */
+@Slf4j
+@Component
+public class CrawlDataResetJob {
+
+    public enum State {IDLE, RUNNING, COMPLETED, FAILED}
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final UrlClaimService urlClaimService;
+    private final NearDuplicateIndex nearDuplicateIndex;
+    private final UrlSeenFilter urlSeenFilter;
+
+    @Value("${crawler.redis.processing-prefix:processing:}")
+    private String processingKeyPrefix;
+
+    @Value("${crawler.redis.visited-prefix:visited:}")
+    private String visitedKeyPrefix;
+
+    @Value("${crawler.redis.domain-headers-prefix:domainheaders:}")
+    private String domainHeadersPrefix;
+
+    @Value("${crawler.redis.simhash-prefix:simhash:}")
+    private String simhashKeyPrefix;
+
+    @Value("${crawler.reset.scan-count:1000}")
+    private int scanCount;
+
+    @Value("${crawler.reset.batch-size:500}")
+    private int batchSize;
+
+    private volatile State state = State.IDLE;
+    private volatile String currentPrefix;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private final AtomicLong scannedKeys = new AtomicLong();
+    private final AtomicLong deletedKeys = new AtomicLong();
+
+    @Autowired
+    public CrawlDataResetJob(RedisTemplate<String, String> redisTemplate,
+                             UrlClaimService urlClaimService,
+                             NearDuplicateIndex nearDuplicateIndex,
+                             UrlSeenFilter urlSeenFilter) {
+        this.redisTemplate = redisTemplate;
+        this.urlClaimService = urlClaimService;
+        this.nearDuplicateIndex = nearDuplicateIndex;
+        this.urlSeenFilter = urlSeenFilter;
+    }
+
+    /**
+     * Start the reset in the background.
+     *
+     * @return false if a reset is already running
+     */
+    public synchronized boolean start() {
+        if (state == State.RUNNING) return false;
+
+        state = State.RUNNING;
+        startedAt = Instant.now();
+        finishedAt = null;
+        error = null;
+        currentPrefix = null;
+        scannedKeys.set(0);
+        deletedKeys.set(0);
+
+        Thread worker = new Thread(this::run, "crawl-data-reset");
+        worker.setDaemon(true);
+        worker.start();
+        return true;
+    }
+
+    private void run() {
+        try {
+            // Reset the running totals first; work that overlaps the scan counts towards the new totals
+            redisTemplate.unlink(urlClaimService.counterKeys());
+            redisTemplate.unlink(nearDuplicateIndex.counterKeys());
+
+            for (String prefix : List.of(processingKeyPrefix, visitedKeyPrefix, domainHeadersPrefix, simhashKeyPrefix)) {
+                currentPrefix = prefix;
+                unlinkMatching(prefix + "*");
+            }
+
+            // The URL seen filter would otherwise keep skipping the URLs this node claimed before
+            urlSeenFilter.clear();
+            currentPrefix = null;
+            state = State.COMPLETED;
+            log.info("Crawl data reset complete: {} keys deleted", deletedKeys.get());
+        } catch (Exception e) {
+            error = e.getMessage();
+            state = State.FAILED;
+            log.error("Crawl data reset failed: {}", e.getMessage());
+        } finally {
+            finishedAt = Instant.now();
+        }
+    }
+
+    private void unlinkMatching(String pattern) {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(scanCount).build();
+        List<String> batch = new ArrayList<>(batchSize);
+
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                scannedKeys.incrementAndGet();
+                if (batch.size() >= batchSize) {
+                    unlinkBatch(batch);
+                }
+            }
+        }
+        unlinkBatch(batch);
+    }
+
+    private void unlinkBatch(List<String> batch) {
+        if (batch.isEmpty()) return;
+        Long deleted = redisTemplate.unlink(batch);
+        deletedKeys.addAndGet(deleted == null ? 0 : deleted);
+        batch.clear();
+    }
+
+    /**
+     * Get the progress of the current or last reset
+     */
+    public Map<String, Object> getProgress() {
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("state", state);
+        progress.put("currentPrefix", currentPrefix);
+        progress.put("scannedKeys", scannedKeys.get());
+        progress.put("deletedKeys", deletedKeys.get());
+        progress.put("startedAt", startedAt == null ? null : startedAt.toString());
+        progress.put("finishedAt", finishedAt == null ? null : finishedAt.toString());
+        progress.put("error", error);
+        return progress;
+    }
+}
@@ -1,16 +1,38 @@
 package com.devik.service;
 
+import com.devik.indexer.CompositeIndexer;
 import com.devik.indexer.ElasticSearchIndexer;
+import com.devik.indexer.HybridIndexer;
 import com.devik.indexer.IndexerStrategy;
 import com.devik.indexer.LLMIndexer;
+import com.devik.indexer.SearchResultCache;
 import com.devik.model.CrawlRequest;
 import com.devik.model.CrawlResult;
 import com.devik.model.SearchRequest;
+import com.devik.service.archive.PageArchive;
+import com.devik.service.archive.PageReindexJob;
+import com.devik.service.dedup.NearDuplicateIndex;
+import com.devik.service.dedup.UrlClaimService;
+import com.devik.service.dedup.UrlSeenFilter;
+import com.devik.service.embedder.CachingEmbeddingService;
+import com.devik.service.extractor.DomPageExtractor;
+import com.devik.service.extractor.ExtractedPage;
+import com.devik.service.extractor.PageExtractor;
+import com.devik.service.extractor.StreamingPageExtractor;
+import com.devik.service.fetcher.FetchedPage;
+import com.devik.service.fetcher.HttpClientPageFetcher;
+import com.devik.service.fetcher.JsoupPageFetcher;
+import com.devik.service.fetcher.PageFetcher;
+import com.devik.service.frontier.CrawlOutcome;
+import com.devik.service.frontier.HostFrontier;
+import com.devik.service.pipeline.StageMeter;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.QueueInformation;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,10 +42,12 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 @Service
@@ -34,8 +58,23 @@ public class CrawlerService {
     private final ObjectMapper objectMapper;
     private final String queueName;
     private final IndexerStrategy indexerStrategy;
+    private final CompositeIndexer compositeIndexer;
+    private final SearchResultCache searchResultCache;
     private final FilteringService filteringService;
     private final RedisTemplate<String, String> redisTemplate;
+    private final UrlSeenFilter urlSeenFilter;
+    private final UrlClaimService urlClaimService;
+    private final NearDuplicateIndex nearDuplicateIndex;
+    private final CrawlDataResetJob crawlDataResetJob;
+    private final PageArchive pageArchive;
+    private final PageReindexJob pageReindexJob;
+    private final HostFrontier hostFrontier;
+    private final PageFetcher pageFetcher;
+    private final PageExtractor pageExtractor;
+    private final Map<String, CachingEmbeddingService> embeddingCaches;
+    private final AmqpAdmin amqpAdmin;
+    private final StageMeter fetchStage = new StageMeter();
+    private final StageMeter indexStage = new StageMeter();
 
     // Common user agents for rotation
     private final List<String> userAgents = Arrays.asList(
@@ -45,26 +84,20 @@ public class CrawlerService {
     );
 
     // Redis key prefixes
-    @Value("${crawler.redis.processing-prefix:processing:}")
-    private String processingKeyPrefix;
-
-    @Value("${crawler.redis.visited-prefix:visited:}")
-    private String visitedKeyPrefix;
-
     @Value("${crawler.redis.domain-headers-prefix:domainheaders:}")
     private String domainHeadersPrefix;
 
-    @Value("${crawler.redis.ttl.processing:600}")
-    private int processingTtlSeconds;
-
-    @Value("${crawler.redis.ttl.visited:86400}")
-    private int visitedTtlSeconds;
-
     @Value("${crawler.redis.ttl.domain-headers:1800}")
     private int domainHeadersTtlSeconds;
 
-    @Value("${crawler.connection.timeout:10000}")
-    private int connectionTimeout;
+    @Value("${crawler.queue.publish-batch-size:100}")
+    private int publishBatchSize;
+
+    @Value("${crawler.queue.publisher-confirms:false}")
+    private boolean publisherConfirms;
+
+    @Value("${crawler.queue.publisher-confirm-timeout-ms:5000}")
+    private long publisherConfirmTimeoutMillis;
 
     @Value("${crawler.max.links.per.page:25}")
     private int maxLinksPerPage;
@@ -72,6 +105,16 @@ public class CrawlerService {
     @Value("${crawler.robots.respect:true}")
     private boolean respectRobotsTxt;
 
+    // In staged mode fetchers queue pages and the index stage indexes them in batches
+    @Value("${crawler.pipeline.mode:inline}")
+    private String pipelineMode;
+
+    @Value("${crawler.pipeline.results-queue:crawl-results}")
+    private String resultsQueueName;
+
+    @Value("${crawler.pipeline.parked-queue:crawl-results.parked}")
+    private String parkedQueueName;
+
     @Autowired
     public CrawlerService(
             RabbitTemplate rabbitTemplate,
@@ -81,17 +124,56 @@ public class CrawlerService {
             @Value("${crawler.index.strategy}") String indexStrategy,
             ElasticSearchIndexer elasticSearchIndexer,
             LLMIndexer llmIndexer,
-            FilteringService filteringService
+            Optional<HybridIndexer> hybridIndexer,
+            Optional<CompositeIndexer> compositeIndexer,
+            SearchResultCache searchResultCache,
+            FilteringService filteringService,
+            UrlSeenFilter urlSeenFilter,
+            UrlClaimService urlClaimService,
+            NearDuplicateIndex nearDuplicateIndex,
+            CrawlDataResetJob crawlDataResetJob,
+            HostFrontier hostFrontier,
+            @Value("${crawler.fetch.engine:httpclient}") String fetchEngine,
+            HttpClientPageFetcher httpClientPageFetcher,
+            JsoupPageFetcher jsoupPageFetcher,
+            @Value("${crawler.extract.mode:streaming}") String extractMode,
+            StreamingPageExtractor streamingPageExtractor,
+            DomPageExtractor domPageExtractor,
+            Map<String, CachingEmbeddingService> embeddingCaches,
+            AmqpAdmin amqpAdmin,
+            PageArchive pageArchive,
+            PageReindexJob pageReindexJob
     ) {
         this.rabbitTemplate = rabbitTemplate;
         this.objectMapper = objectMapper;
         this.queueName = queueName;
         this.redisTemplate = redisTemplate;
 
-        // Select indexer strategy based on configuration
-        this.indexerStrategy = "elasticsearch".equals(indexStrategy) ?
-                elasticSearchIndexer : llmIndexer;
+        // Select indexer strategy based on configuration; the hybrid and composite indexers
+        // only exist when selected
+        this.compositeIndexer = compositeIndexer.orElse(null);
+        this.indexerStrategy = searchResultCache.wrap(indexStrategy, switch (indexStrategy) {
+            case "elasticsearch" -> elasticSearchIndexer;
+            case "hybrid" -> hybridIndexer.orElseThrow();
+            case "composite" -> compositeIndexer.orElseThrow();
+            default -> llmIndexer;
+        });
+        this.searchResultCache = searchResultCache;
         this.filteringService = filteringService;
+        this.urlSeenFilter = urlSeenFilter;
+        this.urlClaimService = urlClaimService;
+        this.nearDuplicateIndex = nearDuplicateIndex;
+        this.crawlDataResetJob = crawlDataResetJob;
+        this.hostFrontier = hostFrontier;
+
+        this.pageFetcher = "jsoup".equals(fetchEngine) ?
+                jsoupPageFetcher : httpClientPageFetcher;
+        this.pageExtractor = "dom".equals(extractMode) ?
+                domPageExtractor : streamingPageExtractor;
+        this.embeddingCaches = embeddingCaches;
+        this.amqpAdmin = amqpAdmin;
+        this.pageArchive = pageArchive;
+        this.pageReindexJob = pageReindexJob;
     }
 
     @Async
@@ -101,53 +183,171 @@ public class CrawlerService {
             String normalizedUrl = filteringService.normalizeUrl(request.getUrl());
             request.setUrl(normalizedUrl);
 
-            // Check Redis to see if URL is already visited
-            String visitedKey = visitedKeyPrefix + normalizedUrl;
-            Boolean isVisited = redisTemplate.hasKey(visitedKey);
-
-            if (Boolean.TRUE.equals(isVisited)) {
-                log.debug("Skipping already visited URL: {}", normalizedUrl);
-                return;
-            }
-
-            // Check Redis to see if URL is already being processed elsewhere
-            String processingKey = processingKeyPrefix + normalizedUrl;
-            Boolean isProcessing = redisTemplate.hasKey(processingKey);
-
-            if (Boolean.TRUE.equals(isProcessing)) {
-                log.debug("Skipping URL already being processed: {}", normalizedUrl);
-                return;
-            }
-
             // Check if we should crawl this URL according to filtering rules
-            if (!filteringService.shouldCrawl(normalizedUrl)) {
+            if (!filteringService.isAllowed(normalizedUrl)) {
                 log.debug("Skipping filtered URL: {}", normalizedUrl);
                 return;
             }
 
-            // Mark as processing in Redis with TTL
-            redisTemplate.opsForValue().set(processingKey, "1", Duration.ofSeconds(processingTtlSeconds));
+            // Atomically check visited/processing and claim the URL in one round trip
+            if (!urlClaimService.claim(normalizedUrl)) {
+                log.debug("Skipping already visited or processing URL: {}", normalizedUrl);
+                return;
+            }
 
-            String message = objectMapper.writeValueAsString(request);
-            rabbitTemplate.convertAndSend(queueName, message);
-            log.debug("Submitted for crawling: {}", normalizedUrl);
+            publish(request);
         } catch (Exception e) {
             log.error("Failed to submit crawl task for {}: {}", request.getUrl(), e.getMessage());
             // Clean up processing status
-            redisTemplate.delete(processingKeyPrefix + request.getUrl());
+            urlClaimService.release(request.getUrl());
+        }
+    }
+
+    /**
+     * Submit the outlinks of a page: one filtering pass, one Redis claim call and one
+     * broker message per batch of claimed links
+     */
+    private void submitChildTasks(List<String> links, int depth) {
+        List<String> candidates = links.stream()
+                .filter(filteringService::isAllowed)
+                .collect(Collectors.toList());
+
+        List<CrawlRequest> claimed = urlClaimService.claim(candidates).stream()
+                .map(link -> {
+                    CrawlRequest childRequest = new CrawlRequest();
+                    childRequest.setUrl(link);
+                    childRequest.setDepth(depth);
+                    return childRequest;
+                })
+                .collect(Collectors.toList());
+
+        for (int from = 0; from < claimed.size(); from += publishBatchSize) {
+            List<CrawlRequest> batch = claimed.subList(from, Math.min(claimed.size(), from + publishBatchSize));
+            try {
+                publishBatch(batch);
+            } catch (Exception e) {
+                log.error("Failed to submit batch of {} crawl tasks: {}", batch.size(), e.getMessage());
+                batch.forEach(request -> urlClaimService.release(request.getUrl()));
+            }
         }
     }
 
+    private void publish(CrawlRequest request) throws JsonProcessingException {
+        String message = objectMapper.writeValueAsString(request);
+        send(message);
+        log.debug("Submitted for crawling: {}", request.getUrl());
+    }
+
+    /**
+     * Publish several requests as a single message holding a JSON array
+     */
+    private void publishBatch(List<CrawlRequest> requests) throws JsonProcessingException {
+        if (requests.isEmpty()) return;
+
+        String message = objectMapper.writeValueAsString(requests);
+        send(message);
+        log.debug("Submitted batch of {} URLs for crawling", requests.size());
+    }
+
+    private void send(String message) {
+        send(queueName, message);
+    }
+
+    private void send(String queue, String message) {
+        if (!publisherConfirms) {
+            rabbitTemplate.convertAndSend(queue, message);
+            return;
+        }
+
+        // Wait for the broker to confirm; needs spring.rabbitmq.publisher-confirm-type=simple
+        rabbitTemplate.invoke(operations -> {
+            operations.convertAndSend(queue, message);
+            operations.waitForConfirmsOrDie(publisherConfirmTimeoutMillis);
+            return null;
+        });
+    }
+
+    @PostConstruct
+    public void startFrontier() {
+        // URLs the frontier gives up on were claimed, so release them like any failed fetch
+        hostFrontier.start(this::crawlUrl, request -> urlClaimService.release(filteringService.normalizeUrl(request.getUrl())));
+    }
+
     @RabbitListener(queues = "${crawler.queue.name}")
     public void processCrawlTask(String message) {
         try {
-            CrawlRequest request = objectMapper.readValue(message, CrawlRequest.class);
-            crawlUrl(request.getUrl(), request.getDepth());
+            // Outlinks arrive as a JSON array, submitted URLs as a single object
+            List<CrawlRequest> requests = message.stripLeading().startsWith("[")
+                    ? Arrays.asList(objectMapper.readValue(message, CrawlRequest[].class))
+                    : List.of(objectMapper.readValue(message, CrawlRequest.class));
+
+            for (CrawlRequest request : requests) {
+                try {
+                    // Hand the URL to the frontier, which schedules it politely per host
+                    hostFrontier.submit(request, extractDomain(request.getUrl()));
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    log.error("Failed to schedule {}: {}", request.getUrl(), e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             log.error("Failed to process message from queue: {}", e.getMessage());
         }
     }
 
+    /**
+     * Index stage of the staged pipeline: pages fetched on any node, indexed in batches
+     */
+    @RabbitListener(queues = "${crawler.pipeline.results-queue:crawl-results}", containerFactory = "crawlResultsListenerFactory")
+    public void processCrawlResults(List<Message> messages) {
+        List<CrawlResult> results = new ArrayList<>(messages.size());
+        List<Message> readable = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            try {
+                results.add(objectMapper.readValue(message.getBody(), CrawlResult.class));
+                readable.add(message);
+            } catch (IOException e) {
+                indexStage.recordFailure();
+                log.error("Parking unreadable crawl result: {}", e.getMessage());
+                park(message, e);
+            }
+        }
+        if (results.isEmpty()) return;
+
+        try {
+            indexerStrategy.indexDocuments(results);
+            indexStage.recordBatch(results.size());
+            log.info("Indexed batch of {} pages", results.size());
+        } catch (Exception e) {
+            // Index the pages one by one so a single bad page does not fail the whole batch
+            log.warn("Failed to index batch of {} pages, retrying one by one: {}", results.size(), e.getMessage());
+            for (int i = 0; i < results.size(); i++) {
+                CrawlResult result = results.get(i);
+                try {
+                    // Wait for the backend, so a page it fails to store is parked
+                    indexerStrategy.indexDocumentAsync(result).join();
+                    indexStage.recordBatch(1);
+                } catch (Exception pageFailure) {
+                    indexStage.recordFailure();
+                    log.error("Parking {} after it failed to index: {}", result.getUrl(), pageFailure.getMessage());
+                    park(readable.get(i), pageFailure);
+                }
+            }
+        }
+    }
+
+    /**
+     * Move a crawl result the index stage cannot handle to the parking queue. If that fails the
+     * exception rejects the whole batch, which the broker dead-letters to the same queue.
+     */
+    private void park(Message message, Exception failure) {
+        message.getMessageProperties().setHeader("x-park-reason", String.valueOf(failure.getMessage()));
+        rabbitTemplate.send(parkedQueueName, message);
+    }
+
     /**
      * Extract domain from URL
      */
@@ -212,76 +412,69 @@ public class CrawlerService {
         redisTemplate.expire(headerKey, Duration.ofSeconds(domainHeadersTtlSeconds));
     }
 
-    private void crawlUrl(String url, int depth) {
-        if (depth <= 0) return;
+    private CrawlOutcome crawlUrl(CrawlRequest request) {
+        int depth = request.getDepth();
+        if (depth <= 0) return CrawlOutcome.done();
 
         // Normalize the URL again to ensure consistency
-        String normalizedUrl = filteringService.normalizeUrl(url);
-        String processingKey = processingKeyPrefix + normalizedUrl;
-        String visitedKey = visitedKeyPrefix + normalizedUrl;
+        String normalizedUrl = filteringService.normalizeUrl(request.getUrl());
 
         try {
-            // Double-check we haven't already visited this URL (race condition)
-            Boolean isVisited = redisTemplate.hasKey(visitedKey);
-            if (Boolean.TRUE.equals(isVisited)) {
-                log.debug("Skipping already visited URL (race condition check): {}", normalizedUrl);
-                redisTemplate.delete(processingKey); // Clean up processing marker
-                return;
-            }
-
-            // Mark URL as visited with TTL
-            redisTemplate.opsForValue().set(visitedKey, "1", Duration.ofSeconds(visitedTtlSeconds));
-
             // Get domain for domain-specific headers
             String domain = extractDomain(normalizedUrl);
 
+            // Mark URL as visited; if someone else already did, this is a duplicate delivery.
+            // Retries of throttled fetches were marked on their first attempt.
+            if (request.getAttempt() == 0 && !urlClaimService.markVisited(normalizedUrl, domain)) {
+                log.debug("Skipping already visited URL (race condition check): {}", normalizedUrl);
+                urlClaimService.complete(normalizedUrl); // Clean up processing marker
+                return CrawlOutcome.done();
+            }
+
             // Get headers map for this domain from Redis
             Map<String, String> headers = getDomainHeaders(domain);
 
             // Select a random user agent for this request
             String userAgent = userAgents.get(new Random().nextInt(userAgents.size()));
 
-            // Set up the connection with appropriate headers
-            Connection connection = Jsoup.connect(normalizedUrl)
-                    .userAgent(userAgent)
-                    .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8")
-                    .header("Accept-Language", "en-US,en;q=0.9")
-                    .header("Connection", "keep-alive")
-                    .header("Upgrade-Insecure-Requests", "1")
-                    .header("Sec-Fetch-Dest", "document")
-                    .header("Sec-Fetch-Mode", "navigate")
-                    .header("Sec-Fetch-Site", "none")
-                    .header("Sec-Fetch-User", "?1")
-                    .referrer("https://www.google.com/search?q=" + domain.replace('.', '+'))
-                    .timeout(connectionTimeout)
-                    .followRedirects(true)
-                    .ignoreHttpErrors(true);
+            // Set up the request with appropriate headers
+            Map<String, String> requestHeaders = new LinkedHashMap<>();
+            requestHeaders.put("User-Agent", userAgent);
+            requestHeaders.put("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8");
+            requestHeaders.put("Accept-Language", "en-US,en;q=0.9");
+            requestHeaders.put("Connection", "keep-alive");
+            requestHeaders.put("Upgrade-Insecure-Requests", "1");
+            requestHeaders.put("Sec-Fetch-Dest", "document");
+            requestHeaders.put("Sec-Fetch-Mode", "navigate");
+            requestHeaders.put("Sec-Fetch-Site", "none");
+            requestHeaders.put("Sec-Fetch-User", "?1");
+            requestHeaders.put("Referer", "https://www.google.com/search?q=" + domain.replace('.', '+'));
 
             // Add any domain-specific headers we've collected from Redis
-            headers.forEach(connection::header);
+            requestHeaders.putAll(headers);
 
             // Execute the request
-            Connection.Response response = connection.execute();
+            FetchedPage response = fetch(normalizedUrl, requestHeaders);
 
             // Store response headers for future requests to this domain
             // This helps with cookies and session management
-            Map<String, String> responseHeaders = response.headers();
+            Map<String, String> responseHeaders = response.getHeaders();
             headers.putAll(responseHeaders);
             saveDomainHeaders(domain, headers);
 
             // Check if we got a successful response
-            if (response.statusCode() != 200) {
-                log.warn("Non-200 status code ({}) for URL: {}", response.statusCode(), normalizedUrl);
+            if (response.getStatusCode() != 200) {
+                log.warn("Non-200 status code ({}) for URL: {}", response.getStatusCode(), normalizedUrl);
 
                 // For certain status codes, we might want to retry or handle differently
-                if (response.statusCode() == 429 || response.statusCode() == 503) {
+                if (response.getStatusCode() == 429 || response.getStatusCode() == 503) {
                     log.warn("Rate limiting detected for domain: {}", domain);
-                    // We don't delete the processing key to prevent immediate retry
-                    return;
+                    // The frontier delays this URL and pauses the host
+                    return CrawlOutcome.throttled(parseRetryAfter(response.header("Retry-After")));
                 }
 
                 // For redirects
-                if (response.statusCode() >= 300 && response.statusCode() < 400) {
+                if (response.getStatusCode() >= 300 && response.getStatusCode() < 400) {
                     String location = response.header("Location");
                     if (location != null && !location.isEmpty()) {
                         log.info("Found redirect from {} to {}", normalizedUrl, location);
@@ -294,63 +487,111 @@ public class CrawlerService {
                 }
 
                 // Delete processing key to allow retry later for some errors
-                if (response.statusCode() >= 500) {
-                    redisTemplate.delete(processingKey);
+                if (response.getStatusCode() >= 500) {
+                    urlClaimService.release(normalizedUrl);
                 }
 
-                return;
+                return CrawlOutcome.done();
             }
 
-            // Parse the document
-            Document doc = response.parse();
-            String title = doc.title();
-            String content = doc.body().text();
+            // Extract title, text and links
+            ExtractedPage page = pageExtractor.extract(response);
+            fetchStage.recordBatch(1);
+            String title = page.title();
+            String content = page.content();
 
-            // Extract all links from the page
-            List<String> allLinks = doc.select("a[href]").stream()
-                    .map(element -> element.attr("abs:href"))
-                    .filter(href -> href.startsWith("http") || href.startsWith("https"))
-                    .map(filteringService::normalizeUrl)  // Normalize all links
-                    .filter(href -> !href.equals(normalizedUrl))  // Exclude self-links
-                    .distinct()  // Remove duplicates
-                    .collect(Collectors.toList());
+            // Keep the crawlable links from the page
+            List<String> allLinks = filteringService.normalizeLinks(page.links(), normalizedUrl);
 
             // Log the total number of links found
             log.debug("Found {} links on page: {}", allLinks.size(), normalizedUrl);
 
-            // Create and index the crawl result with all links (for completeness)
-            CrawlResult result = CrawlResult.create(normalizedUrl, title, content, allLinks);
-            indexerStrategy.indexDocument(result);
-            log.info("Successfully indexed: {}", normalizedUrl);
+            // Near-duplicates of a recent page are recorded as aliases instead of being
+            // embedded and indexed again; their links are still followed
+            NearDuplicateIndex.Lookup duplicate = nearDuplicateIndex.lookup(normalizedUrl, content);
+            if (duplicate.isDuplicate()) {
+                log.info("Skipping index of near-duplicate {} of {}", normalizedUrl, duplicate.canonical());
+                // An earlier, distinct version of the page must not come back on a re-index
+                pageArchive.remove(CrawlResult.generateUUID("url", normalizedUrl));
+            } else {
+                // Create and index the crawl result with all links (for completeness)
+                CrawlResult result = CrawlResult.create(normalizedUrl, title, content, allLinks);
+
+                // Keep the raw page, so it can be indexed again without fetching it
+                pageArchive.store(result.getId(), normalizedUrl, response);
+                // Only once the page is queued or stored may later copies of it be skipped
+                if ("staged".equals(pipelineMode)) {
+                    send(resultsQueueName, objectMapper.writeValueAsString(result));
+                    log.debug("Queued for indexing: {}", normalizedUrl);
+                    nearDuplicateIndex.register(normalizedUrl, duplicate);
+                } else {
+                    indexerStrategy.indexDocumentAsync(result).whenComplete((ignored, failure) -> {
+                        if (failure != null) {
+                            indexStage.recordFailure();
+                            log.error("Failed to index {}: {}", normalizedUrl, failure.getMessage());
+                            return;
+                        }
+                        indexStage.recordBatch(1);
+                        log.info("Successfully indexed: {}", normalizedUrl);
+                        try {
+                            nearDuplicateIndex.register(normalizedUrl, duplicate);
+                        } catch (RuntimeException e) {
+                            log.warn("Failed to register fingerprint of {}: {}", normalizedUrl, e.getMessage());
+                        }
+                    });
+                }
+            }
 
             // If we should continue crawling deeper
             if (depth > 1) {
                 // Randomize the order of links to avoid predictable patterns
                 Collections.shuffle(allLinks);
 
-                // Process each link (Redis will handle deduplication)
+                // Pick the links to follow (Redis will handle deduplication)
                 List<String> linksToProcess = allLinks.stream()
                         .limit(maxLinksPerPage)
                         .collect(Collectors.toList());
 
                 log.debug("Queuing {} links for further crawling from {}", linksToProcess.size(), normalizedUrl);
 
-                // Submit each link for crawling
-                for (String link : linksToProcess) {
-                    CrawlRequest childRequest = new CrawlRequest();
-                    childRequest.setUrl(link);
-                    childRequest.setDepth(depth - 1);
-                    submitCrawlTask(childRequest);
-                }
+                // Claim and submit all links at once
+                submitChildTasks(linksToProcess, depth - 1);
             }
 
             // Clean up processing key after successful processing
-            redisTemplate.delete(processingKey);
+            urlClaimService.complete(normalizedUrl);
 
         } catch (IOException e) {
             log.error("Error crawling {}: {}", normalizedUrl, e.getMessage());
+            fetchStage.recordFailure();
             // Remove the URL from the "processing" set in Redis to allow retry later
-            redisTemplate.delete(processingKey);
+            urlClaimService.release(normalizedUrl);
+        }
+        return CrawlOutcome.done();
+    }
+
+    /**
+     * Fetch a page with the configured engine, waiting for the async response
+     */
+    private FetchedPage fetch(String url, Map<String, String> headers) throws IOException {
+        try {
+            return pageFetcher.fetch(url, headers).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioException) throw ioException;
+            if (e.getCause() instanceof UncheckedIOException uncheckedIOException) throw uncheckedIOException.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Parse a Retry-After header given in seconds, 0 if absent or not numeric
+     */
+    private static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null) return 0;
+        try {
+            return Duration.ofSeconds(Long.parseLong(retryAfter.trim())).toMillis();
+        } catch (NumberFormatException e) {
+            return 0;
         }
     }
 
@@ -362,41 +603,99 @@ public class CrawlerService {
      * Get statistics about crawling
      */
     public Map<String, Object> getCrawlStats() {
-        Map<String, Object> stats = new HashMap<>();
+        // Counters are maintained by the claim scripts, so this is O(1) in Redis
+        Map<String, Object> stats = new HashMap<>(urlClaimService.getCounters());
+        stats.put("seenFilter", urlSeenFilter.getStats());
+        stats.put("nearDuplicates", nearDuplicateIndex.getStats());
+        stats.put("embeddingCaches", embeddingCaches.values().stream()
+                .map(CachingEmbeddingService::getStats)
+                .collect(Collectors.toList()));
+        stats.put("frontier", hostFrontier.getStats());
+        stats.put("reset", crawlDataResetJob.getProgress());
+        stats.put("searchCache", searchResultCache.getStats());
+        stats.put("pipeline", getPipelineStats());
+        stats.put("archive", pageArchive.getStats());
+        stats.put("reindex", pageReindexJob.getProgress());
+        if (compositeIndexer != null) {
+            stats.put("indexing", compositeIndexer.getStats());
+        }
 
-        // Get counts from Redis
-        int processingCount = redisTemplate.keys(processingKeyPrefix + "*").size();
-        int visitedCount = redisTemplate.keys(visitedKeyPrefix + "*").size();
-        int domainsTracked = redisTemplate.keys(domainHeadersPrefix + "*").size();
+        return stats;
+    }
 
-        stats.put("processingUrls", processingCount);
-        stats.put("visitedUrls", visitedCount);
-        stats.put("trackedDomains", domainsTracked);
+    /**
+     * Throughput and backlog of the fetch and index stages; backlogs are this node's view of
+     * the shared queues
+     */
+    private Map<String, Object> getPipelineStats() {
+        Map<String, Object> fetch = new HashMap<>(fetchStage.getStats());
+        fetch.put("backlog", queueBacklog(queueName));
+
+        Map<String, Object> index = new HashMap<>(indexStage.getStats());
+        if ("staged".equals(pipelineMode)) {
+            index.put("backlog", queueBacklog(resultsQueueName));
+            index.put("parked", queueBacklog(parkedQueueName));
+        }
 
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("mode", pipelineMode);
+        stats.put("fetch", fetch);
+        stats.put("index", index);
         return stats;
     }
 
     /**
-     * Reset crawl data
+     * Messages waiting in a queue, or -1 if the broker cannot be asked
      */
-    public void resetCrawlData() {
-        // Clean up Redis keys
-        Set<String> processingKeys = redisTemplate.keys(processingKeyPrefix + "*");
-        Set<String> visitedKeys = redisTemplate.keys(visitedKeyPrefix + "*");
-        Set<String> domainKeys = redisTemplate.keys(domainHeadersPrefix + "*");
-
-        if (processingKeys != null && !processingKeys.isEmpty()) {
-            redisTemplate.delete(processingKeys);
+    private long queueBacklog(String queue) {
+        try {
+            QueueInformation info = amqpAdmin.getQueueInfo(queue);
+            return info == null ? 0 : info.getMessageCount();
+        } catch (Exception e) {
+            log.debug("Failed to read backlog of queue {}: {}", queue, e.getMessage());
+            return -1;
         }
+    }
 
-        if (visitedKeys != null && !visitedKeys.isEmpty()) {
-            redisTemplate.delete(visitedKeys);
+    /**
+     * Reset crawl data in the background
+     *
+     * @return progress of the reset job
+     */
+    public Map<String, Object> resetCrawlData() {
+        if (!crawlDataResetJob.start()) {
+            log.info("Crawl data reset already running");
         }
+        return crawlDataResetJob.getProgress();
+    }
 
-        if (domainKeys != null && !domainKeys.isEmpty()) {
-            redisTemplate.delete(domainKeys);
+    public Map<String, Object> getResetProgress() {
+        return crawlDataResetJob.getProgress();
+    }
+
+    /**
+     * Index the archived pages again in the background, with the configured extractor and strategy
+     *
+     * @return progress of the re-index job
+     */
+    public Map<String, Object> reindexArchive() {
+        if (!pageReindexJob.start(pageExtractor, indexerStrategy)) {
+            log.info("Re-index already running");
         }
+        return pageReindexJob.getProgress();
+    }
+
+    public Map<String, Object> getReindexProgress() {
+        return pageReindexJob.getProgress();
+    }
 
-        log.info("Crawl data reset complete");
+    /**
+     * Index the pages the composite indexer's lanes dropped or gave up on again, from the archive
+     */
+    public Map<String, Object> replayLostPages() {
+        if (compositeIndexer == null) {
+            return Map.of("message", "Only the composite indexing strategy records lost pages");
+        }
+        return compositeIndexer.replayLost(id -> pageReindexJob.rebuild(id, pageExtractor));
     }
-}
\ No newline at end of file
+}
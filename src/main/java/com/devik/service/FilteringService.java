@@ -1,153 +1,77 @@
 package com.devik.service;
 
+import com.devik.service.filter.UrlFilterEngine;
+import com.devik.service.filter.UrlFilterRules;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
-import java.time.Duration;
-import java.util.Set;
-import java.util.regex.Pattern;
+import java.io.File;
+import java.util.List;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class FilteringService {
 
-    private final RedisTemplate redisTemplate;
-
-    @Value("${crawler.redis.visited-prefix:visited:}")
-    private String visitedKeyPrefix;
-
-    @Value("${spring.redis.enabled:true:}")
-    private Boolean isRedisEnabled;
-
     @Value("${crawler.filter.max-url-length:100}")
     private int maxUrlLength;
 
-    private static final Duration TTL = Duration.ofHours(1);
-
-    // Expanded list of blocked file extensions
-    private static final Set<String> BLOCKED_EXTENSIONS = Set.of(
-            // Documents
-            ".pdf", ".doc", ".docx", ".ppt", ".pptx", ".xls", ".xlsx", ".odt", ".ods", ".odp",
-            // Archives
-            ".zip", ".tar", ".gz", ".rar", ".7z",
-            // Media files
-            ".jpg", ".jpeg", ".png", ".gif", ".bmp", ".svg", ".webp", ".tiff",
-            ".mp3", ".mp4", ".avi", ".mov", ".wmv", ".flv", ".wav", ".ogg", ".webm",
-            // Executables and binaries
-            ".exe", ".bin", ".dll", ".so", ".dmg", ".pkg", ".deb", ".rpm",
-            // Other
-            ".css", ".js", ".xml", ".rss", ".atom", ".json", ".csv", ".tsv"
-    );
-
-    // Common paths that usually don't contain valuable indexable content
-    private static final Set<String> BLOCKED_PATHS = Set.of(
-            "/wp-admin/", "/wp-includes/", "/wp-content/plugins/",
-            "/admin/", "/login/", "/logout/", "/signin/", "/signout/",
-            "/cart/", "/checkout/", "/account/", "/profile/",
-            "/tags/", "/categories/", "/search/", "/print/", "/feed/",
-            "/cgi-bin/", "/cdn-cgi/", "/.git/", "/node_modules/"
-    );
-
-    // Patterns for URLs that typically don't need to be crawled
-    private static final Pattern[] BLOCKED_PATTERNS = {
-            // URLs with too many query parameters (probably dynamic pages)
-            Pattern.compile(".*\\?.*&.*&.*&.*&.*"),
-            // Calendar and date-based archives
-            Pattern.compile(".*/(?:19|20)\\d{2}/(?:0[1-9]|1[0-2])/.*"),
-            // Session IDs in URLs
-            Pattern.compile(".*(?:jsessionid|sessionid|sid|session_id)=.*"),
-            // Common social media share parameters
-            Pattern.compile(".*(?:utm_source|utm_medium|utm_campaign|fbclid|gclid)=.*"),
-            // URLs with long numbers (likely product IDs or other dynamic content)
-            Pattern.compile(".*/\\d{10,}.*"),
-            // URLs with repetitive patterns (pagination, etc.)
-            Pattern.compile(".*/page/\\d+/.*"),
-            // Comment sections
-            Pattern.compile(".*/comments/.*")
-    };
-
-    // Common domains that are typically not worth crawling
-    private static final Set<String> BLOCKED_DOMAINS = Set.of(
-            "facebook.com", "twitter.com", "instagram.com", "youtube.com",
-            "linkedin.com", "pinterest.com", "reddit.com", "tiktok.com",
-            "doubleclick.net", "googleadservices.com", "analytics.google.com",
-            "googleapis.com", "googlesyndication.com"
-    );
-
-    public boolean shouldCrawl(String url) {
-        if (url == null || url.isBlank()) return false;
+    @Value("${crawler.filter.rules-file:}")
+    private String rulesFile;
 
-        // Filter out excessively long URLs
-        if (url.length() > maxUrlLength) {
-            return false;
-        }
+    // Swapped atomically when the rules file changes
+    private volatile UrlFilterEngine filterEngine = UrlFilterEngine.compile(UrlFilterRules.defaults());
+    private volatile long rulesLastModified = -1;
 
-        String lowerUrl = url.toLowerCase();
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
-        // Check blocked file extensions
-        for (String ext : BLOCKED_EXTENSIONS) {
-            if (lowerUrl.endsWith(ext)) {
-                return false;
-            }
-        }
-
-        // Check blocked path segments
-        for (String path : BLOCKED_PATHS) {
-            if (lowerUrl.contains(path.toLowerCase())) {
-                return false;
-            }
-        }
-
-        // Check blocked domains
-        for (String domain : BLOCKED_DOMAINS) {
-            // Match domain patterns like "www.domain.com", "domain.com", or "subdomain.domain.com"
-            if (lowerUrl.matches("https?://(?:www\\.)?" + domain + ".*") ||
-                    lowerUrl.matches("https?://.*\\." + domain + ".*")) {
-                return false;
-            }
-        }
-
-        // Check regex patterns
-        for (Pattern pattern : BLOCKED_PATTERNS) {
-            if (pattern.matcher(url).matches()) {
-                return false;
-            }
-        }
+    /**
+     * Load filtering rules from the rules file, if one is configured
+     */
+    @PostConstruct
+    public void loadRules() {
+        reloadRulesIfChanged();
+    }
 
-        // Filter fragment identifiers (they point to same content)
-        if (lowerUrl.contains("#")) {
-            // Only crawl the base URL without fragment
-            String baseUrl = url.substring(0, url.indexOf('#'));
-            // If we've already visited the base URL, don't crawl this fragment
-            if (!shouldCrawlWithRedis(baseUrl)) {
-                return false;
-            }
+    @Scheduled(
+            initialDelayString = "${crawler.filter.reload-interval-ms:30000}",
+            fixedDelayString = "${crawler.filter.reload-interval-ms:30000}")
+    public void reloadRulesIfChanged() {
+        if (rulesFile == null || rulesFile.isBlank()) return;
+
+        File file = new File(rulesFile);
+        if (!file.isFile() || file.lastModified() == rulesLastModified) return;
+
+        try {
+            // Lists missing from the file keep their defaults
+            UrlFilterRules rules = objectMapper.readerForUpdating(UrlFilterRules.defaults()).readValue(file);
+            filterEngine = UrlFilterEngine.compile(rules);
+            rulesLastModified = file.lastModified();
+            log.info("Loaded URL filter rules from {}", file);
+        } catch (Exception e) {
+            // Keep the current rules; a broken file must not stop the crawler
+            log.error("Failed to load URL filter rules from {}: {}", file, e.getMessage());
         }
-
-        // Check Redis for already visited URLs
-        return shouldCrawlWithRedis(url);
     }
 
-    private boolean shouldCrawlWithRedis(String url) {
-        if (!isRedisEnabled) return true;
-
-        // URL encoding for safe Redis key
-        String redisKey = visitedKeyPrefix + URLEncoder.encode(url, StandardCharsets.UTF_8);
+    /**
+     * Checks the URL against the filtering rules; whether it was seen is up to UrlClaimService
+     */
+    public boolean isAllowed(String url) {
+        if (url == null || url.isBlank()) return false;
 
-        // Check if URL was already visited
-        Boolean alreadyVisited = redisTemplate.hasKey(redisKey);
-        if (Boolean.TRUE.equals(alreadyVisited)) {
+        // Filter out excessively long URLs
+        if (url.length() > maxUrlLength) {
             return false;
         }
 
-        // Mark as visited for 1 hour
-        redisTemplate.opsForValue().set(redisKey, "1", TTL);
-
-        return true;
+        return !filterEngine.isBlocked(url);
     }
 
     /**
@@ -161,6 +85,12 @@ public class FilteringService {
         // Remove tracking parameters
         String normalized = url;
 
+        // Remove the fragment, it points into the same page
+        int fragment = normalized.indexOf('#');
+        if (fragment >= 0) {
+            normalized = normalized.substring(0, fragment);
+        }
+
         // Remove trailing slashes
         if (normalized.endsWith("/")) {
             normalized = normalized.substring(0, normalized.length() - 1);
@@ -199,4 +129,17 @@ public class FilteringService {
 
         return normalized;
     }
+
+    /**
+     * The crawlable links of a page: absolute http(s) links, normalized, without the page itself
+     * or repeats
+     */
+    public List<String> normalizeLinks(List<String> links, String pageUrl) {
+        return links.stream()
+                .filter(href -> href.startsWith("http"))
+                .map(this::normalizeUrl)
+                .filter(href -> !href.equals(pageUrl))
+                .distinct()
+                .collect(Collectors.toList());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,445 @@
+package com.devik.service.archive;
+
+import com.devik.service.fetcher.FetchedPage;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append-only local store of fetched page bodies, so pages can be indexed again without
+ * crawling them again.
+ * <p>
+ * Bodies are deflated into fixed-size segment files, {@code pages-<n>.seg}, each memory-mapped
+ * for both the appends and the reads. A record is the magic, its length and a CRC32, then the
+ * page id, fetch time, URL, base URL, charset and deflated body. A page stored again replaces
+ * the old record in the index; the old bytes are not reclaimed.
+ * <p>
+ * The id to location index is kept in memory and appended to {@code index.log} after each
+ * record; removing a page appends a tombstone. On startup the log is replayed and the tail of
+ * the last segment is scanned for records the log missed; a record cut short by a crash fails
+ * its CRC and is overwritten. The segments and then the log are forced to disk every
+ * force-interval-ms, so a crash of the process loses nothing and a power loss at most the pages
+ * stored since the last force.
+ */
+@Slf4j
+@Component
+public class PageArchive {
+
+    public record ArchivedPage(UUID id, String url, Instant fetchedAt, FetchedPage page) {}
+
+    private static final int MAGIC = 0x50414745;
+    private static final int RECORD_HEADER_BYTES = 12;
+    private static final int INDEX_ENTRY_BYTES = 24;
+    private static final long TOMBSTONE = -1;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentBytes;
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+    private final Map<UUID, Long> index = new ConcurrentHashMap<>();
+    private final AtomicLong pagesStored = new AtomicLong();
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private FileChannel indexLog;
+    private ScheduledExecutorService forcer;
+    // Append offset in the last segment, guarded by this
+    private int position;
+    // First segment written since the last force, guarded by this
+    private int unforcedFrom;
+
+    public PageArchive(
+            @Value("${crawler.archive.enabled:true}") boolean enabled,
+            @Value("${crawler.archive.path:data/pages}") String path,
+            @Value("${crawler.archive.segment-mb:256}") int segmentMegabytes,
+            @Value("${crawler.archive.compression-level:6}") int compressionLevel,
+            @Value("${crawler.archive.force-interval-ms:5000}") long forceIntervalMillis
+    ) {
+        this.enabled = enabled;
+        this.directory = Path.of(path);
+        this.segmentBytes = Math.min(segmentMegabytes, 1024) * 1024 * 1024;
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(compressionLevel));
+        if (!enabled) return;
+
+        try {
+            open();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open page archive in " + directory, e);
+        }
+        log.info("Opened page archive in {}: {} pages in {} segments", directory, index.size(), segments.length);
+
+        this.forcer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "page-archive-force");
+            thread.setDaemon(true);
+            return thread;
+        });
+        forcer.scheduleWithFixedDelay(this::force, forceIntervalMillis, forceIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        while (Files.exists(segmentPath(segments.length))) {
+            mapSegment(segments.length);
+        }
+        if (segments.length == 0) mapSegment(0);
+
+        indexLog = FileChannel.open(directory.resolve("index.log"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int last = segments.length - 1;
+        int indexedEnd = replayIndex(last);
+        position = recover(last, indexedEnd);
+        unforcedFrom = last;
+    }
+
+    /**
+     * Load the index log, dropping a partial last entry and entries that do not point at a
+     * record, as after a power loss that kept the log but not the segment
+     *
+     * @return end of the last indexed record in the given segment
+     */
+    private int replayIndex(int lastSegment) throws IOException {
+        long entries = indexLog.size() / INDEX_ENTRY_BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_ENTRY_BYTES * 4096);
+        long read = 0;
+        int indexedEnd = 0;
+        while (read < entries) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), (entries - read) * INDEX_ENTRY_BYTES));
+            while (buffer.hasRemaining()) {
+                indexLog.read(buffer, read * INDEX_ENTRY_BYTES + buffer.position());
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                UUID id = new UUID(buffer.getLong(), buffer.getLong());
+                long location = buffer.getLong();
+                read++;
+                if (location == TOMBSTONE) {
+                    index.remove(id);
+                    continue;
+                }
+                int length = recordLength(location);
+                if (length < 0) continue;
+
+                index.put(id, location);
+                if (segmentOf(location) == lastSegment) {
+                    indexedEnd = Math.max(indexedEnd, offsetOf(location) + RECORD_HEADER_BYTES + length);
+                }
+            }
+        }
+        indexLog.truncate(entries * INDEX_ENTRY_BYTES);
+        indexLog.position(entries * INDEX_ENTRY_BYTES);
+        return indexedEnd;
+    }
+
+    /**
+     * Length of the record at a location, or -1 if there is no record there
+     */
+    private int recordLength(long location) {
+        if (segmentOf(location) >= segments.length) return -1;
+        MappedByteBuffer segment = segments[segmentOf(location)];
+        int offset = offsetOf(location);
+        if (offset < 0 || offset + RECORD_HEADER_BYTES > segmentBytes || segment.getInt(offset) != MAGIC) return -1;
+        int length = segment.getInt(offset + 4);
+        return length < 16 || length > segmentBytes - offset - RECORD_HEADER_BYTES ? -1 : length;
+    }
+
+    /**
+     * Index the complete records past the indexed ones in the last segment
+     *
+     * @return offset where the next record goes
+     */
+    private int recover(int segment, int from) throws IOException {
+        MappedByteBuffer buffer = segments[segment];
+        int offset = from;
+        int recovered = 0;
+        while (offset + RECORD_HEADER_BYTES <= segmentBytes && buffer.getInt(offset) == MAGIC) {
+            int length = buffer.getInt(offset + 4);
+            if (length < 16 || length > segmentBytes - offset - RECORD_HEADER_BYTES) break;
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(offset + RECORD_HEADER_BYTES, length));
+            if ((int) crc.getValue() != buffer.getInt(offset + 8)) break;
+
+            UUID id = new UUID(buffer.getLong(offset + RECORD_HEADER_BYTES), buffer.getLong(offset + RECORD_HEADER_BYTES + 8));
+            long location = locationOf(segment, offset);
+            index.put(id, location);
+            appendIndex(id, location);
+            offset += RECORD_HEADER_BYTES + length;
+            recovered++;
+        }
+        if (recovered > 0) log.info("Recovered {} archived pages missing from the index log", recovered);
+        return offset;
+    }
+
+    /**
+     * Compress and append a fetched page; failures are logged, never thrown to the crawler
+     */
+    public void store(UUID id, String url, FetchedPage page) {
+        if (!enabled || page.getBody() == null) return;
+
+        try {
+            byte[] record = encode(id, url, page);
+            if (record.length > segmentBytes) {
+                log.warn("Not archiving {}: {} bytes compressed exceeds the segment size", url, record.length);
+                return;
+            }
+
+            long location;
+            synchronized (this) {
+                if (position + record.length > segmentBytes) {
+                    mapSegment(segments.length);
+                    position = 0;
+                }
+                int segment = segments.length - 1;
+                segments[segment].put(position, record);
+                location = locationOf(segment, position);
+                position += record.length;
+                appendIndex(id, location);
+                index.put(id, location);
+            }
+
+            pagesStored.incrementAndGet();
+            rawBytes.addAndGet(page.getBody().length);
+            storedBytes.addAndGet(record.length);
+        } catch (IOException e) {
+            log.warn("Failed to archive {}: {}", url, e.getMessage());
+        }
+    }
+
+    /**
+     * Drop a page from the archive, so a re-index leaves it out; its bytes are not reclaimed
+     */
+    public void remove(UUID id) {
+        if (!enabled || !index.containsKey(id)) return;
+
+        try {
+            synchronized (this) {
+                appendIndex(id, TOMBSTONE);
+                index.remove(id);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to remove archived page {}: {}", id, e.getMessage());
+        }
+    }
+
+    public Optional<ArchivedPage> load(UUID id) {
+        Long location = index.get(id);
+        return location == null ? Optional.empty() : Optional.of(read(location));
+    }
+
+    /**
+     * Locations of the current record of every page, in file order so reading them in turn
+     * streams through the segments
+     */
+    public long[] liveLocations() {
+        return index.values().stream()
+                .mapToLong(Long::longValue)
+                .sorted()
+                .toArray();
+    }
+
+    /**
+     * Decode the record at a location from {@link #liveLocations()}; safe to call from many
+     * threads, each inflating from its own view of the mapping
+     */
+    public ArchivedPage read(long location) {
+        MappedByteBuffer segment = segments[segmentOf(location)];
+        int offset = offsetOf(location);
+        ByteBuffer record = segment.slice(offset + RECORD_HEADER_BYTES, segment.getInt(offset + 4));
+
+        UUID id = new UUID(record.getLong(), record.getLong());
+        Instant fetchedAt = Instant.ofEpochMilli(record.getLong());
+        String url = readString(record);
+        String baseUrl = readString(record);
+        String charset = readString(record);
+        byte[] body = new byte[record.getInt()];
+
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(record);
+        try {
+            int inflated = 0;
+            while (inflated < body.length && !inflater.finished()) {
+                int count = inflater.inflate(body, inflated, body.length - inflated);
+                if (count == 0 && inflater.needsInput()) break;
+                inflated += count;
+            }
+            if (inflated != body.length) {
+                throw new RuntimeException("Archived page " + id + " is truncated");
+            }
+        } catch (DataFormatException e) {
+            throw new RuntimeException("Archived page " + id + " is corrupt", e);
+        }
+
+        FetchedPage page = FetchedPage.builder()
+                .url(baseUrl)
+                .statusCode(200)
+                .headers(Map.of())
+                .body(body)
+                .charset(charset.isEmpty() ? null : charset)
+                .build();
+        return new ArchivedPage(id, url, fetchedAt, page);
+    }
+
+    private byte[] encode(UUID id, String url, FetchedPage page) {
+        byte[] urlBytes = url.getBytes(StandardCharsets.UTF_8);
+        byte[] baseBytes = (page.getUrl() == null ? url : page.getUrl()).getBytes(StandardCharsets.UTF_8);
+        byte[] charsetBytes = (page.getCharset() == null ? "" : page.getCharset()).getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = deflate(page.getBody());
+
+        int length = 16 + 8 + 4 + urlBytes.length + 4 + baseBytes.length + 4 + charsetBytes.length + 4 + compressed.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + length);
+        record.putInt(MAGIC).putInt(length).putInt(0);
+        record.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+        record.putLong(System.currentTimeMillis());
+        record.putInt(urlBytes.length).put(urlBytes);
+        record.putInt(baseBytes.length).put(baseBytes);
+        record.putInt(charsetBytes.length).put(charsetBytes);
+        record.putInt(page.getBody().length).put(compressed);
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_BYTES, length);
+        record.putInt(8, (int) crc.getValue());
+        return record.array();
+    }
+
+    private byte[] deflate(byte[] body) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(body);
+        deflater.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        byte[] chunk = new byte[16 * 1024];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        return out.toByteArray();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void appendIndex(UUID id, long location) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .putLong(location)
+                .flip();
+        while (entry.hasRemaining()) {
+            indexLog.write(entry);
+        }
+    }
+
+    /**
+     * Map a segment at its full size up front; the file is sparse, so unused space costs no disk
+     */
+    private void mapSegment(int segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            MappedByteBuffer[] grown = Arrays.copyOf(segments, segment + 1);
+            grown[segment] = mapping;
+            segments = grown;
+        }
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve("pages-" + segment + ".seg");
+    }
+
+    private static long locationOf(int segment, int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        if (!enabled) return stats;
+
+        long raw = rawBytes.get();
+        stats.put("pages", index.size());
+        stats.put("segments", segments.length);
+        stats.put("pagesStored", pagesStored.get());
+        stats.put("compressionRatio", raw == 0 ? 0.0 : (double) storedBytes.get() / raw);
+        return stats;
+    }
+
+    /**
+     * Write the segments stored to since the last force back to disk, then the index log, so the
+     * log never survives a power loss that the records it points at did not
+     */
+    void force() {
+        MappedByteBuffer[] written;
+        int from;
+        synchronized (this) {
+            if (!indexLog.isOpen()) return;
+            written = segments;
+            from = unforcedFrom;
+            unforcedFrom = segments.length - 1;
+        }
+        try {
+            for (int segment = from; segment < written.length; segment++) {
+                written[segment].force();
+            }
+            indexLog.force(false);
+        } catch (IOException e) {
+            log.warn("Failed to force page archive in {} to disk: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Write the mapped segments and the index log back to disk
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (!enabled) return;
+        forcer.shutdown();
+        try {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+            indexLog.force(false);
+            indexLog.close();
+        } catch (IOException e) {
+            log.warn("Failed to flush page archive in {}: {}", directory, e.getMessage());
+        }
+    }
+}
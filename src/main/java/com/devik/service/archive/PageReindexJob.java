@@ -0,0 +1,199 @@
+package com.devik.service.archive;
+
+import com.devik.indexer.IndexerStrategy;
+import com.devik.model.CrawlResult;
+import com.devik.service.FilteringService;
+import com.devik.service.extractor.ExtractedPage;
+import com.devik.service.extractor.PageExtractor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background job that indexes every archived page again, without fetching anything.
+ * <p>
+ * Record locations are walked in file order and handed out in batches to a pool of workers,
+ * which inflate, extract and index their batch; a full pool makes the walk run the batch itself,
+ * so reading never gets ahead of indexing. The archive only keeps pages that were indexed when
+ * crawled, so near-duplicates stay out without consulting the near-duplicate index.
+ */
+@Slf4j
+@Component
+public class PageReindexJob {
+
+    public enum State {IDLE, RUNNING, COMPLETED, FAILED}
+
+    private final PageArchive pageArchive;
+    private final FilteringService filteringService;
+
+    @Value("${crawler.archive.reindex.threads:8}")
+    private int threads;
+
+    @Value("${crawler.archive.reindex.batch-size:64}")
+    private int batchSize;
+
+    private volatile State state = State.IDLE;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private volatile long totalPages;
+    private final AtomicLong indexedPages = new AtomicLong();
+    private final AtomicLong failedPages = new AtomicLong();
+
+    @Autowired
+    public PageReindexJob(PageArchive pageArchive, FilteringService filteringService) {
+        this.pageArchive = pageArchive;
+        this.filteringService = filteringService;
+    }
+
+    /**
+     * Start indexing the archive in the background.
+     *
+     * @return false if a re-index is already running
+     */
+    public synchronized boolean start(PageExtractor pageExtractor, IndexerStrategy indexerStrategy) {
+        if (state == State.RUNNING) return false;
+
+        state = State.RUNNING;
+        startedAt = Instant.now();
+        finishedAt = null;
+        error = null;
+        totalPages = 0;
+        indexedPages.set(0);
+        failedPages.set(0);
+
+        Thread worker = new Thread(() -> run(pageExtractor, indexerStrategy), "page-reindex");
+        worker.setDaemon(true);
+        worker.start();
+        return true;
+    }
+
+    private void run(PageExtractor pageExtractor, IndexerStrategy indexerStrategy) {
+        AtomicInteger workerCount = new AtomicInteger();
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads), runnable -> {
+            Thread thread = new Thread(runnable, "page-reindex-" + workerCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+        try {
+            long[] locations = pageArchive.liveLocations();
+            totalPages = locations.length;
+            for (int from = 0; from < locations.length; from += batchSize) {
+                long[] batch = Arrays.copyOfRange(locations, from, Math.min(locations.length, from + batchSize));
+                workers.execute(() -> indexBatch(batch, pageExtractor, indexerStrategy));
+            }
+
+            workers.shutdown();
+            while (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.info("Re-index waiting for workers: {} of {} pages done", done(), totalPages);
+            }
+            state = State.COMPLETED;
+            log.info("Re-index complete: {} pages indexed, {} failed", indexedPages.get(), failedPages.get());
+        } catch (Exception e) {
+            workers.shutdownNow();
+            error = e.getMessage();
+            state = State.FAILED;
+            log.error("Re-index failed: {}", e.getMessage());
+        } finally {
+            finishedAt = Instant.now();
+        }
+    }
+
+    private void indexBatch(long[] locations, PageExtractor pageExtractor, IndexerStrategy indexerStrategy) {
+        List<CrawlResult> results = new ArrayList<>(locations.length);
+        for (long location : locations) {
+            try {
+                PageArchive.ArchivedPage archived = pageArchive.read(location);
+                results.add(toResult(archived, pageExtractor.extract(archived.page())));
+            } catch (Exception e) {
+                failedPages.incrementAndGet();
+                log.warn("Failed to extract archived page at {}: {}", location, e.getMessage());
+            }
+        }
+        if (results.isEmpty()) return;
+
+        try {
+            indexerStrategy.indexDocuments(results);
+            indexedPages.addAndGet(results.size());
+        } catch (Exception e) {
+            failedPages.addAndGet(results.size());
+            log.error("Failed to re-index batch of {} pages: {}", results.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild one page from the archive, for replaying it into an indexing backend that lost it
+     *
+     * @return empty if the page is not archived
+     */
+    public Optional<CrawlResult> rebuild(UUID id, PageExtractor pageExtractor) {
+        Optional<PageArchive.ArchivedPage> archived = pageArchive.load(id);
+        if (archived.isEmpty()) return Optional.empty();
+        try {
+            return Optional.of(toResult(archived.get(), pageExtractor.extract(archived.get().page())));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to extract archived page " + id, e);
+        }
+    }
+
+    /**
+     * Build the result the crawler built, dated when the page was fetched
+     */
+    private CrawlResult toResult(PageArchive.ArchivedPage archived, ExtractedPage page) {
+        String url = archived.url();
+        List<String> links = filteringService.normalizeLinks(page.links(), url);
+
+        return CrawlResult.builder()
+                .id(archived.id())
+                .url(url)
+                .title(page.title())
+                .content(page.content())
+                .links(links)
+                .crawledAt(LocalDateTime.ofInstant(archived.fetchedAt(), ZoneId.systemDefault()))
+                .build();
+    }
+
+    private long done() {
+        return indexedPages.get() + failedPages.get();
+    }
+
+    /**
+     * Get the progress of the current or last re-index
+     */
+    public Map<String, Object> getProgress() {
+        Map<String, Object> progress = new HashMap<>();
+        Instant start = startedAt;
+        Instant end = finishedAt == null ? Instant.now() : finishedAt;
+        double seconds = start == null ? 0 : Math.max(1, end.toEpochMilli() - start.toEpochMilli()) / 1000.0;
+
+        progress.put("state", state);
+        progress.put("totalPages", totalPages);
+        progress.put("indexedPages", indexedPages.get());
+        progress.put("failedPages", failedPages.get());
+        progress.put("pagesPerSecond", seconds == 0 ? 0.0 : done() / seconds);
+        progress.put("startedAt", start == null ? null : start.toString());
+        progress.put("finishedAt", finishedAt == null ? null : finishedAt.toString());
+        progress.put("error", error);
+        return progress;
+    }
+}
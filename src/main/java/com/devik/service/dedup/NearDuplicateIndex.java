@@ -0,0 +1,210 @@
+package com.devik.service.dedup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Finds pages whose text is a near-duplicate of a recently indexed page.
+ * <p>
+ * Fingerprints are split into max-distance + 1 bands; two fingerprints within max-distance bits
+ * of each other must agree exactly on at least one band. Each band value is a Redis set of the
+ * fingerprints and URLs that have it, so a lookup is one pipelined read of a few small sets
+ * instead of a scan over every stored fingerprint. Band sets expire after the TTL, which keeps
+ * the index to recent pages, and are capped in size for boilerplate-heavy sites.
+ * <p>
+ * A page is registered only after it has been indexed or queued, so a page that fails to
+ * index never hides its later copies. Lookup and registration are separate round trips, so two
+ * nodes crawling near-identical pages at the same moment may both index them; that only costs
+ * one redundant document.
+ */
+@Slf4j
+@Service
+public class NearDuplicateIndex {
+
+    private static final int HEX_LENGTH = 16;
+
+    /**
+     * Outcome of a lookup: the page this one duplicates, or the fingerprint to register once
+     * this page is indexed
+     */
+    public record Lookup(String canonical, long fingerprint, List<String> bandKeys, List<String> fullBuckets) {
+
+        private static final Lookup UNTRACKED = new Lookup(null, 0, List.of(), List.of());
+
+        public boolean isDuplicate() {
+            return canonical != null;
+        }
+    }
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    @Value("${crawler.dedup.simhash.enabled:true}")
+    private boolean enabled;
+
+    @Value("${crawler.dedup.simhash.max-distance:3}")
+    private int maxDistance;
+
+    @Value("${crawler.dedup.simhash.min-tokens:50}")
+    private int minTokens;
+
+    @Value("${crawler.dedup.simhash.max-bucket-size:1000}")
+    private int maxBucketSize;
+
+    @Value("${crawler.redis.ttl.simhash:604800}")
+    private int ttlSeconds;
+
+    @Value("${crawler.redis.simhash-prefix:simhash:}")
+    private String keyPrefix;
+
+    @Value("${crawler.redis.stats-prefix:crawlstats:}")
+    private String statsKeyPrefix;
+
+    @Autowired
+    public NearDuplicateIndex(RedisTemplate<String, String> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Look for a recent near-duplicate of a page.
+     * <p>
+     * A match is recorded as an alias of the page it duplicates. Earlier fingerprints of the
+     * same URL are ignored, so a re-crawled page is always re-indexed. A page without a match
+     * should be passed to {@link #register} once it is indexed.
+     */
+    public Lookup lookup(String url, String content) {
+        if (!enabled || content == null) return Lookup.UNTRACKED;
+
+        SimHash hash = SimHash.of(content);
+        // Short texts (error pages, login walls) collide too easily to be trusted
+        if (hash.tokens() < minTokens) return Lookup.UNTRACKED;
+
+        List<String> bandKeys = bandKeys(hash.value());
+        List<Object> buckets = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : bandKeys) {
+                connection.setCommands().sMembers(bytes(key));
+            }
+            return null;
+        });
+
+        String canonical = null;
+        int bestDistance = maxDistance + 1;
+        List<String> fullBuckets = new ArrayList<>();
+        for (int band = 0; band < buckets.size(); band++) {
+            Collection<?> members = (Collection<?>) buckets.get(band);
+            if (members == null) continue;
+            if (members.size() >= maxBucketSize) fullBuckets.add(bandKeys.get(band));
+
+            for (Object member : members) {
+                String entry = member.toString();
+                if (entry.length() <= HEX_LENGTH) continue;
+
+                String candidateUrl = entry.substring(HEX_LENGTH);
+                if (candidateUrl.equals(url)) continue;
+
+                int distance = hash.distance(Long.parseUnsignedLong(entry, 0, HEX_LENGTH, 16));
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    canonical = candidateUrl;
+                }
+            }
+        }
+
+        if (canonical != null) {
+            recordAlias(url, canonical);
+            log.debug("{} is a near-duplicate of {} ({} bits apart)", url, canonical, bestDistance);
+        }
+        return new Lookup(canonical, hash.value(), bandKeys, fullBuckets);
+    }
+
+    /**
+     * URL of the indexed page a URL was recorded as a duplicate of, if any
+     */
+    public Optional<String> canonicalOf(String url) {
+        return Optional.ofNullable(redisTemplate.opsForValue().get(aliasKey(url)));
+    }
+
+    /**
+     * Register an indexed page, so later near-duplicates of it are skipped
+     */
+    public void register(String url, Lookup lookup) {
+        if (lookup.isDuplicate() || lookup.bandKeys().isEmpty()) return;
+
+        byte[] member = bytes(String.format("%016x", lookup.fingerprint()) + url);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            // Make room in full buckets by evicting an arbitrary older entry
+            for (String key : lookup.fullBuckets()) {
+                connection.setCommands().sPop(bytes(key));
+            }
+            for (String key : lookup.bandKeys()) {
+                connection.setCommands().sAdd(bytes(key), member);
+                connection.keyCommands().expire(bytes(key), ttlSeconds);
+            }
+            return null;
+        });
+    }
+
+    private void recordAlias(String url, String canonical) {
+        redisTemplate.opsForValue().set(aliasKey(url), canonical, Duration.ofSeconds(ttlSeconds));
+        redisTemplate.opsForValue().increment(aliasCounterKey());
+    }
+
+    /**
+     * Redis keys of the bands of a fingerprint. Bands cover the 64 bits as evenly as possible.
+     */
+    List<String> bandKeys(long fingerprint) {
+        int bands = Math.min(maxDistance + 1, SimHash.BITS);
+        List<String> keys = new ArrayList<>(bands);
+
+        int start = 0;
+        for (int band = 0; band < bands; band++) {
+            int width = SimHash.BITS / bands + (band < SimHash.BITS % bands ? 1 : 0);
+            long mask = width == SimHash.BITS ? -1L : (1L << width) - 1;
+            long value = (fingerprint >>> start) & mask;
+            keys.add(keyPrefix + "band:" + band + ":" + Long.toHexString(value));
+            start += width;
+        }
+        return keys;
+    }
+
+    public Map<String, Object> getStats() {
+        String aliases = redisTemplate.opsForValue().get(aliasCounterKey());
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxDistance", maxDistance);
+        stats.put("aliases", aliases == null ? 0 : Long.parseLong(aliases));
+        return stats;
+    }
+
+    /**
+     * Keys holding the near-duplicate counters, removed when crawl data is reset
+     */
+    public List<String> counterKeys() {
+        return List.of(aliasCounterKey());
+    }
+
+    private String aliasKey(String url) {
+        return keyPrefix + "alias:" + url;
+    }
+
+    private String aliasCounterKey() {
+        return statsKeyPrefix + "aliases";
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
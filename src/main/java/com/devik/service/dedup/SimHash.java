@@ -0,0 +1,90 @@
+package com.devik.service.dedup;
+
+/**
+ * 64-bit SimHash fingerprint of a page's extracted text.
+ * <p>
+ * Features are overlapping three-word shingles of the lowercased text, so pages that differ
+ * only in a date, a counter or a navigation link end up a few bits apart, while unrelated
+ * pages differ in about half of the bits. Tokens are hashed while scanning, so no strings are
+ * allocated for the words.
+ *
+ * @param value  the fingerprint
+ * @param tokens number of words the fingerprint was computed from
+ */
+public record SimHash(long value, int tokens) {
+
+    public static final int BITS = 64;
+
+    private static final int SHINGLE_SIZE = 3;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Fingerprint a text. Texts shorter than one shingle are fingerprinted from their words.
+     */
+    public static SimHash of(CharSequence text) {
+        int[] weights = new int[BITS];
+        long[] window = new long[SHINGLE_SIZE];
+        int tokens = 0;
+
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            // Skip to the start of the next word
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) i++;
+            if (i == length) break;
+
+            long hash = FNV_OFFSET;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                hash = (hash ^ Character.toLowerCase(text.charAt(i))) * FNV_PRIME;
+                i++;
+            }
+
+            window[tokens % SHINGLE_SIZE] = mix(hash);
+            tokens++;
+            if (tokens >= SHINGLE_SIZE) {
+                add(weights, shingle(window, tokens));
+            }
+        }
+
+        // Too short for a full shingle: use the words on their own
+        for (int t = 0; t < tokens && tokens < SHINGLE_SIZE; t++) {
+            add(weights, window[t]);
+        }
+
+        long value = 0;
+        for (int bit = 0; bit < BITS; bit++) {
+            if (weights[bit] > 0) value |= 1L << bit;
+        }
+        return new SimHash(value, tokens);
+    }
+
+    /**
+     * Number of differing bits between two fingerprints
+     */
+    public int distance(long other) {
+        return Long.bitCount(value ^ other);
+    }
+
+    // Order-dependent hash of the last SHINGLE_SIZE words; window is a ring buffer
+    private static long shingle(long[] window, int tokens) {
+        long hash = 0;
+        for (int k = 0; k < SHINGLE_SIZE; k++) {
+            hash = Long.rotateLeft(hash, 21) ^ window[(tokens + k) % SHINGLE_SIZE];
+        }
+        return mix(hash);
+    }
+
+    private static void add(int[] weights, long hash) {
+        for (int bit = 0; bit < BITS; bit++) {
+            weights[bit] += ((hash >>> bit) & 1L) != 0 ? 1 : -1;
+        }
+    }
+
+    // SplitMix64 finalizer: spreads FNV's weak low bits over the whole word
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
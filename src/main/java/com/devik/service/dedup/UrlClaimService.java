@@ -0,0 +1,188 @@
+package com.devik.service.dedup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Claims URLs for crawling with a single atomic Redis round trip.
+ * <p>
+ * A URL can be claimed when it has no visited key and no processing key; claiming sets the
+ * processing key with a TTL. Because the check and the claim run inside one Lua script, two
+ * nodes can never both claim the same URL. The scripts also keep running crawl totals, so
+ * statistics never need to enumerate keys. URLs the {@link UrlSeenFilter} says this node has
+ * already claimed are dropped before the script runs.
+ */
+@Slf4j
+@Service
+public class UrlClaimService {
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final UrlSeenFilter urlSeenFilter;
+    private final DefaultRedisScript<List> claimScript;
+    private final DefaultRedisScript<Long> markVisitedScript;
+    private final DefaultRedisScript<Long> releaseScript;
+
+    @Value("${crawler.redis.processing-prefix:processing:}")
+    private String processingKeyPrefix;
+
+    @Value("${crawler.redis.visited-prefix:visited:}")
+    private String visitedKeyPrefix;
+
+    @Value("${crawler.redis.stats-prefix:crawlstats:}")
+    private String statsKeyPrefix;
+
+    @Value("${crawler.redis.ttl.processing:600}")
+    private int processingTtlSeconds;
+
+    @Value("${crawler.redis.ttl.visited:86400}")
+    private int visitedTtlSeconds;
+
+    @Autowired
+    public UrlClaimService(RedisTemplate<String, String> redisTemplate, UrlSeenFilter urlSeenFilter) {
+        this.redisTemplate = redisTemplate;
+        this.urlSeenFilter = urlSeenFilter;
+        this.claimScript = loadScript("scripts/claim-urls.lua", List.class);
+        this.markVisitedScript = loadScript("scripts/mark-visited.lua", Long.class);
+        this.releaseScript = loadScript("scripts/release-url.lua", Long.class);
+    }
+
+    private static <T> DefaultRedisScript<T> loadScript(String path, Class<T> resultType) {
+        DefaultRedisScript<T> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource(path)));
+        script.setResultType(resultType);
+        return script;
+    }
+
+    /**
+     * Claim a single URL
+     */
+    public boolean claim(String url) {
+        return !claim(List.of(url)).isEmpty();
+    }
+
+    /**
+     * Claim a batch of normalized URLs in one round trip.
+     *
+     * @return the subset of URLs that were claimed by this call, in input order
+     */
+    public List<String> claim(List<String> urls) {
+        // Skip the URLs this node has probably claimed; the rest go to Redis
+        List<String> candidates = new ArrayList<>(urls.size());
+        Set<String> verifying = new HashSet<>();
+        for (String url : urls) {
+            UrlSeenFilter.Check check = urlSeenFilter.check(url);
+            if (check == UrlSeenFilter.Check.HIT) continue;
+            if (check == UrlSeenFilter.Check.VERIFY) verifying.add(url);
+            candidates.add(url);
+        }
+        if (candidates.isEmpty()) return List.of();
+
+        List<String> keys = new ArrayList<>(candidates.size() * 2 + 1);
+        keys.add(claimedCounterKey());
+        for (String url : candidates) {
+            keys.add(visitedKeyPrefix + url);
+            keys.add(processingKeyPrefix + url);
+        }
+
+        List<?> positions = redisTemplate.execute(claimScript, keys, String.valueOf(processingTtlSeconds));
+        List<String> claimed = new ArrayList<>(positions == null ? 0 : positions.size());
+        if (positions != null) {
+            for (Object position : positions) {
+                claimed.add(candidates.get(((Number) position).intValue() - 1));
+            }
+        }
+
+        verifying.forEach(url -> urlSeenFilter.recordVerification(claimed.contains(url)));
+        claimed.forEach(urlSeenFilter::put);
+        log.debug("Claimed {} of {} URLs, {} skipped locally", claimed.size(), urls.size(), urls.size() - candidates.size());
+        return claimed;
+    }
+
+    /**
+     * Mark a URL as visited and record its domain.
+     *
+     * @return false if another worker already marked it
+     */
+    public boolean markVisited(String url, String domain) {
+        Long marked = redisTemplate.execute(markVisitedScript,
+                List.of(visitedKeyPrefix + url, visitedCounterKey(), domainsKey()),
+                String.valueOf(visitedTtlSeconds), domain);
+        return marked != null && marked == 1L;
+    }
+
+    /**
+     * Release the processing claim so the URL can be retried later
+     */
+    public void release(String url) {
+        urlSeenFilter.release(url);
+        deleteClaim(url);
+    }
+
+    /**
+     * Drop the processing claim of a URL that is done with; unlike {@link #release} the URL
+     * stays a hit in the seen filter, so it is not sent to Redis again
+     */
+    public void complete(String url) {
+        deleteClaim(url);
+    }
+
+    private void deleteClaim(String url) {
+        redisTemplate.execute(releaseScript, List.of(processingKeyPrefix + url, releasedCounterKey()));
+    }
+
+    /**
+     * Get the crawl counters. Each value is a single O(1) Redis read.
+     * <p>
+     * These are running totals since the last reset, not live key counts: claims and visited
+     * marks expire by TTL without touching them, and work that overlaps a reset is counted in
+     * the new totals. Distinct domains is a HyperLogLog estimate.
+     */
+    public Map<String, Object> getCounters() {
+        Map<String, Object> counters = new HashMap<>();
+        counters.put("claimsSinceReset", parseCounter(redisTemplate.opsForValue().get(claimedCounterKey())));
+        counters.put("releasesSinceReset", parseCounter(redisTemplate.opsForValue().get(releasedCounterKey())));
+        counters.put("visitsSinceReset", parseCounter(redisTemplate.opsForValue().get(visitedCounterKey())));
+        counters.put("approximateDomains", redisTemplate.opsForHyperLogLog().size(domainsKey()));
+        return counters;
+    }
+
+    /**
+     * Keys holding the crawl counters, removed when crawl data is reset
+     */
+    public List<String> counterKeys() {
+        return List.of(claimedCounterKey(), releasedCounterKey(), visitedCounterKey(), domainsKey());
+    }
+
+    private static long parseCounter(String value) {
+        return value == null ? 0 : Long.parseLong(value);
+    }
+
+    private String claimedCounterKey() {
+        return statsKeyPrefix + "claimed";
+    }
+
+    private String releasedCounterKey() {
+        return statsKeyPrefix + "released";
+    }
+
+    private String visitedCounterKey() {
+        return statsKeyPrefix + "visited";
+    }
+
+    private String domainsKey() {
+        return statsKeyPrefix + "domains";
+    }
+}
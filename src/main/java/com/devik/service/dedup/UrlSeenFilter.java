@@ -0,0 +1,319 @@
+package com.devik.service.dedup;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process Bloom filter of the URLs this node has claimed, in front of the Redis claim.
+ * <p>
+ * The filter only knows claims made by this node, so a miss says nothing about other nodes
+ * and always goes on to Redis. A hit means this node has probably claimed the URL already and
+ * the Redis call is skipped; one hit in every verify-every is sent on anyway, and how often
+ * Redis then grants the claim is the observed false-positive rate. Released URLs are kept in a
+ * bounded set that overrides hits, so failed fetches can still be retried. Two generations are
+ * kept so the filter stays size-bounded: once the current generation is full, or half the
+ * visited TTL old, it becomes the previous one. A generation therefore lives at most the visited
+ * TTL, and URLs whose visited key has expired go back to Redis to be crawled again.
+ */
+@Slf4j
+@Component
+public class UrlSeenFilter {
+
+    public enum Check {MISS, HIT, VERIFY}
+
+    private static final int SNAPSHOT_MAGIC = 0x55534633; // "USF3", keyed by URL, with generation ages
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    @Value("${crawler.dedup.bloom.enabled:true}")
+    private boolean enabled;
+
+    @Value("${crawler.dedup.bloom.expected-insertions:5000000}")
+    private int expectedInsertions;
+
+    @Value("${crawler.dedup.bloom.fpp:0.01}")
+    private double falsePositiveProbability;
+
+    @Value("${crawler.dedup.bloom.verify-every:100}")
+    private int verifyEvery;
+
+    @Value("${crawler.dedup.bloom.max-released:100000}")
+    private int maxReleased;
+
+    @Value("${crawler.dedup.bloom.snapshot-path:data/url-bloom.bin}")
+    private String snapshotPath;
+
+    @Value("${crawler.redis.processing-prefix:processing:}")
+    private String processingKeyPrefix;
+
+    @Value("${crawler.redis.visited-prefix:visited:}")
+    private String visitedKeyPrefix;
+
+    @Value("${crawler.redis.ttl.visited:86400}")
+    private long visitedTtlSeconds;
+
+    private volatile BloomFilter<CharSequence> current;
+    private volatile BloomFilter<CharSequence> previous;
+    // When each generation took its first URL, in epoch millis
+    private volatile long currentStartedAt;
+    private volatile long previousStartedAt;
+    private Set<String> released;
+
+    // Until warm-up finishes every lookup falls through to Redis
+    private volatile boolean warm = false;
+
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong confirmedHits = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+    private final AtomicLong rotations = new AtomicLong();
+
+    @Autowired
+    public UrlSeenFilter(RedisTemplate<String, String> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        current = newFilter();
+        previous = newFilter();
+        currentStartedAt = previousStartedAt = System.currentTimeMillis();
+        released = Collections.newSetFromMap(CacheBuilder.newBuilder()
+                .maximumSize(maxReleased)
+                .<String, Boolean>build()
+                .asMap());
+        if (!enabled) return;
+
+        if (loadSnapshot()) {
+            warm = true;
+            return;
+        }
+
+        // No snapshot available: rebuild from Redis in the background
+        Thread warmUp = new Thread(this::warmUpFromRedis, "url-seen-filter-warmup");
+        warmUp.setDaemon(true);
+        warmUp.start();
+    }
+
+    /**
+     * Check whether this node has probably claimed the URL.
+     *
+     * @return HIT to skip the Redis claim, MISS or VERIFY to send the URL on to Redis
+     */
+    public Check check(String url) {
+        if (enabled && System.currentTimeMillis() - currentStartedAt >= generationLifetimeMillis() / 2) {
+            rotate();
+        }
+        if (!enabled || !warm || released.contains(url)
+                || !current.mightContain(url) && !previous.mightContain(url)) {
+            misses.incrementAndGet();
+            return Check.MISS;
+        }
+
+        return hits.incrementAndGet() % Math.max(1, verifyEvery) == 0 ? Check.VERIFY : Check.HIT;
+    }
+
+    /**
+     * Record what Redis answered for a hit sent on by {@link #check}
+     */
+    public void recordVerification(boolean claimed) {
+        if (claimed) {
+            falsePositives.incrementAndGet();
+        } else {
+            confirmedHits.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record a URL this node has just claimed in Redis
+     */
+    public void put(String url) {
+        if (!enabled) return;
+
+        released.remove(url);
+        current.put(url);
+        if (current.approximateElementCount() >= expectedInsertions) {
+            rotate();
+        }
+    }
+
+    /**
+     * Record a claim this node released, so the URL goes back to Redis when it is seen again
+     */
+    public void release(String url) {
+        if (enabled) released.add(url);
+    }
+
+    private synchronized void rotate() {
+        // Another thread may have rotated already
+        long now = System.currentTimeMillis();
+        boolean full = current.approximateElementCount() >= expectedInsertions;
+        boolean aged = now - currentStartedAt >= generationLifetimeMillis() / 2;
+        if (!full && !aged) return;
+
+        // A generation that would outlive the visited TTL as the previous one is dropped outright
+        boolean expired = now - currentStartedAt >= generationLifetimeMillis();
+        previous = expired ? newFilter() : current;
+        previousStartedAt = expired ? now : currentStartedAt;
+        current = newFilter();
+        currentStartedAt = now;
+        rotations.incrementAndGet();
+        log.info("Rotated URL seen filter after {}", full ? expectedInsertions + " insertions" : "half the visited TTL");
+    }
+
+    private long generationLifetimeMillis() {
+        return visitedTtlSeconds * 1000;
+    }
+
+    /**
+     * Forget every URL and delete the snapshot, for when the crawl data in Redis is reset
+     */
+    public synchronized void clear() {
+        previous = newFilter();
+        current = newFilter();
+        currentStartedAt = previousStartedAt = System.currentTimeMillis();
+        released.clear();
+        try {
+            Files.deleteIfExists(Paths.get(snapshotPath));
+        } catch (IOException e) {
+            log.warn("Failed to delete URL seen filter snapshot {}: {}", snapshotPath, e.getMessage());
+        }
+        log.info("Cleared URL seen filter");
+    }
+
+    private BloomFilter<CharSequence> newFilter() {
+        return BloomFilter.create(
+                Funnels.stringFunnel(StandardCharsets.UTF_8),
+                expectedInsertions,
+                falsePositiveProbability);
+    }
+
+    /**
+     * Get filter statistics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("warm", warm);
+        long verified = confirmedHits.get() + falsePositives.get();
+        stats.put("misses", misses.get());
+        stats.put("hits", hits.get());
+        stats.put("verifiedHits", verified);
+        stats.put("falsePositives", falsePositives.get());
+        stats.put("observedFpp", verified == 0 ? 0.0 : (double) falsePositives.get() / verified);
+        stats.put("rotations", rotations.get());
+        stats.put("approximateElements", current.approximateElementCount() + previous.approximateElementCount());
+        stats.put("expectedFpp", current.expectedFpp());
+        return stats;
+    }
+
+    @Scheduled(
+            initialDelayString = "${crawler.dedup.bloom.snapshot-interval-ms:300000}",
+            fixedDelayString = "${crawler.dedup.bloom.snapshot-interval-ms:300000}")
+    public void scheduledSnapshot() {
+        if (enabled && warm) {
+            writeSnapshot();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduledSnapshot();
+    }
+
+    /**
+     * Write both generations to disk, replacing the previous snapshot atomically
+     */
+    synchronized void writeSnapshot() {
+        Path target = Paths.get(snapshotPath);
+        try {
+            Path parent = target.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(expectedInsertions);
+                out.writeDouble(falsePositiveProbability);
+                out.writeLong(previousStartedAt);
+                out.writeLong(currentStartedAt);
+                previous.writeTo(out);
+                current.writeTo(out);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Wrote URL seen filter snapshot to {}", target);
+        } catch (IOException e) {
+            log.warn("Failed to write URL seen filter snapshot to {}: {}", target, e.getMessage());
+        }
+    }
+
+    private boolean loadSnapshot() {
+        Path source = Paths.get(snapshotPath);
+        if (!Files.exists(source)) return false;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(source)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC
+                    || in.readInt() != expectedInsertions
+                    || in.readDouble() != falsePositiveProbability) {
+                log.info("Ignoring URL seen filter snapshot with different sizing: {}", source);
+                return false;
+            }
+            long loadedPreviousStartedAt = in.readLong();
+            long loadedCurrentStartedAt = in.readLong();
+            BloomFilter<CharSequence> loadedPrevious = BloomFilter.readFrom(in, Funnels.stringFunnel(StandardCharsets.UTF_8));
+            BloomFilter<CharSequence> loadedCurrent = BloomFilter.readFrom(in, Funnels.stringFunnel(StandardCharsets.UTF_8));
+            previous = loadedPrevious;
+            current = loadedCurrent;
+            previousStartedAt = loadedPreviousStartedAt;
+            currentStartedAt = loadedCurrentStartedAt;
+            log.info("Loaded URL seen filter snapshot with ~{} keys", current.approximateElementCount() + previous.approximateElementCount());
+            return true;
+        } catch (IOException e) {
+            log.warn("Failed to read URL seen filter snapshot {}: {}", source, e.getMessage());
+            return false;
+        }
+    }
+
+    private void warmUpFromRedis() {
+        long loaded = 0;
+        try {
+            for (String prefix : new String[]{visitedKeyPrefix, processingKeyPrefix}) {
+                ScanOptions options = ScanOptions.scanOptions().match(prefix + "*").count(1000).build();
+                try (Cursor<String> cursor = redisTemplate.scan(options)) {
+                    while (cursor.hasNext()) {
+                        put(cursor.next().substring(prefix.length()));
+                        loaded++;
+                    }
+                }
+            }
+            warm = true;
+            log.info("Warmed URL seen filter from Redis with {} keys", loaded);
+        } catch (Exception e) {
+            // Stay cold: lookups keep going to Redis, which is always correct
+            log.warn("Failed to warm URL seen filter from Redis: {}", e.getMessage());
+        }
+    }
+}
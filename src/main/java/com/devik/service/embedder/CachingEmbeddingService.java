@@ -0,0 +1,148 @@
+package com.devik.service.embedder;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches embeddings by the SHA-256 of the exact input text.
+ * <p>
+ * Vectors are kept as float arrays in a size-bounded Caffeine memory tier, weighed by their
+ * bytes, whose W-TinyLFU admission keeps frequently repeated texts (boilerplate, popular
+ * queries) when a crawl streams one-off texts through it. Vectors are optionally also kept in
+ * an {@link EmbeddingDiskStore} that survives restarts. A disk hit is copied
+ * back into memory. Only misses in both tiers reach the wrapped service, and batches send just
+ * their missing texts.
+ */
+public class CachingEmbeddingService implements EmbeddingService, Closeable {
+
+    private final String name;
+    private final EmbeddingService delegate;
+    private final Cache<HashCode, float[]> memory;
+    private final EmbeddingDiskStore disk;
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxMemoryBytes bytes of vectors kept in memory, 0 disables the cache
+     * @param diskPath       file for the disk tier, null or empty to keep vectors in memory only
+     */
+    public CachingEmbeddingService(String name, EmbeddingService delegate, long maxMemoryBytes,
+                                   String diskPath, long maxDiskBytes) {
+        this.name = name;
+        this.delegate = delegate;
+        this.memory = maxMemoryBytes <= 0 ? null : Caffeine.newBuilder()
+                .maximumWeight(maxMemoryBytes)
+                .weigher((HashCode key, float[] vector) -> EmbeddingDiskStore.KEY_BYTES + vector.length * 4)
+                .recordStats()
+                .build();
+
+        try {
+            this.disk = memory == null || diskPath == null || diskPath.isBlank() ? null
+                    : new EmbeddingDiskStore(Path.of(diskPath), maxDiskBytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open embedding cache " + diskPath, e);
+        }
+    }
+
+    @Override
+    public float[] embed(String text) {
+        if (memory == null) return delegate.embed(text);
+
+        HashCode key = key(text);
+        float[] cached = lookup(key);
+        if (cached != null) return cached.clone();
+
+        misses.incrementAndGet();
+        float[] embedding = delegate.embed(text);
+        store(key, embedding);
+        return embedding;
+    }
+
+    @Override
+    public List<float[]> embedBatch(List<String> texts) {
+        if (memory == null) return delegate.embedBatch(texts);
+
+        List<float[]> embeddings = new ArrayList<>(texts.size());
+        List<HashCode> keys = new ArrayList<>(texts.size());
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            HashCode key = key(texts.get(i));
+            float[] cached = lookup(key);
+            keys.add(key);
+            embeddings.add(cached == null ? null : cached.clone());
+            if (cached == null) missing.add(i);
+        }
+        if (missing.isEmpty()) return embeddings;
+
+        misses.addAndGet(missing.size());
+        List<float[]> computed = delegate.embedBatch(missing.stream().map(texts::get).toList());
+        for (int j = 0; j < missing.size(); j++) {
+            int i = missing.get(j);
+            embeddings.set(i, computed.get(j));
+            store(keys.get(i), computed.get(j));
+        }
+        return embeddings;
+    }
+
+    private float[] lookup(HashCode key) {
+        float[] vector = memory.getIfPresent(key);
+        if (vector != null || disk == null) return vector;
+
+        vector = disk.get(key);
+        if (vector != null) {
+            diskHits.incrementAndGet();
+            memory.put(key, vector);
+        }
+        return vector;
+    }
+
+    // Callers get copies, so the cached arrays are never modified
+    private void store(HashCode key, float[] embedding) {
+        float[] vector = embedding.clone();
+        memory.put(key, vector);
+        if (disk != null) disk.put(key, vector);
+    }
+
+    private static HashCode key(String text) {
+        return Hashing.sha256().hashString(text, StandardCharsets.UTF_8);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("name", name);
+        stats.put("enabled", memory != null);
+        if (memory == null) return stats;
+
+        CacheStats memoryStats = memory.stats();
+        stats.put("memoryEntries", memory.estimatedSize());
+        stats.put("memoryHits", memoryStats.hitCount());
+        stats.put("evictions", memoryStats.evictionCount());
+        stats.put("diskHits", diskHits.get());
+        stats.put("misses", misses.get());
+        long lookups = memoryStats.requestCount();
+        stats.put("hitRate", lookups == 0 ? 0.0 : (double) (lookups - misses.get()) / lookups);
+        if (disk != null) {
+            stats.put("diskEntries", disk.entries());
+            stats.put("diskBytes", disk.sizeBytes());
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (disk != null) disk.close();
+    }
+}
@@ -0,0 +1,175 @@
+package com.devik.service.embedder;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Gathers concurrent single-text embed calls into batches.
+ * <p>
+ * Every crawl thread embeds one page at a time, which would run the embedder model at batch
+ * size 1. Calls here are queued instead; a dispatcher waits up to max-wait-ms after the first
+ * queued text, or until max-batch-size texts are waiting, and sends them as one
+ * {@link EmbeddingService#embedBatch} call. At most max-in-flight batches run at once, and
+ * callers block until their own vector is back, or for at most wait-timeout-ms.
+ */
+@Slf4j
+@Primary
+@Service
+public class CoalescingEmbeddingService implements EmbeddingService {
+
+    private final EmbeddingService delegate;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final long waitTimeoutMillis;
+    private final Semaphore inFlight;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService batchExecutor;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private record Pending(String text, CompletableFuture<float[]> result) {}
+
+    @Autowired
+    public CoalescingEmbeddingService(
+            LocalEmbedderService delegate,
+            @Value("${crawler.embedder.coalesce.enabled:true}") boolean enabled,
+            @Value("${crawler.embedder.coalesce.max-batch-size:32}") int maxBatchSize,
+            @Value("${crawler.embedder.coalesce.max-wait-ms:10}") long maxWaitMillis,
+            @Value("${crawler.embedder.coalesce.max-in-flight:2}") int maxInFlight,
+            @Value("${crawler.embedder.coalesce.wait-timeout-ms:60000}") long waitTimeoutMillis
+    ) {
+        this.delegate = delegate;
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.batchExecutor = Executors.newFixedThreadPool(maxInFlight, runnable -> {
+            Thread thread = new Thread(runnable, "embed-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.dispatcher = new Thread(this::dispatch, "embed-coalescer");
+        this.dispatcher.setDaemon(true);
+        if (enabled) dispatcher.start();
+    }
+
+    @Override
+    public float[] embed(String text) {
+        if (!enabled) return delegate.embed(text);
+        if (!running) throw new IllegalStateException("Embedding service is shutting down");
+
+        CompletableFuture<float[]> result = new CompletableFuture<>();
+        Pending pending = new Pending(text, result);
+        queue.add(pending);
+
+        // Shutdown may have drained the queue between the check above and the add
+        if (!running && queue.remove(pending)) {
+            throw new IllegalStateException("Embedding service is shutting down");
+        }
+
+        try {
+            return result.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            throw new RuntimeException("Failed to embed text", e.getCause());
+        } catch (TimeoutException e) {
+            queue.remove(pending);
+            throw new RuntimeException("Timed out after " + waitTimeoutMillis + " ms waiting for an embedding");
+        } catch (InterruptedException e) {
+            queue.remove(pending);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for an embedding", e);
+        }
+    }
+
+    @Override
+    public List<float[]> embedBatch(List<String> texts) {
+        // Already batched by the caller
+        return delegate.embedBatch(texts);
+    }
+
+    private void dispatch() {
+        while (running) {
+            List<Pending> batch = new ArrayList<>(maxBatchSize);
+            try {
+                // Wait for the first text, then give others a short window to join it
+                batch.add(queue.take());
+
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    if (batch.size() >= maxBatchSize) break;
+
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+
+                // Texts keep queueing up while every batch slot is busy, so batches grow under load
+                inFlight.acquire();
+                batchExecutor.execute(() -> {
+                    try {
+                        send(batch);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } catch (InterruptedException e) {
+                batch.forEach(pending -> pending.result().completeExceptionally(
+                        new IllegalStateException("Embedding service is shutting down")));
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void send(List<Pending> batch) {
+        try {
+            List<float[]> embeddings = delegate.embedBatch(batch.stream().map(Pending::text).toList());
+            if (embeddings.size() != batch.size()) {
+                throw new IllegalStateException("Embedder returned " + embeddings.size() + " vectors for " + batch.size() + " texts");
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(embeddings.get(i));
+            }
+            log.debug("Embedded batch of {} texts", batch.size());
+        } catch (Exception e) {
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+        batchExecutor.shutdown();
+
+        // Fail whatever never made it into a batch so callers do not hang; texts queued after
+        // this are removed again by embed() itself, which sees running is false
+        List<Pending> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(pending -> pending.result().completeExceptionally(
+                new IllegalStateException("Embedding service is shutting down")));
+    }
+}
@@ -0,0 +1,179 @@
+package com.devik.service.embedder;
+
+import com.google.common.hash.HashCode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of embeddings keyed by text hash.
+ * <p>
+ * The file starts with a magic number; each record is the 32-byte key, the dimension count, the
+ * vector as raw floats and a CRC32 of all three. Only the offsets are kept in memory, rebuilt by
+ * scanning the file on startup; the scan stops at the first record that is cut short or fails
+ * its CRC, and the file is truncated there. A file in another format is discarded, it is only a
+ * cache. Once the file reaches its size limit new vectors are not stored.
+ */
+@Slf4j
+final class EmbeddingDiskStore implements Closeable {
+
+    static final int KEY_BYTES = 32;
+
+    private static final int MAGIC = 0x454d4232; // "EMB2"
+    private static final int HEADER_BYTES = 4;
+    private static final int CRC_BYTES = 4;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long maxBytes;
+    private final Map<HashCode, Long> offsets = new ConcurrentHashMap<>();
+    private long size;
+
+    EmbeddingDiskStore(Path path, long maxBytes) throws IOException {
+        this.path = path;
+        this.maxBytes = maxBytes;
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.size = load();
+        channel.truncate(size);
+        log.info("Loaded {} cached embeddings from {}", offsets.size(), path);
+    }
+
+    private long load() throws IOException {
+        if (!hasHeader()) {
+            if (channel.size() > 0) log.info("Discarding embedding cache {} in an older format", path);
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            return HEADER_BYTES;
+        }
+
+        long position = HEADER_BYTES;
+        channel.position(position);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+        byte[] key = new byte[KEY_BYTES];
+        byte[] data = new byte[0];
+        try {
+            while (true) {
+                in.readFully(key);
+                int dimensions = in.readInt();
+                long recordBytes = KEY_BYTES + 4 + dimensions * 4L + CRC_BYTES;
+                if (dimensions <= 0 || position + recordBytes > channel.size()) break;
+
+                if (data.length != dimensions * 4) data = new byte[dimensions * 4];
+                in.readFully(data);
+                if (in.readInt() != checksum(key, dimensions, ByteBuffer.wrap(data))) break;
+
+                offsets.put(HashCode.fromBytes(key.clone()), position + KEY_BYTES);
+                position += recordBytes;
+            }
+        } catch (EOFException e) {
+            // End of file or a partial record
+        }
+        return position;
+    }
+
+    private boolean hasHeader() throws IOException {
+        if (channel.size() < HEADER_BYTES) return false;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(header, 0);
+        return header.flip().getInt() == MAGIC;
+    }
+
+    float[] get(HashCode key) {
+        Long offset = offsets.get(key);
+        if (offset == null) return null;
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            readFully(header, offset);
+            int dimensions = header.flip().getInt();
+
+            ByteBuffer data = ByteBuffer.allocate(dimensions * 4 + CRC_BYTES);
+            readFully(data, offset + 4);
+            data.flip();
+            int crc = data.getInt(dimensions * 4);
+            data.limit(dimensions * 4);
+            if (crc != checksum(key.asBytes(), dimensions, data.duplicate())) {
+                log.warn("Cached embedding in {} at {} fails its checksum", path, offset);
+                return null;
+            }
+
+            float[] vector = new float[dimensions];
+            data.asFloatBuffer().get(vector);
+            return vector;
+        } catch (IOException e) {
+            log.warn("Failed to read cached embedding from {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    synchronized void put(HashCode key, float[] vector) {
+        if (offsets.containsKey(key)) return;
+
+        long recordBytes = KEY_BYTES + 4 + vector.length * 4L + CRC_BYTES;
+        if (size + recordBytes > maxBytes) return;
+
+        ByteBuffer record = ByteBuffer.allocate((int) recordBytes);
+        record.put(key.asBytes()).putInt(vector.length);
+        record.asFloatBuffer().put(vector);
+        ByteBuffer floats = record.duplicate().position(KEY_BYTES + 4).limit(KEY_BYTES + 4 + vector.length * 4);
+        record.putInt(KEY_BYTES + 4 + vector.length * 4, checksum(key.asBytes(), vector.length, floats));
+        record.position(0);
+
+        try {
+            long position = size;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            offsets.put(key, size + KEY_BYTES);
+            size = position;
+        } catch (IOException e) {
+            log.warn("Failed to store embedding in {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static int checksum(byte[] key, int dimensions, ByteBuffer floats) {
+        CRC32 crc = new CRC32();
+        crc.update(key);
+        crc.update(ByteBuffer.allocate(4).putInt(dimensions).flip());
+        crc.update(floats);
+        return (int) crc.getValue();
+    }
+
+    int entries() {
+        return offsets.size();
+    }
+
+    long sizeBytes() {
+        return size;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new EOFException("Truncated embedding record");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+}
@@ -3,5 +3,10 @@ package com.devik.service.embedder;
 import java.util.List;
 
 public interface EmbeddingService {
-    List<Float> embed(String text);
+    float[] embed(String text);
+
+    /**
+     * Embed several texts in one call; results are in input order
+     */
+    List<float[]> embedBatch(List<String> texts);
 }
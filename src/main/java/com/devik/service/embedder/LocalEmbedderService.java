@@ -1,12 +1,19 @@
 package com.devik.service.embedder;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -18,17 +25,51 @@ public class LocalEmbedderService implements EmbeddingService {
     ObjectMapper objectMapper = new ObjectMapper();
     private final String embedderUrl = System.getenv().getOrDefault("EMBEDDER_URL", "http://localhost:8081");
 
-    public LocalEmbedderService() {
-        this.restTemplate = new RestTemplate();
+    // Largest batch the embedder accepts in one request
+    @Value("${crawler.embedder.max-batch-size:32}")
+    private int maxBatchSize;
+
+    // Size of the last vector read, used to presize the next one
+    private volatile int dimensions = 384;
+
+    public LocalEmbedderService(
+            @Value("${crawler.embedder.connect-timeout-ms:2000}") int connectTimeoutMillis,
+            @Value("${crawler.embedder.read-timeout-ms:30000}") int readTimeoutMillis
+    ) {
+        // Without timeouts a hung embedder would hold crawl and batch threads forever
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeoutMillis);
+        requestFactory.setReadTimeout(readTimeoutMillis);
+        this.restTemplate = new RestTemplate(requestFactory);
     }
 
-    public List<Float> embed(String text) {
+    public float[] embed(String text) {
+        return post(text).get(0);
+    }
+
+    @Override
+    public List<float[]> embedBatch(List<String> texts) {
+        if (texts.isEmpty()) return List.of();
+        if (texts.size() <= maxBatchSize) return post(texts);
+
+        // Split batches larger than the embedder allows
+        List<float[]> embeddings = new ArrayList<>(texts.size());
+        for (int from = 0; from < texts.size(); from += maxBatchSize) {
+            embeddings.addAll(post(texts.subList(from, Math.min(texts.size(), from + maxBatchSize))));
+        }
+        return embeddings;
+    }
+
+    /**
+     * Call /embed with a single text or a list of texts; it returns one vector per text
+     */
+    private List<float[]> post(Object inputs) {
         String url = embedderUrl + "/embed";
 
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
 
-        Map<String, Object> payload = Map.of("inputs", text);
+        Map<String, Object> payload = Map.of("inputs", inputs);
 
         String jsonPayload = null;
         try {
@@ -38,19 +79,48 @@ public class LocalEmbedderService implements EmbeddingService {
         }
         HttpEntity<String> request = new HttpEntity<>(jsonPayload, headers);
 
-        // Use exchange to handle the response properly
-        ResponseEntity<List<List<Float>>> response = restTemplate.exchange(
+        // Read the response body straight into float arrays
+        return restTemplate.execute(
                 url,
                 HttpMethod.POST,
-                request,
-                new ParameterizedTypeReference<List<List<Float>>>() {
-                }
+                restTemplate.httpEntityCallback(request),
+                this::readEmbeddings
         );
+    }
 
-        if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-            return response.getBody().get(0);
-        } else {
+    private List<float[]> readEmbeddings(ClientHttpResponse response) throws IOException {
+        if (!response.getStatusCode().is2xxSuccessful()) {
             throw new RuntimeException("Failed to embed text: " + response.getStatusCode());
         }
+        try (JsonParser parser = objectMapper.getFactory().createParser(response.getBody())) {
+            return parseEmbeddings(parser);
+        }
+    }
+
+    /**
+     * Parse a JSON array of number arrays without boxing the numbers
+     */
+    List<float[]> parseEmbeddings(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Expected an array of embeddings");
+        }
+
+        List<float[]> embeddings = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_ARRAY) {
+            float[] vector = new float[dimensions];
+            int size = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_NUMBER_INT) {
+                    throw new IOException("Unexpected " + token + " in embedding");
+                }
+                if (size == vector.length) vector = Arrays.copyOf(vector, Math.max(16, size * 2));
+                vector[size++] = parser.getFloatValue();
+            }
+            if (size != vector.length) vector = Arrays.copyOf(vector, size);
+            dimensions = size;
+            embeddings.add(vector);
+        }
+        return embeddings;
     }
-}
\ No newline at end of file
+}
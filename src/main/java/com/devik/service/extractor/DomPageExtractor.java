@@ -0,0 +1,32 @@
+package com.devik.service.extractor;
+
+import com.devik.service.fetcher.FetchedPage;
+import org.jsoup.nodes.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the full Jsoup DOM and reads title, text and links from it
+ */
+@Component
+public class DomPageExtractor implements PageExtractor {
+
+    private final int maxTextLength;
+
+    public DomPageExtractor(@Value("${crawler.extract.max-text-length:200000}") int maxTextLength) {
+        this.maxTextLength = maxTextLength;
+    }
+
+    @Override
+    public ExtractedPage extract(FetchedPage page) throws IOException {
+        Document doc = page.parse();
+        List<String> links = doc.select("a[href]").stream()
+                .map(element -> element.attr("abs:href"))
+                .collect(Collectors.toList());
+        return new ExtractedPage(doc.title(), ExtractedPage.truncate(doc.body().text(), maxTextLength), links);
+    }
+}
@@ -0,0 +1,20 @@
+package com.devik.service.extractor;
+
+import java.util.List;
+
+/**
+ * What the crawler keeps from a page
+ *
+ * @param title   normalized document title, empty if there is none
+ * @param content visible body text, capped at the configured length
+ * @param links   absolute hrefs of all {@code a[href]} elements in document order, unfiltered
+ */
+public record ExtractedPage(String title, String content, List<String> links) {
+
+    /**
+     * Cap text at maxLength characters; 0 or less means no cap
+     */
+    static String truncate(String text, int maxLength) {
+        return maxLength > 0 && text.length() > maxLength ? text.substring(0, maxLength) : text;
+    }
+}
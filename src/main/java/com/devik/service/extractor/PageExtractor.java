@@ -0,0 +1,12 @@
+package com.devik.service.extractor;
+
+import com.devik.service.fetcher.FetchedPage;
+
+import java.io.IOException;
+
+public interface PageExtractor {
+    /**
+     * Extract the title, visible body text and absolute hrefs of a fetched HTML page
+     */
+    ExtractedPage extract(FetchedPage page) throws IOException;
+}
@@ -0,0 +1,712 @@
+package com.devik.service.extractor;
+
+import org.jsoup.internal.StringUtil;
+import org.jsoup.parser.ParseSettings;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.Tag;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Tokenizes one HTML page and collects title, body text and hrefs as it goes.
+ * <p>
+ * Only the state that changes those three results is kept: whether we are still in the head,
+ * the open body elements (for whitespace-preserving ancestors and to know when a block element
+ * is followed by a sibling) and the text itself. Body text follows {@code Element.text()}:
+ * whitespace is collapsed except under {@code pre}-like elements, and block elements and
+ * {@code br} are separated by a space. Not thread-safe; use one instance per page.
+ */
+final class StreamingHtmlScanner {
+
+    private enum Mode { HEAD, HEAD_NOSCRIPT, HEAD_TEMPLATE, BODY }
+
+    // Jsoup stops looking for an open element this deep in the stack
+    private static final int MAX_SCOPE_SEARCH_DEPTH = 100;
+    // Element.text() looks this many ancestors up for a whitespace-preserving element
+    private static final int PRESERVE_WHITESPACE_DEPTH = 6;
+
+    // Frequent tag names grouped by length
+    private static final String[][] COMMON_TAGS = groupByLength(
+            "a", "abbr", "article", "aside", "b", "base", "blockquote", "body", "br", "button", "caption",
+            "circle", "cite", "code", "dd", "del", "details", "div", "dl", "dt", "em", "figcaption", "figure",
+            "footer", "form", "g", "h1", "h2", "h3", "h4", "h5", "h6", "head", "header", "hr", "html", "i",
+            "iframe", "img", "input", "ins", "kbd", "label", "li", "link", "main", "meta", "nav", "noscript",
+            "ol", "option", "p", "path", "picture", "pre", "q", "s", "script", "section", "select", "small",
+            "source", "span", "strong", "style", "sub", "summary", "sup", "svg", "table", "tbody", "td",
+            "template", "textarea", "th", "thead", "time", "title", "tr", "u", "ul", "use", "var", "wbr");
+
+    // As used by StringUtil.resolve
+    private static final Pattern CONTROL_CHARS = Pattern.compile("[\\x00-\\x1f]*");
+    private static final Pattern VALID_URI_SCHEME = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+-.]*:");
+
+    // Table parts that are dropped when they appear outside a table
+    private static final Set<String> TABLE_PARTS = Set.of(
+            "caption", "col", "colgroup", "frame", "tbody", "td", "tfoot", "th", "thead", "tr");
+    private static final Set<String> HEADINGS = Set.of("h1", "h2", "h3", "h4", "h5", "h6");
+    // Elements whose content is not tokenized as markup
+    private static final Set<String> RAW_TEXT_ELEMENTS = Set.of(
+            "iframe", "noembed", "noframes", "script", "style", "textarea", "title", "xmp");
+    // An end tag never closes an element past one of these
+    private static final Set<String> SCOPE_BOUNDARIES = Set.of(
+            "applet", "caption", "html", "marquee", "object", "table", "td", "th", "template");
+
+    private final String html;
+    private final int length;
+    private final int maxTextLength;
+    private int pos;
+
+    private Mode mode = Mode.HEAD;
+    private boolean headClosed;
+    private int headTemplateDepth;
+
+    private String baseUri;
+    private boolean baseUriFromDocument;
+    // Raw text of the first <title> in the head
+    private String title;
+    private final List<String> hrefs = new ArrayList<>();
+
+    private final StringBuilder text = new StringBuilder();
+    // Bounds of the text as String.trim() would return it, -1 while there is none
+    private int textStart = -1;
+    private int textEnd = -1;
+    private boolean textFull;
+
+    // Open elements inside the body, innermost last
+    private final ArrayList<Tag> openElements = new ArrayList<>();
+    // A block element was just closed; a following text or inline sibling gets a space first
+    private boolean blockClosed;
+
+    private static String[][] groupByLength(String... names) {
+        int maxLength = Arrays.stream(names).mapToInt(String::length).max().orElse(0);
+        String[][] grouped = new String[maxLength + 1][];
+        for (int length = 0; length <= maxLength; length++) {
+            int nameLength = length;
+            grouped[length] = Arrays.stream(names).filter(name -> name.length() == nameLength).toArray(String[]::new);
+        }
+        return grouped;
+    }
+
+    StreamingHtmlScanner(String html, String baseUri, int maxTextLength) {
+        this.html = html;
+        this.length = html.length();
+        this.baseUri = baseUri;
+        this.maxTextLength = maxTextLength;
+    }
+
+    ExtractedPage scan() {
+        int textFrom = 0;
+        while (pos < length) {
+            int lt = html.indexOf('<', pos);
+            if (lt < 0 || lt + 1 >= length) break;
+
+            char next = html.charAt(lt + 1);
+            if (isAsciiLetter(next)) {
+                onText(textFrom, lt);
+                pos = lt + 1;
+                startTag();
+            } else if (next == '/') {
+                if (lt + 2 >= length) break;
+                onText(textFrom, lt);
+                char c = html.charAt(lt + 2);
+                if (isAsciiLetter(c)) {
+                    pos = lt + 2;
+                    endTag();
+                } else if (c == '>') {
+                    pos = lt + 3;
+                } else {
+                    pos = lt + 2;
+                    skipPast('>');
+                    onComment();
+                }
+            } else if (next == '!') {
+                onText(textFrom, lt);
+                pos = lt + 2;
+                markupDeclaration();
+            } else if (next == '?') {
+                onText(textFrom, lt);
+                pos = lt + 1;
+                skipPast('>');
+                onComment();
+            } else {
+                // A lone '<' is text
+                pos = lt + 1;
+                continue;
+            }
+            textFrom = pos;
+        }
+        onText(textFrom, length);
+        return result();
+    }
+
+    private ExtractedPage result() {
+        String content = textStart < 0 ? "" : ExtractedPage.truncate(text.substring(textStart, textEnd), maxTextLength);
+
+        List<String> links = new ArrayList<>(hrefs.size());
+        URL base = parseBaseUri();
+        for (String href : hrefs) {
+            links.add(base == null ? StringUtil.resolve(baseUri, href) : resolve(base, href));
+        }
+
+        String normalizedTitle = title == null ? "" : StringUtil.normaliseWhitespace(title.trim()).trim();
+        return new ExtractedPage(normalizedTitle, content, links);
+    }
+
+    // ---- Tokens ----
+
+    private void startTag() {
+        int nameStart = pos;
+        while (pos < length && !isTagNameEnd(html.charAt(pos))) pos++;
+        String name = tagName(nameStart, pos);
+
+        // Only a and base need an attribute value
+        boolean wantsHref = name.equals("a") || name.equals("base");
+        String href = null;
+        boolean selfClosing = false;
+
+        // In "<a<b>" the first tag ends where the next one starts
+        if (pos >= length || html.charAt(pos) != '<') {
+            while (true) {
+                skipWhitespace();
+                if (pos >= length) return; // EOF inside a tag drops it
+
+                char c = html.charAt(pos);
+                if (c == '>') {
+                    pos++;
+                    break;
+                }
+                if (c == '/') {
+                    pos++;
+                    if (pos < length && html.charAt(pos) == '>') {
+                        pos++;
+                        selfClosing = true;
+                        break;
+                    }
+                    continue;
+                }
+
+                int attributeStart = pos++;
+                while (pos < length && !isAttributeNameEnd(html.charAt(pos))) pos++;
+                int attributeEnd = pos;
+                skipWhitespace();
+
+                int valueStart = pos;
+                int valueEnd = pos;
+                if (pos < length && html.charAt(pos) == '=') {
+                    pos++;
+                    skipWhitespace();
+                    if (pos >= length) return;
+
+                    char quote = html.charAt(pos);
+                    if (quote == '"' || quote == '\'') {
+                        int close = html.indexOf(quote, pos + 1);
+                        if (close < 0) {
+                            pos = length;
+                            return;
+                        }
+                        valueStart = pos + 1;
+                        valueEnd = close;
+                        pos = close + 1;
+                    } else {
+                        valueStart = pos;
+                        while (pos < length && !isWhitespace(html.charAt(pos)) && html.charAt(pos) != '>') pos++;
+                        valueEnd = pos;
+                    }
+                }
+
+                // The first of duplicate attributes wins
+                if (wantsHref && href == null && attributeEnd - attributeStart == 4
+                        && html.regionMatches(true, attributeStart, "href", 0, 4)) {
+                    href = unescape(html.substring(valueStart, valueEnd), true);
+                }
+            }
+        }
+
+        if (mode == Mode.HEAD_NOSCRIPT) {
+            headNoscriptStartTag(name);
+            return;
+        }
+
+        if (href != null) {
+            if (name.equals("a")) {
+                hrefs.add(href);
+            } else {
+                setBaseUri(href);
+            }
+        }
+
+        if (mode == Mode.HEAD_TEMPLATE) {
+            headTemplateStartTag(name);
+            return;
+        }
+
+        if (mode == Mode.HEAD && headStartTag(name)) return;
+        mode = Mode.BODY;
+        bodyStartTag(name, selfClosing);
+    }
+
+    private void endTag() {
+        int nameStart = pos;
+        while (pos < length && !isTagNameEnd(html.charAt(pos))) pos++;
+        String name = tagName(nameStart, pos);
+
+        // Attributes on end tags are ignored, but quoted values may contain '>'
+        while (pos < length && html.charAt(pos) != '>') {
+            char c = html.charAt(pos++);
+            if (c == '"' || c == '\'') {
+                int close = html.indexOf(c, pos);
+                pos = close < 0 ? length : close + 1;
+            }
+        }
+        if (pos >= length) return;
+        pos++;
+
+        switch (mode) {
+            case HEAD -> {
+                if (name.equals("head")) headClosed = true;
+                if (!name.equals("body") && !name.equals("html") && !name.equals("br")) return;
+                mode = Mode.BODY;
+            }
+            case HEAD_NOSCRIPT -> {
+                if (name.equals("noscript")) mode = Mode.HEAD;
+                return;
+            }
+            case HEAD_TEMPLATE -> {
+                if (name.equals("template") && --headTemplateDepth == 0) mode = Mode.HEAD;
+                return;
+            }
+            case BODY -> {
+            }
+        }
+        bodyEndTag(name);
+    }
+
+    private void markupDeclaration() {
+        if (html.startsWith("--", pos)) {
+            pos += 2;
+            // "<!-->" and "<!--->" are empty comments
+            if (html.startsWith(">", pos)) {
+                pos++;
+            } else if (html.startsWith("->", pos)) {
+                pos += 2;
+            } else {
+                int end = html.indexOf("-->", pos);
+                pos = end < 0 ? length : end + 3;
+            }
+            onComment();
+        } else if (html.startsWith("[CDATA[", pos)) {
+            int start = pos + 7;
+            int end = html.indexOf("]]>", start);
+            pos = end < 0 ? length : end + 3;
+            if (mode == Mode.HEAD_NOSCRIPT || mode == Mode.HEAD_TEMPLATE) return;
+            mode = Mode.BODY;
+            appendBodyText(start, end < 0 ? length : end, false, true);
+        } else {
+            // Doctype or bogus comment
+            skipPast('>');
+            onComment();
+        }
+    }
+
+    private void onText(int from, int to) {
+        if (from >= to) return;
+        if (mode == Mode.HEAD_NOSCRIPT || mode == Mode.HEAD_TEMPLATE) return;
+        if (mode == Mode.HEAD) {
+            // Whitespace before the body goes to the head
+            if (isWhitespace(from, to)) return;
+            mode = Mode.BODY;
+        }
+        if (textFull) {
+            blockClosed = false;
+            return;
+        }
+        appendBodyText(from, to, true, false);
+    }
+
+    private void onComment() {
+        if (mode == Mode.BODY) {
+            // A comment is a sibling too, so a closed block before it gets no space
+            blockClosed = false;
+        }
+    }
+
+    // ---- Tree building ----
+
+    /**
+     * @return whether the tag belongs to the head
+     */
+    private boolean headStartTag(String name) {
+        switch (name) {
+            case "html", "head", "base", "basefont", "bgsound", "command", "link", "meta" -> {
+                return true;
+            }
+            case "template" -> {
+                mode = Mode.HEAD_TEMPLATE;
+                headTemplateDepth = 1;
+                return true;
+            }
+            case "title" -> {
+                String rawTitle = rcdata(name);
+                if (title == null) title = rawTitle;
+                return true;
+            }
+            case "script", "style", "noframes" -> {
+                skipRawText(name);
+                return true;
+            }
+            case "noscript" -> {
+                if (headClosed) return false;
+                mode = Mode.HEAD_NOSCRIPT;
+                return true;
+            }
+            case "body" -> {
+                mode = Mode.BODY;
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Jsoup keeps everything inside a noscript in the head there, turning disallowed tags into
+     * text, so nothing in it reaches the body or the links
+     */
+    private void headNoscriptStartTag(String name) {
+        if (name.equals("style") || name.equals("noframes")) {
+            skipRawText(name);
+        }
+    }
+
+    /**
+     * A template in the head keeps its elements there: their links count, their text does not
+     */
+    private void headTemplateStartTag(String name) {
+        if (name.equals("template")) {
+            headTemplateDepth++;
+        } else if (RAW_TEXT_ELEMENTS.contains(name)) {
+            skipRawText(name);
+        }
+    }
+
+    private void bodyStartTag(String name, boolean selfClosing) {
+        switch (name) {
+            case "html", "body", "head", "frameset" -> {
+                return;
+            }
+            case "image" -> name = "img";
+            default -> {
+            }
+        }
+        if (TABLE_PARTS.contains(name) && !hasOpen("table")) return;
+
+        Tag tag = Tag.valueOf(name, ParseSettings.htmlDefault);
+
+        if (blockClosed) {
+            // The closed block's next sibling is this element
+            if (!tag.formatAsBlock()) appendSpace();
+            blockClosed = false;
+        }
+        if ((tag.isBlock() || name.equals("br")) && text.length() > 0) {
+            appendSpace();
+        }
+
+        if (tag.isEmpty() || selfClosing) {
+            blockClosed = tag.isBlock();
+            return;
+        }
+        // A heading directly inside another heading closes it
+        if (HEADINGS.contains(name) && !openElements.isEmpty()
+                && HEADINGS.contains(openElements.get(openElements.size() - 1).normalName())) {
+            openElements.remove(openElements.size() - 1);
+        }
+        openElements.add(tag);
+
+        switch (name) {
+            case "script", "style" -> skipRawText(name);
+            case "xmp", "iframe", "noembed", "noframes", "title", "textarea" -> {
+                // Title and textarea content has character references, the others are raw
+                int start = pos;
+                pos = findEndTag(name);
+                appendBodyText(start, pos, name.equals("title") || name.equals("textarea"), false);
+            }
+            case "plaintext" -> {
+                appendBodyText(pos, length, false, false);
+                pos = length;
+            }
+            case "pre", "listing" -> {
+                // A newline right after <pre> is not content
+                if (pos < length && html.charAt(pos) == '\n') pos++;
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void bodyEndTag(String name) {
+        switch (name) {
+            case "html", "body" -> {
+                return;
+            }
+            case "br" -> {
+                // </br> is treated as <br>
+                bodyStartTag("br", true);
+                return;
+            }
+            default -> {
+            }
+        }
+
+        boolean inline = !Tag.valueOf(name, ParseSettings.htmlDefault).isBlock();
+        boolean heading = HEADINGS.contains(name);
+        int lowest = Math.max(0, openElements.size() - MAX_SCOPE_SEARCH_DEPTH);
+        for (int i = openElements.size() - 1; i >= lowest; i--) {
+            Tag open = openElements.get(i);
+            // Any heading end tag closes the innermost open heading
+            if (open.normalName().equals(name) || (heading && HEADINGS.contains(open.normalName()))) {
+                openElements.subList(i, openElements.size()).clear();
+                blockClosed = open.isBlock();
+                return;
+            }
+            // An inline end tag cannot close past a block, and nothing closes past a table or cell
+            if (SCOPE_BOUNDARIES.contains(open.normalName()) || (inline && open.isBlock())) break;
+        }
+
+        if (name.equals("p")) {
+            // A stray </p> becomes an empty paragraph
+            bodyStartTag("p", true);
+        }
+    }
+
+    private void setBaseUri(String href) {
+        // Only the first <base href> counts
+        if (baseUriFromDocument) return;
+        String resolved = StringUtil.resolve(baseUri, href);
+        if (!resolved.isEmpty()) {
+            baseUri = resolved;
+            baseUriFromDocument = true;
+        }
+    }
+
+    private URL parseBaseUri() {
+        try {
+            return new URL(stripControlChars(baseUri));
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Same result as {@link StringUtil#resolve(String, String)}, which parses the base URL and
+     * rebuilds the resolved one for every link; resolving dominated extraction cost on link-heavy pages
+     */
+    static String resolve(URL base, String href) {
+        String relative = stripControlChars(href);
+        try {
+            // Java resolves "?q" against the directory, browsers against the page
+            URL url = new URL(base, relative.startsWith("?") ? base.getPath() + relative : relative);
+
+            // Jsoup's rebuild only changes URLs with user info, an empty port or leading dot segments
+            String authority = url.getAuthority();
+            if (url.getUserInfo() == null && (authority == null || !authority.endsWith(":"))
+                    && !url.getFile().startsWith("/.")) {
+                return url.toExternalForm();
+            }
+            return StringUtil.resolve(base, relative).toExternalForm();
+        } catch (MalformedURLException e) {
+            return VALID_URI_SCHEME.matcher(relative).find() ? relative : "";
+        }
+    }
+
+    private static String stripControlChars(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < 0x20) return CONTROL_CHARS.matcher(value).replaceAll("");
+        }
+        return value;
+    }
+
+    private boolean hasOpen(String name) {
+        for (int i = openElements.size() - 1; i >= 0; i--) {
+            if (openElements.get(i).normalName().equals(name)) return true;
+        }
+        return false;
+    }
+
+    // ---- Text ----
+
+    /**
+     * Append the page text between from and to, as one text node
+     *
+     * @param decode whether character references are decoded
+     * @param cdata  whether this is a CDATA section, which is never normalized
+     */
+    private void appendBodyText(int from, int to, boolean decode, boolean cdata) {
+        if (blockClosed) {
+            appendSpace();
+            blockClosed = false;
+        }
+        if (textFull) return;
+
+        // Work on the page itself unless there is something to decode
+        CharSequence content = html;
+        if (decode && contains(from, to, '&')) {
+            content = Parser.unescapeEntities(html.substring(from, to), false);
+            from = 0;
+            to = content.length();
+        }
+
+        int appendedFrom = text.length();
+        if (cdata || preserveWhitespace()) {
+            text.append(content, from, to);
+        } else {
+            appendNormalisedWhitespace(content, from, to);
+        }
+
+        for (int i = appendedFrom; i < text.length(); i++) {
+            if (text.charAt(i) > ' ') {
+                if (textStart < 0) textStart = i;
+                textEnd = i + 1;
+            }
+        }
+        // Stop collecting once there is more than the cap, counted like the trimmed result
+        if (maxTextLength > 0 && textStart >= 0 && textEnd - textStart > maxTextLength) {
+            textFull = true;
+        }
+    }
+
+    /**
+     * StringUtil.appendNormalisedWhitespace over a range, so plain text is never copied out of the page
+     */
+    private void appendNormalisedWhitespace(CharSequence content, int from, int to) {
+        boolean stripLeading = lastCharIsSpace();
+        boolean lastWasWhite = false;
+        boolean reachedNonWhite = false;
+        for (int i = from; i < to; ) {
+            int c = Character.codePointAt(content, i);
+            i += Character.charCount(c);
+            if (StringUtil.isActuallyWhitespace(c)) {
+                if ((stripLeading && !reachedNonWhite) || lastWasWhite) continue;
+                text.append(' ');
+                lastWasWhite = true;
+            } else if (!StringUtil.isInvisibleChar(c)) {
+                text.appendCodePoint(c);
+                lastWasWhite = false;
+                reachedNonWhite = true;
+            }
+        }
+    }
+
+    private void appendSpace() {
+        if (!textFull && !lastCharIsSpace()) text.append(' ');
+    }
+
+    private boolean lastCharIsSpace() {
+        return text.length() > 0 && text.charAt(text.length() - 1) == ' ';
+    }
+
+    private boolean preserveWhitespace() {
+        int lowest = Math.max(0, openElements.size() - PRESERVE_WHITESPACE_DEPTH);
+        for (int i = openElements.size() - 1; i >= lowest; i--) {
+            if (openElements.get(i).preserveWhitespace()) return true;
+        }
+        return false;
+    }
+
+    // ---- Raw text elements ----
+
+    /**
+     * Skip the content of an element whose text is not markup, such as script or style; pos stops at its end tag
+     */
+    private void skipRawText(String name) {
+        pos = findEndTag(name);
+    }
+
+    /**
+     * Content of a title or textarea, with character references decoded
+     */
+    private String rcdata(String name) {
+        int start = pos;
+        pos = findEndTag(name);
+        return unescape(html.substring(start, pos), false);
+    }
+
+    private int findEndTag(String name) {
+        int from = pos;
+        while (true) {
+            int candidate = html.indexOf("</", from);
+            if (candidate < 0) return length;
+
+            int after = candidate + 2 + name.length();
+            if (after < length && html.regionMatches(true, candidate + 2, name, 0, name.length())) {
+                char c = html.charAt(after);
+                if (c == '>' || c == '/' || isWhitespace(c)) return candidate;
+            }
+            from = candidate + 2;
+        }
+    }
+
+    // ---- Characters ----
+
+    private static String unescape(String value, boolean inAttribute) {
+        return value.indexOf('&') < 0 ? value : Parser.unescapeEntities(value, inAttribute);
+    }
+
+    /**
+     * Lower-case tag name, without allocating for common tags
+     */
+    private String tagName(int start, int end) {
+        int nameLength = end - start;
+        if (nameLength < COMMON_TAGS.length) {
+            for (String candidate : COMMON_TAGS[nameLength]) {
+                if (html.regionMatches(true, start, candidate, 0, nameLength)) return candidate;
+            }
+        }
+        return html.substring(start, end).toLowerCase(Locale.ENGLISH);
+    }
+
+    private boolean contains(int from, int to, char c) {
+        for (int i = from; i < to; i++) {
+            if (html.charAt(i) == c) return true;
+        }
+        return false;
+    }
+
+    private void skipPast(char c) {
+        int end = html.indexOf(c, pos);
+        pos = end < 0 ? length : end + 1;
+    }
+
+    private void skipWhitespace() {
+        while (pos < length && isWhitespace(html.charAt(pos))) pos++;
+    }
+
+    private boolean isWhitespace(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!isWhitespace(html.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isTagNameEnd(char c) {
+        return isWhitespace(c) || c == '/' || c == '>' || c == '<';
+    }
+
+    private static boolean isAttributeNameEnd(char c) {
+        return isWhitespace(c) || c == '/' || c == '>' || c == '=';
+    }
+}
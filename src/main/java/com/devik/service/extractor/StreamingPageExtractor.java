@@ -0,0 +1,79 @@
+package com.devik.service.extractor;
+
+import com.devik.service.fetcher.FetchedPage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts title, text and links in a single pass over the decoded body without building a DOM.
+ * <p>
+ * The scanner follows the parts of Jsoup's tree building that affect {@code Document.title()},
+ * {@code body().text()} and {@code a[href]}, so it yields the same {@link ExtractedPage} as
+ * {@link DomPageExtractor} for regular pages; mis-nested tables and similar broken markup may
+ * differ in whitespace.
+ */
+@Component
+public class StreamingPageExtractor implements PageExtractor {
+
+    // Jsoup also looks for the charset in the first bytes when the header has none
+    private static final int CHARSET_SNIFF_BYTES = 5 * 1024;
+    private static final Pattern META_CHARSET = Pattern.compile(
+            "<meta\\s[^>]*charset\\s*=\\s*[\"']?\\s*([A-Za-z0-9._:-]+)", Pattern.CASE_INSENSITIVE);
+
+    private final int maxTextLength;
+
+    public StreamingPageExtractor(@Value("${crawler.extract.max-text-length:200000}") int maxTextLength) {
+        this.maxTextLength = maxTextLength;
+    }
+
+    @Override
+    public ExtractedPage extract(FetchedPage page) {
+        return new StreamingHtmlScanner(decode(page), page.getUrl(), maxTextLength).scan();
+    }
+
+    static String decode(FetchedPage page) {
+        byte[] body = page.getBody();
+
+        // A byte order mark wins over any declared charset
+        if (startsWith(body, 0xEF, 0xBB, 0xBF)) {
+            return new String(body, 3, body.length - 3, StandardCharsets.UTF_8);
+        }
+        if (startsWith(body, 0xFE, 0xFF)) {
+            return new String(body, 2, body.length - 2, StandardCharsets.UTF_16BE);
+        }
+        if (startsWith(body, 0xFF, 0xFE)) {
+            return new String(body, 2, body.length - 2, StandardCharsets.UTF_16LE);
+        }
+
+        Charset charset = page.getCharset() != null ? Charset.forName(page.getCharset()) : sniffCharset(body);
+        return new String(body, charset);
+    }
+
+    private static Charset sniffCharset(byte[] body) {
+        String head = new String(body, 0, Math.min(body.length, CHARSET_SNIFF_BYTES), StandardCharsets.ISO_8859_1);
+        Matcher matcher = META_CHARSET.matcher(head);
+        if (matcher.find()) {
+            try {
+                String name = matcher.group(1);
+                if (Charset.isSupported(name)) return Charset.forName(name);
+            } catch (IllegalCharsetNameException e) {
+                // Fall through to the default
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static boolean startsWith(byte[] body, int... prefix) {
+        if (body.length < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if ((body[i] & 0xFF) != prefix[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,63 @@
+package com.devik.service.fetcher;
+
+import lombok.Builder;
+import lombok.Data;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.util.Map;
+
+@Data
+@Builder
+public class FetchedPage {
+    // Final URL after redirects
+    private String url;
+    private int statusCode;
+    private Map<String, String> headers;
+    private byte[] body;
+    // Charset from the Content-Type header, null to let Jsoup detect it
+    private String charset;
+
+    public String header(String name) {
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(name)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parse the body into a Jsoup document
+     */
+    public Document parse() throws IOException {
+        return Jsoup.parse(new ByteArrayInputStream(body), charset, url);
+    }
+
+    /**
+     * Extract the charset parameter from a Content-Type header value
+     */
+    static String charsetOf(String contentType) {
+        if (contentType == null) return null;
+        for (String part : contentType.split(";")) {
+            String param = part.trim();
+            if (param.regionMatches(true, 0, "charset=", 0, 8)) {
+                String charset = param.substring(8).replace("\"", "").replace("'", "").trim();
+                return isSupported(charset) ? charset : null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSupported(String charset) {
+        try {
+            return !charset.isEmpty() && Charset.isSupported(charset);
+        } catch (IllegalCharsetNameException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.devik.service.fetcher;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Fetches with a single shared {@link HttpClient}.
+ * <p>
+ * The client keeps keep-alive connections pooled per host and multiplexes requests over HTTP/2
+ * when the server supports it, so repeated fetches from the same host skip the TCP/TLS handshake.
+ * Responses are requested compressed and inflated here before being handed to Jsoup. At most
+ * max-body-bytes are read off the wire and the rest of a longer response is abandoned, so an
+ * endless body cannot fill the heap.
+ */
+@Slf4j
+@Component
+public class HttpClientPageFetcher implements PageFetcher {
+
+    // Headers the client manages itself or that are not allowed on HTTP/2
+    private static final Set<String> SKIPPED_HEADERS = Set.of(
+            "connection", "content-length", "expect", "host", "upgrade", "keep-alive",
+            "proxy-connection", "transfer-encoding", "te", "trailer", "accept-encoding"
+    );
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final int maxBodyBytes;
+
+    public HttpClientPageFetcher(
+            @Value("${crawler.connection.timeout:10000}") int connectionTimeout,
+            @Value("${crawler.fetch.max-body-bytes:2097152}") int maxBodyBytes
+    ) {
+        this.requestTimeout = Duration.ofMillis(connectionTimeout);
+        this.maxBodyBytes = maxBodyBytes;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(requestTimeout)
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<FetchedPage> fetch(String url, Map<String, String> headers) {
+        HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(requestTimeout)
+                    .header("Accept-Encoding", "gzip, deflate")
+                    .GET();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new IOException("Invalid URL: " + url, e));
+        }
+
+        headers.forEach((name, value) -> {
+            if (SKIPPED_HEADERS.contains(name.toLowerCase())) return;
+            try {
+                builder.setHeader(name, value);
+            } catch (IllegalArgumentException e) {
+                log.debug("Skipping invalid request header {} for {}", name, url);
+            }
+        });
+
+        return client.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofInputStream())
+                .thenApply(this::toPage);
+    }
+
+    private FetchedPage toPage(HttpResponse<InputStream> response) {
+        Map<String, String> headers = new HashMap<>();
+        response.headers().map().forEach((name, values) -> {
+            // HTTP/2 pseudo headers such as :status are not real headers
+            if (!name.startsWith(":")) {
+                headers.put(name, String.join(", ", values));
+            }
+        });
+
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+        byte[] body;
+        try {
+            // Closing the stream once the limit is reached discards the rest of the response
+            byte[] wire = readLimited(response.body(), false);
+            body = decode(wire, encoding, wire.length >= maxBodyBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode " + encoding + " body of " + response.uri(), e);
+        }
+
+        return FetchedPage.builder()
+                .url(response.uri().toString())
+                .statusCode(response.statusCode())
+                .headers(headers)
+                .body(body)
+                .charset(FetchedPage.charsetOf(response.headers().firstValue("Content-Type").orElse(null)))
+                .build();
+    }
+
+    /**
+     * Inflate a body; a truncated one yields what inflates before the cut
+     */
+    private byte[] decode(byte[] body, String encoding, boolean truncated) throws IOException {
+        String normalized = encoding.trim().toLowerCase();
+        if (normalized.isEmpty() || normalized.equals("identity")) {
+            return body;
+        }
+
+        if (List.of("gzip", "x-gzip").contains(normalized)) {
+            return readLimited(new GZIPInputStream(new ByteArrayInputStream(body)), truncated);
+        }
+        if (normalized.equals("deflate")) {
+            try {
+                return readLimited(new InflaterInputStream(new ByteArrayInputStream(body)), truncated);
+            } catch (IOException e) {
+                // Some servers send raw deflate without the zlib wrapper
+                return readLimited(new InflaterInputStream(new ByteArrayInputStream(body), new Inflater(true)), truncated);
+            }
+        }
+        throw new IOException("Unsupported content encoding: " + encoding);
+    }
+
+    /**
+     * Read at most max-body-bytes, which bounds the body on the wire and also guards against
+     * decompression bombs. When the input was cut short, running out of it early is not an error.
+     */
+    private byte[] readLimited(InputStream in, boolean truncated) throws IOException {
+        try (in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            try {
+                while (out.size() < maxBodyBytes && (read = in.read(buffer, 0, Math.min(buffer.length, maxBodyBytes - out.size()))) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } catch (EOFException e) {
+                if (!truncated) throw e;
+            }
+            return out.toByteArray();
+        }
+    }
+}
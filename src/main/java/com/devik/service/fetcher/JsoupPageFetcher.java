@@ -0,0 +1,42 @@
+package com.devik.service.fetcher;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fetches with a fresh Jsoup connection per request. No connection reuse; kept as a fallback engine.
+ */
+@Component
+public class JsoupPageFetcher implements PageFetcher {
+
+    @Value("${crawler.connection.timeout:10000}")
+    private int connectionTimeout;
+
+    @Override
+    public CompletableFuture<FetchedPage> fetch(String url, Map<String, String> headers) {
+        try {
+            Connection.Response response = Jsoup.connect(url)
+                    .headers(headers)
+                    .timeout(connectionTimeout)
+                    .followRedirects(true)
+                    .ignoreHttpErrors(true)
+                    .execute();
+
+            return CompletableFuture.completedFuture(FetchedPage.builder()
+                    .url(response.url().toString())
+                    .statusCode(response.statusCode())
+                    .headers(response.headers())
+                    .body(response.bodyAsBytes())
+                    .charset(response.charset())
+                    .build());
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
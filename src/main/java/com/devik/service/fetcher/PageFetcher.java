@@ -0,0 +1,12 @@
+package com.devik.service.fetcher;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public interface PageFetcher {
+    /**
+     * Fetch a page. The future fails with an {@link java.io.IOException} on network errors;
+     * HTTP error statuses complete normally.
+     */
+    CompletableFuture<FetchedPage> fetch(String url, Map<String, String> headers);
+}
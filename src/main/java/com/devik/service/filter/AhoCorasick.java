@@ -0,0 +1,101 @@
+package com.devik.service.filter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton for case-insensitive ASCII substring matching.
+ * <p>
+ * The goto and failure functions are folded into a full transition table, so matching is one
+ * array lookup per input character regardless of how many patterns there are.
+ */
+final class AhoCorasick {
+
+    private static final int ALPHABET = 128;
+
+    private final int[][] transitions;
+    private final boolean[] accepting;
+
+    AhoCorasick(List<String> patterns) {
+        List<int[]> table = new ArrayList<>();
+        List<Boolean> terminal = new ArrayList<>();
+        table.add(newRow());
+        terminal.add(false);
+
+        // Build the trie
+        for (String pattern : patterns) {
+            if (pattern.isEmpty()) continue;
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int symbol = symbol(pattern.charAt(i));
+                if (symbol < 0) {
+                    throw new IllegalArgumentException("Only ASCII path fragments are supported: " + pattern);
+                }
+                if (table.get(state)[symbol] <= 0) {
+                    table.add(newRow());
+                    terminal.add(false);
+                    table.get(state)[symbol] = table.size() - 1;
+                }
+                state = table.get(state)[symbol];
+            }
+            terminal.set(state, true);
+        }
+
+        int states = table.size();
+        this.transitions = table.toArray(new int[states][]);
+        this.accepting = new boolean[states];
+        for (int i = 0; i < states; i++) accepting[i] = terminal.get(i);
+
+        // Breadth-first pass computing failure links and completing the transition table
+        int[] failure = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < ALPHABET; symbol++) {
+            int next = transitions[0][symbol];
+            if (next > 0) {
+                failure[next] = 0;
+                queue.add(next);
+            } else {
+                transitions[0][symbol] = 0;
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            accepting[state] |= accepting[failure[state]];
+            for (int symbol = 0; symbol < ALPHABET; symbol++) {
+                int next = transitions[state][symbol];
+                if (next > 0) {
+                    failure[next] = transitions[failure[state]][symbol];
+                    queue.add(next);
+                } else {
+                    transitions[state][symbol] = transitions[failure[state]][symbol];
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether any pattern occurs in text starting at the given offset
+     */
+    boolean containsAny(CharSequence text, int from) {
+        int state = 0;
+        for (int i = from; i < text.length(); i++) {
+            int symbol = symbol(text.charAt(i));
+            state = symbol < 0 ? 0 : transitions[state][symbol];
+            if (accepting[state]) return true;
+        }
+        return false;
+    }
+
+    private static int symbol(char c) {
+        if (c >= ALPHABET) return -1;
+        return (c >= 'A' && c <= 'Z') ? c + ('a' - 'A') : c;
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[ALPHABET];
+        Arrays.fill(row, -1);
+        return row;
+    }
+}
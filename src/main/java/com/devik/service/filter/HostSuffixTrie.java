@@ -0,0 +1,44 @@
+package com.devik.service.filter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Trie over reversed host labels ("com" -> "facebook"), so a host is checked against every
+ * blocked domain with one walk from its last label.
+ */
+final class HostSuffixTrie {
+
+    private final Node root = new Node();
+
+    void add(String domain) {
+        Node node = root;
+        String[] labels = domain.toLowerCase().split("\\.");
+        for (int i = labels.length - 1; i >= 0; i--) {
+            if (labels[i].isEmpty()) continue;
+            node = node.children.computeIfAbsent(labels[i], label -> new Node());
+        }
+        node.terminal = true;
+    }
+
+    /**
+     * Whether the lowercase host equals a blocked domain or is one of its subdomains
+     */
+    boolean matches(String host) {
+        Node node = root;
+        int end = host.length();
+        while (end > 0) {
+            int start = host.lastIndexOf('.', end - 1) + 1;
+            node = node.children.get(host.substring(start, end));
+            if (node == null) return false;
+            if (node.terminal) return true;
+            end = start - 1;
+        }
+        return false;
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private boolean terminal;
+    }
+}
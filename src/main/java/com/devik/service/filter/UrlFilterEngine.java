@@ -0,0 +1,118 @@
+package com.devik.service.filter;
+
+import dk.brics.automaton.Automaton;
+import dk.brics.automaton.RegExp;
+import dk.brics.automaton.RunAutomaton;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Precompiled URL filter. Built once per rule set and shared between threads.
+ * <p>
+ * Each rule family gets a structure that answers in one pass over the URL: a reversed-host
+ * trie for domains, a hash lookup on the extension of the last path segment, an Aho-Corasick
+ * automaton for path fragments, and all patterns compiled into one minimal DFA that accepts any
+ * URL containing a match. The DFA is needed because java.util.regex backtracks through every
+ * alternative at every offset, which made a combined {@code find()} slower than the old loop.
+ */
+public final class UrlFilterEngine {
+
+    private final Set<String> extensions;
+    private final AhoCorasick blockedPaths;
+    private final HostSuffixTrie blockedDomains;
+    private final RunAutomaton blockedPatterns;
+
+    private UrlFilterEngine(UrlFilterRules rules) {
+        this.extensions = rules.getExtensions().stream()
+                .map(String::toLowerCase)
+                .map(ext -> ext.startsWith(".") ? ext : "." + ext)
+                .collect(Collectors.toCollection(HashSet::new));
+
+        this.blockedPaths = new AhoCorasick(rules.getPaths());
+
+        this.blockedDomains = new HostSuffixTrie();
+        rules.getDomains().forEach(blockedDomains::add);
+
+        this.blockedPatterns = compilePatterns(rules.getPatterns());
+    }
+
+    private static RunAutomaton compilePatterns(List<String> patterns) {
+        if (patterns.isEmpty()) return null;
+
+        Automaton union = Automaton.union(patterns.stream()
+                .map(pattern -> new RegExp(pattern, RegExp.NONE).toAutomaton())
+                .collect(Collectors.toList()));
+
+        // Accept any URL that contains a match: .*(p1|p2|...).*
+        Automaton containsMatch = Automaton.makeAnyString()
+                .concatenate(union)
+                .concatenate(Automaton.makeAnyString());
+        containsMatch.minimize();
+        return new RunAutomaton(containsMatch);
+    }
+
+    /**
+     * Compile a rule set. Fails with IllegalArgumentException if a rule is invalid.
+     */
+    public static UrlFilterEngine compile(UrlFilterRules rules) {
+        return new UrlFilterEngine(rules);
+    }
+
+    public boolean isBlocked(String url) {
+        int length = url.length();
+
+        // Locate the host: after "scheme://", up to the first '/', '?' or '#'
+        int schemeEnd = url.indexOf("://");
+        int hostStart = schemeEnd < 0 ? 0 : schemeEnd + 3;
+        int hostEnd = hostStart;
+        while (hostEnd < length) {
+            char c = url.charAt(hostEnd);
+            if (c == '/' || c == '?' || c == '#') break;
+            hostEnd++;
+        }
+
+        if (blockedDomains.matches(host(url, hostStart, hostEnd))) {
+            return true;
+        }
+
+        // The path ends at the query or fragment
+        int pathEnd = hostEnd;
+        while (pathEnd < length) {
+            char c = url.charAt(pathEnd);
+            if (c == '?' || c == '#') break;
+            pathEnd++;
+        }
+
+        if (hasBlockedExtension(url, hostEnd, pathEnd)) {
+            return true;
+        }
+
+        if (blockedPaths.containsAny(url, hostEnd)) {
+            return true;
+        }
+
+        return blockedPatterns != null && blockedPatterns.run(url);
+    }
+
+    private static String host(String url, int start, int end) {
+        // Strip user info and port
+        int at = url.lastIndexOf('@', end - 1);
+        if (at >= start) start = at + 1;
+        int colon = url.indexOf(':', start);
+        if (colon >= 0 && colon < end) end = colon;
+        return url.substring(start, end).toLowerCase();
+    }
+
+    private boolean hasBlockedExtension(String url, int pathStart, int pathEnd) {
+        int segmentStart = url.lastIndexOf('/', pathEnd - 1) + 1;
+        if (segmentStart < pathStart) return false;
+
+        int dot = url.lastIndexOf('.', pathEnd - 1);
+        if (dot < segmentStart) return false;
+
+        return extensions.contains(url.substring(dot, pathEnd).toLowerCase());
+    }
+}
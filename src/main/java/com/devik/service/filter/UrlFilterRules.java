@@ -0,0 +1,75 @@
+package com.devik.service.filter;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Raw filtering rules. Loaded from the rules file when one is configured, otherwise the defaults.
+ */
+@Data
+public class UrlFilterRules {
+    // File extensions, matched against the last path segment
+    private List<String> extensions = new ArrayList<>();
+    // Path fragments, matched anywhere in the path and query
+    private List<String> paths = new ArrayList<>();
+    // Domains, matching the domain itself and all of its subdomains
+    private List<String> domains = new ArrayList<>();
+    // Regular expressions in dk.brics automaton syntax, matched anywhere in the URL
+    private List<String> patterns = new ArrayList<>();
+
+    public static UrlFilterRules defaults() {
+        UrlFilterRules rules = new UrlFilterRules();
+
+        rules.setExtensions(List.of(
+                // Documents
+                ".pdf", ".doc", ".docx", ".ppt", ".pptx", ".xls", ".xlsx", ".odt", ".ods", ".odp",
+                // Archives
+                ".zip", ".tar", ".gz", ".rar", ".7z",
+                // Media files
+                ".jpg", ".jpeg", ".png", ".gif", ".bmp", ".svg", ".webp", ".tiff",
+                ".mp3", ".mp4", ".avi", ".mov", ".wmv", ".flv", ".wav", ".ogg", ".webm",
+                // Executables and binaries
+                ".exe", ".bin", ".dll", ".so", ".dmg", ".pkg", ".deb", ".rpm",
+                // Other
+                ".css", ".js", ".xml", ".rss", ".atom", ".json", ".csv", ".tsv"
+        ));
+
+        // Common paths that usually don't contain valuable indexable content
+        rules.setPaths(List.of(
+                "/wp-admin/", "/wp-includes/", "/wp-content/plugins/",
+                "/admin/", "/login/", "/logout/", "/signin/", "/signout/",
+                "/cart/", "/checkout/", "/account/", "/profile/",
+                "/tags/", "/categories/", "/search/", "/print/", "/feed/",
+                "/cgi-bin/", "/cdn-cgi/", "/.git/", "/node_modules/"
+        ));
+
+        // Common domains that are typically not worth crawling
+        rules.setDomains(List.of(
+                "facebook.com", "twitter.com", "instagram.com", "youtube.com",
+                "linkedin.com", "pinterest.com", "reddit.com", "tiktok.com",
+                "doubleclick.net", "googleadservices.com", "analytics.google.com",
+                "googleapis.com", "googlesyndication.com"
+        ));
+
+        rules.setPatterns(List.of(
+                // URLs with too many query parameters (probably dynamic pages)
+                "\\?.*&.*&.*&.*&",
+                // Calendar and date-based archives
+                "/(19|20)[0-9]{2}/(0[1-9]|1[0-2])/",
+                // Session IDs in URLs
+                "(jsessionid|sessionid|sid|session_id)=",
+                // Common social media share parameters
+                "(utm_source|utm_medium|utm_campaign|fbclid|gclid)=",
+                // URLs with long numbers (likely product IDs or other dynamic content)
+                "/[0-9]{10,}",
+                // URLs with repetitive patterns (pagination, etc.)
+                "/page/[0-9]+/",
+                // Comment sections
+                "/comments/"
+        ));
+
+        return rules;
+    }
+}
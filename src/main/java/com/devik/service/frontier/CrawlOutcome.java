@@ -0,0 +1,20 @@
+package com.devik.service.frontier;
+
+/**
+ * Result of a single fetch as seen by the frontier
+ *
+ * @param throttled        whether the host asked us to slow down (429/503)
+ * @param retryAfterMillis delay requested by the host, 0 if none was given
+ */
+public record CrawlOutcome(boolean throttled, long retryAfterMillis) {
+
+    private static final CrawlOutcome DONE = new CrawlOutcome(false, 0);
+
+    public static CrawlOutcome done() {
+        return DONE;
+    }
+
+    public static CrawlOutcome throttled(long retryAfterMillis) {
+        return new CrawlOutcome(true, retryAfterMillis);
+    }
+}
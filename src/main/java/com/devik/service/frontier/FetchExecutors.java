@@ -0,0 +1,78 @@
+package com.devik.service.frontier;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executor that runs fetch+parse work.
+ * <p>
+ * In {@code virtual} mode every fetch gets its own virtual thread, so thousands of slow fetches
+ * can be in flight without thousands of OS threads; the frontier's in-flight cap is then the
+ * only concurrency limit. The project still compiles for Java 17, so virtual threads are looked
+ * up reflectively and we fall back to a platform pool on older runtimes.
+ */
+@Slf4j
+public final class FetchExecutors {
+
+    public static final String PLATFORM = "platform";
+    public static final String VIRTUAL = "virtual";
+
+    private FetchExecutors() {
+    }
+
+    /**
+     * @param mode    {@code platform} or {@code virtual}
+     * @param threads pool size for platform mode
+     */
+    public static ExecutorService create(String mode, int threads) {
+        if (VIRTUAL.equalsIgnoreCase(mode)) {
+            ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+            if (virtual != null) {
+                log.info("Using virtual threads for crawl fetches");
+                return virtual;
+            }
+            log.warn("Virtual threads need Java 21+, falling back to {} platform threads", threads);
+        }
+        return Executors.newFixedThreadPool(threads, namedThreads("crawl-fetch-"));
+    }
+
+    public static boolean virtualThreadsAvailable() {
+        return newVirtualThreadPerTaskExecutorHandle() != null;
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        MethodHandle factory = newVirtualThreadPerTaskExecutorHandle();
+        if (factory == null) return null;
+        try {
+            return (ExecutorService) factory.invoke();
+        } catch (Throwable e) {
+            log.warn("Failed to create virtual thread executor: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static MethodHandle newVirtualThreadPerTaskExecutorHandle() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class,
+                    "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,342 @@
+package com.devik.service.frontier;
+
+import com.devik.model.CrawlRequest;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Host-partitioned crawl frontier.
+ * <p>
+ * Pending URLs are grouped by host. Each host has a token bucket limiting its request rate and
+ * a cap on concurrent fetches, and can be blocked for a while after it throttles us. A single
+ * dispatcher thread hands free fetch slots to whichever host is ready, so a slow or throttled
+ * host never holds slots that other hosts could use.
+ * <p>
+ * URLs held here have already been acknowledged to RabbitMQ, so {@code max-pending} bounds how
+ * much queued work a node can lose on a crash.
+ * <p>
+ * A host's bucket and throttle history outlive its queue: hosts usually get URLs one at a time,
+ * and a fresh bucket for each would never limit them. Idle hosts are evicted once they have been
+ * idle longer than both {@code host.idle-evict-ms} and the time their bucket takes to refill.
+ */
+@Slf4j
+@Component
+public class HostFrontier {
+
+    // Per-node cap on in-flight fetches; also the pool size in platform mode
+    @Value("${crawler.frontier.fetch-concurrency:16}")
+    private int fetchConcurrency;
+
+    @Value("${crawler.frontier.executor:platform}")
+    private String executorMode;
+
+    @Value("${crawler.frontier.max-pending:10000}")
+    private int maxPending;
+
+    @Value("${crawler.frontier.host.rate:1.0}")
+    private double hostRate;
+
+    @Value("${crawler.frontier.host.burst:2}")
+    private int hostBurst;
+
+    @Value("${crawler.frontier.host.concurrency:2}")
+    private int hostConcurrency;
+
+    @Value("${crawler.frontier.host.idle-evict-ms:600000}")
+    private long hostIdleEvictMillis;
+
+    @Value("${crawler.frontier.throttle.backoff-ms:30000}")
+    private long throttleBackoffMillis;
+
+    @Value("${crawler.frontier.throttle.max-backoff-ms:600000}")
+    private long maxThrottleBackoffMillis;
+
+    @Value("${crawler.frontier.throttle.max-retries:5}")
+    private int maxThrottleRetries;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+    // Hosts with pending URLs, in round-robin order
+    private final ArrayDeque<HostQueue> activeHosts = new ArrayDeque<>();
+    private int pending;
+    private int inFlight;
+
+    private final AtomicInteger throttledFetches = new AtomicInteger();
+    private final AtomicInteger droppedAfterRetries = new AtomicInteger();
+
+    private Function<CrawlRequest, CrawlOutcome> worker;
+    private Consumer<CrawlRequest> giveUp;
+    private long lastEviction = System.nanoTime();
+    private ExecutorService fetchExecutor;
+    // The executor actually running fetches; virtual mode falls back to platform before Java 21
+    private volatile String executorInUse;
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    /**
+     * Start dispatching pending URLs to the given worker
+     *
+     * @param giveUp called with URLs dropped after too many throttled attempts
+     */
+    public synchronized void start(Function<CrawlRequest, CrawlOutcome> worker, Consumer<CrawlRequest> giveUp) {
+        if (running) return;
+
+        this.worker = worker;
+        this.giveUp = giveUp;
+        this.fetchExecutor = FetchExecutors.create(executorMode, fetchConcurrency);
+        this.executorInUse = FetchExecutors.VIRTUAL.equalsIgnoreCase(executorMode) && FetchExecutors.virtualThreadsAvailable()
+                ? FetchExecutors.VIRTUAL : FetchExecutors.PLATFORM;
+        this.running = true;
+        this.dispatcher = new Thread(this::dispatchLoop, "crawl-frontier-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+        log.info("Started host frontier with {} fetch slots ({} executor)", fetchConcurrency, executorInUse);
+    }
+
+    /**
+     * Queue a URL for fetching, blocking while the frontier is full
+     */
+    public void submit(CrawlRequest request, String host) throws InterruptedException {
+        lock.lock();
+        try {
+            while (pending >= maxPending) {
+                notFull.await();
+            }
+            enqueue(hosts.computeIfAbsent(host, HostQueue::new), request, false);
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(HostQueue hostQueue, CrawlRequest request, boolean first) {
+        if (first) {
+            hostQueue.queue.addFirst(request);
+        } else {
+            hostQueue.queue.addLast(request);
+        }
+        pending++;
+        if (!hostQueue.active) {
+            hostQueue.active = true;
+            activeHosts.addLast(hostQueue);
+        }
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            HostQueue chosen = null;
+            CrawlRequest request = null;
+
+            lock.lock();
+            try {
+                while (inFlight >= fetchConcurrency) {
+                    changed.await();
+                }
+
+                long now = System.nanoTime();
+                evictIdleHosts(now);
+                long waitNanos = Long.MAX_VALUE;
+                int candidates = activeHosts.size();
+
+                for (int i = 0; i < candidates; i++) {
+                    HostQueue hostQueue = activeHosts.pollFirst();
+                    long delay = hostQueue.nanosUntilReady(now);
+
+                    if (delay == 0) {
+                        chosen = hostQueue;
+                        request = hostQueue.queue.pollFirst();
+                        hostQueue.bucket.consume(now);
+                        hostQueue.inFlight++;
+                        pending--;
+                        inFlight++;
+                        notFull.signal();
+
+                        if (hostQueue.queue.isEmpty()) {
+                            hostQueue.active = false;
+                            hostQueue.idleSince = now;
+                        } else {
+                            activeHosts.addLast(hostQueue);
+                        }
+                        break;
+                    }
+
+                    activeHosts.addLast(hostQueue);
+                    waitNanos = Math.min(waitNanos, delay);
+                }
+
+                if (chosen == null) {
+                    // Nothing ready: sleep until the earliest host becomes ready or something changes
+                    if (waitNanos == Long.MAX_VALUE) {
+                        changed.await();
+                    } else {
+                        changed.awaitNanos(waitNanos);
+                    }
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            HostQueue hostQueue = chosen;
+            CrawlRequest task = request;
+            fetchExecutor.execute(() -> fetch(hostQueue, task));
+        }
+    }
+
+    /**
+     * Forget hosts that have been idle long enough that fresh state would behave the same;
+     * runs at most once a second
+     */
+    private void evictIdleHosts(long now) {
+        if (now - lastEviction < TimeUnit.SECONDS.toNanos(1)) return;
+        lastEviction = now;
+
+        long refillNanos = (long) (TimeUnit.SECONDS.toNanos(1) * Math.max(1, hostBurst) / hostRate);
+        long idleNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(hostIdleEvictMillis), refillNanos);
+        hosts.values().removeIf(hostQueue -> !hostQueue.active
+                && hostQueue.inFlight == 0
+                && hostQueue.blockedUntil <= now
+                && now - hostQueue.idleSince > idleNanos);
+    }
+
+    private void fetch(HostQueue hostQueue, CrawlRequest request) {
+        CrawlOutcome outcome = CrawlOutcome.done();
+        boolean gaveUp = false;
+        try {
+            outcome = worker.apply(request);
+        } catch (Exception e) {
+            log.error("Crawl worker failed for {}: {}", request.getUrl(), e.getMessage());
+        } finally {
+            lock.lock();
+            try {
+                hostQueue.inFlight--;
+                inFlight--;
+
+                if (outcome.throttled()) {
+                    throttledFetches.incrementAndGet();
+                    long backoff = hostQueue.throttle(outcome.retryAfterMillis());
+                    log.warn("Host {} throttled us, pausing it for {} ms", hostQueue.host, backoff);
+
+                    // Delay the URL instead of dropping it
+                    if (request.getAttempt() < maxThrottleRetries) {
+                        request.setAttempt(request.getAttempt() + 1);
+                        enqueue(hostQueue, request, true);
+                    } else {
+                        droppedAfterRetries.incrementAndGet();
+                        gaveUp = true;
+                        log.warn("Giving up on {} after {} throttled attempts", request.getUrl(), request.getAttempt());
+                    }
+                } else {
+                    hostQueue.consecutiveThrottles = 0;
+                }
+
+                if (!hostQueue.active && hostQueue.inFlight == 0) {
+                    hostQueue.idleSince = System.nanoTime();
+                }
+                changed.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        if (gaveUp) {
+            try {
+                giveUp.accept(request);
+            } catch (Exception e) {
+                log.error("Failed to give up on {}: {}", request.getUrl(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Get frontier statistics
+     */
+    public Map<String, Object> getStats() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("pendingUrls", pending);
+            stats.put("inFlight", inFlight);
+            stats.put("maxInFlight", fetchConcurrency);
+            stats.put("executor", executorInUse);
+            stats.put("configuredExecutor", executorMode);
+            stats.put("activeHosts", activeHosts.size());
+            stats.put("trackedHosts", hosts.size());
+            stats.put("blockedHosts", hosts.values().stream().filter(h -> h.blockedUntil > now).count());
+            stats.put("throttledFetches", throttledFetches.get());
+            stats.put("droppedAfterRetries", droppedAfterRetries.get());
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (dispatcher != null) dispatcher.interrupt();
+        if (fetchExecutor != null) {
+            fetchExecutor.shutdown();
+            fetchExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Per-host state, guarded by the frontier lock
+     */
+    private class HostQueue {
+        private final String host;
+        private final ArrayDeque<CrawlRequest> queue = new ArrayDeque<>();
+        private final TokenBucket bucket;
+        private boolean active;
+        private int inFlight;
+        private long blockedUntil;
+        private int consecutiveThrottles;
+        private long idleSince = System.nanoTime();
+
+        HostQueue(String host) {
+            this.host = host;
+            this.bucket = new TokenBucket(hostRate, hostBurst, System.nanoTime());
+        }
+
+        /**
+         * Nanoseconds until this host may start another fetch, Long.MAX_VALUE if it must wait for a fetch to finish
+         */
+        long nanosUntilReady(long now) {
+            if (inFlight >= hostConcurrency) return Long.MAX_VALUE;
+            if (blockedUntil > now) return blockedUntil - now;
+            return bucket.nanosUntilAvailable(now);
+        }
+
+        /**
+         * Block the host after it throttled us
+         *
+         * @return the applied backoff in milliseconds
+         */
+        long throttle(long retryAfterMillis) {
+            consecutiveThrottles++;
+            long exponential = throttleBackoffMillis << Math.min(consecutiveThrottles - 1, 16);
+            long backoff = Math.min(maxThrottleBackoffMillis, Math.max(retryAfterMillis, exponential));
+            blockedUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+            return backoff;
+        }
+    }
+}
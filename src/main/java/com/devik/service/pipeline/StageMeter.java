@@ -0,0 +1,66 @@
+package com.devik.service.pipeline;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts pages through one crawl pipeline stage, with throughput over the last minute.
+ * <p>
+ * Throughput is kept in one bucket per second of a ring; a bucket is reset when its second
+ * comes round again. Counts racing with a reset can be lost, which is fine for a rate.
+ */
+public final class StageMeter {
+
+    private static final int WINDOW_SECONDS = 60;
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLongArray counts = new AtomicLongArray(WINDOW_SECONDS);
+    private final AtomicLongArray seconds = new AtomicLongArray(WINDOW_SECONDS);
+
+    /**
+     * Record a batch of pages that went through the stage
+     */
+    public void recordBatch(int pages) {
+        batches.incrementAndGet();
+        processed.addAndGet(pages);
+
+        long second = System.currentTimeMillis() / 1000;
+        int bucket = (int) (second % WINDOW_SECONDS);
+        long bucketSecond = seconds.get(bucket);
+        if (bucketSecond != second && seconds.compareAndSet(bucket, bucketSecond, second)) {
+            counts.set(bucket, 0);
+        }
+        counts.addAndGet(bucket, pages);
+    }
+
+    public void recordFailure() {
+        failed.incrementAndGet();
+    }
+
+    /**
+     * Pages per second over the last minute
+     */
+    public double perSecond() {
+        long now = System.currentTimeMillis() / 1000;
+        long total = 0;
+        for (int bucket = 0; bucket < WINDOW_SECONDS; bucket++) {
+            if (now - seconds.get(bucket) < WINDOW_SECONDS) total += counts.get(bucket);
+        }
+        return (double) total / WINDOW_SECONDS;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long batchCount = batches.get();
+        stats.put("processed", processed.get());
+        stats.put("failed", failed.get());
+        stats.put("batches", batchCount);
+        stats.put("averageBatchSize", batchCount == 0 ? 0.0 : (double) processed.get() / batchCount);
+        stats.put("perSecond", perSecond());
+        return stats;
+    }
+}
@@ -0,0 +1,16 @@
+-- Atomically claim a batch of URLs for crawling.
+-- KEYS[1]: claims counter, a running total
+-- KEYS[2..]: visited key and processing key for each URL, interleaved (v1, p1, v2, p2, ...)
+-- ARGV[1]: processing TTL in seconds
+-- Returns the 1-based positions of the URLs that were claimed.
+local claimed = {}
+for i = 2, #KEYS, 2 do
+    if redis.call('EXISTS', KEYS[i]) == 0
+            and redis.call('SET', KEYS[i + 1], '1', 'NX', 'EX', ARGV[1]) then
+        claimed[#claimed + 1] = i / 2
+    end
+end
+if #claimed > 0 then
+    redis.call('INCRBY', KEYS[1], #claimed)
+end
+return claimed
@@ -0,0 +1,10 @@
+-- Mark a URL as visited and update the crawl counters.
+-- KEYS[1]: visited key, KEYS[2]: visits counter, a running total, KEYS[3]: domains HyperLogLog
+-- ARGV[1]: visited TTL in seconds, ARGV[2]: domain
+-- Returns 1 if the URL was marked, 0 if it was already visited.
+if redis.call('SET', KEYS[1], '1', 'NX', 'EX', ARGV[1]) then
+    redis.call('INCR', KEYS[2])
+    redis.call('PFADD', KEYS[3], ARGV[2])
+    return 1
+end
+return 0
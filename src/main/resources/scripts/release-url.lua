@@ -0,0 +1,8 @@
+-- Release a processing claim and count the release.
+-- KEYS[1]: processing key, KEYS[2]: releases counter, a running total
+-- Returns 1 if a claim was released.
+if redis.call('DEL', KEYS[1]) == 1 then
+    redis.call('INCR', KEYS[2])
+    return 1
+end
+return 0
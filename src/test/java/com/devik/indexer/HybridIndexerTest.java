@@ -0,0 +1,115 @@
+package com.devik.indexer;
+
+import com.devik.model.SearchRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HybridIndexerTest {
+
+    // Lexical scores are BM25-like, semantic ones cosine similarities
+    private static final List<Map<String, Object>> LEXICAL = List.of(hit("a", 10.0), hit("b", 5.0), hit("c", 0.0));
+    private static final List<Map<String, Object>> SEMANTIC = List.of(hit("d", 0.9), hit("b", 0.8), hit("a", 0.1));
+
+    private HybridIndexer indexer;
+
+    @AfterEach
+    void shutdown() {
+        if (indexer != null) indexer.shutdown();
+    }
+
+    @Test
+    void reciprocalRankFusionFavoursPagesRankedHighByBoth() {
+        List<Map<String, Object>> results = search("rrf", () -> LEXICAL, () -> SEMANTIC, 10, 0);
+
+        // a is 1st and 3rd, b 2nd and 2nd; ranks alone decide, whatever the scores
+        assertEquals(List.of("a", "b", "d", "c"), urls(results));
+        assertEquals(1.0 / 61 + 1.0 / 63, (double) results.get(0).get("score"), 1e-9);
+        assertEquals(List.of("lexical", "semantic"), results.get(0).get("matchedBy"));
+        assertEquals(List.of("semantic"), results.get(2).get("matchedBy"));
+    }
+
+    @Test
+    void weightedFusionAddsNormalizedScores() {
+        List<Map<String, Object>> results = search("weighted", () -> LEXICAL, () -> SEMANTIC, 10, 0);
+
+        // b: 0.5 + 0.875, a: 1 + 0, d: 0 + 1, c: 0
+        assertEquals(List.of("b", "a", "d", "c"), urls(results));
+        assertEquals(1.375, (double) results.get(0).get("score"), 1e-9);
+        assertEquals(0.0, (double) results.get(3).get("score"), 1e-9);
+    }
+
+    @Test
+    void failedBackendIsLeftOutOfTheFusion() {
+        List<Map<String, Object>> results = search("rrf", () -> LEXICAL, () -> {
+            throw new IllegalStateException("vector store is down");
+        }, 10, 0);
+
+        assertEquals(List.of("a", "b", "c"), urls(results));
+        results.forEach(result -> assertEquals(List.of("lexical"), result.get("matchedBy")));
+    }
+
+    @Test
+    void timedOutBackendIsLeftOutOfTheFusion() {
+        List<Map<String, Object>> results = search("weighted", () -> {
+            try {
+                Thread.sleep(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return LEXICAL;
+        }, () -> SEMANTIC, 10, 0);
+
+        assertEquals(List.of("d", "b", "a"), urls(results));
+    }
+
+    @Test
+    void searchFailsWhenEveryBackendFails() {
+        Supplier<List<Map<String, Object>>> down = () -> {
+            throw new IllegalStateException("down");
+        };
+        assertThrows(RuntimeException.class, () -> search("rrf", down, down, 10, 0));
+    }
+
+    @Test
+    void laterPagesComeFromTheSameFusedRanking() {
+        assertEquals(List.of("d", "c"), urls(search("rrf", () -> LEXICAL, () -> SEMANTIC, 2, 1)));
+    }
+
+    private List<Map<String, Object>> search(String fusion, Supplier<List<Map<String, Object>>> lexical,
+                                             Supplier<List<Map<String, Object>>> semantic, int limit, int page) {
+        ElasticSearchIndexer lexicalBackend = new ElasticSearchIndexer() {
+            @Override
+            public List<Map<String, Object>> search(SearchRequest request) {
+                return lexical.get();
+            }
+        };
+        LLMIndexer semanticBackend = new LLMIndexer(null, null, null, "chunked", 160, 32, 4, "max", 4) {
+            @Override
+            public List<Map<String, Object>> search(SearchRequest request) {
+                return semantic.get();
+            }
+        };
+        indexer = new HybridIndexer(lexicalBackend, semanticBackend, fusion, 60, 50,
+                200, 1.0, 1, 4, 200, 1.0, 1, 4);
+
+        SearchRequest request = new SearchRequest();
+        request.setQuery("query");
+        request.setLimit(limit);
+        request.setPage(page);
+        return indexer.search(request);
+    }
+
+    private static Map<String, Object> hit(String url, double score) {
+        return Map.of("url", url, "score", score);
+    }
+
+    private static List<String> urls(List<Map<String, Object>> results) {
+        return results.stream().map(result -> (String) result.get("url")).toList();
+    }
+}
@@ -0,0 +1,141 @@
+package com.devik.indexer;
+
+import com.devik.model.CrawlResult;
+import com.devik.model.SearchRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexingLaneTest {
+
+    private IndexingLane lane;
+    private final Set<String> lost = ConcurrentHashMap.newKeySet();
+
+    @AfterEach
+    void close() {
+        if (lane != null) lane.close(1000);
+    }
+
+    private IndexingLane open(int capacity, int maxInFlight, Function<CrawlResult, CompletableFuture<Void>> store) {
+        lane = new IndexingLane("test", backend(store), capacity, 1, maxInFlight, 2, 10, 100,
+                result -> lost.add(result.getUrl()));
+        return lane;
+    }
+
+    private static IndexerStrategy backend(Function<CrawlResult, CompletableFuture<Void>> store) {
+        return new IndexerStrategy() {
+            @Override
+            public void indexDocument(CrawlResult result) {
+                store.apply(result).join();
+            }
+
+            @Override
+            public CompletableFuture<Void> indexDocumentAsync(CrawlResult result) {
+                return store.apply(result);
+            }
+
+            @Override
+            public List<Map<String, Object>> search(SearchRequest request) {
+                return List.of();
+            }
+        };
+    }
+
+    private static CrawlResult page(String url) {
+        return CrawlResult.create(url, "title", "content", List.of());
+    }
+
+    private static void await(IndexingLane lane, String stat, long expected) throws InterruptedException {
+        for (int i = 0; i < 200 && ((Number) lane.getStats().get(stat)).longValue() < expected; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, ((Number) lane.getStats().get(stat)).longValue(), stat);
+    }
+
+    @Test
+    void retriesWritesTheBackendReportsFailed() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        IndexingLane lane = open(10, 4, result -> attempts.incrementAndGet() < 3
+                ? CompletableFuture.failedFuture(new RuntimeException("bulk item rejected"))
+                : CompletableFuture.completedFuture(null));
+
+        assertTrue(lane.offer(page("https://example.com/a")));
+
+        await(lane, "indexed", 1);
+        assertEquals(2L, lane.getStats().get("retries"));
+        assertEquals(0L, lane.getStats().get("failed"));
+        assertTrue(lost.isEmpty());
+    }
+
+    @Test
+    void pagesGivenUpOnAreReportedLost() throws InterruptedException {
+        IndexingLane lane = open(10, 4, result -> CompletableFuture.failedFuture(new RuntimeException("down")));
+
+        lane.offer(page("https://example.com/a"));
+
+        await(lane, "failed", 1);
+        assertEquals(Set.of("https://example.com/a"), lost);
+    }
+
+    @Test
+    void pagesCountAsIndexedOnlyOnceStored() throws InterruptedException {
+        CompletableFuture<Void> stored = new CompletableFuture<>();
+        IndexingLane lane = open(10, 1, result -> stored);
+
+        lane.offer(page("https://example.com/a"));
+        lane.offer(page("https://example.com/b"));
+        await(lane, "inFlight", 1);
+
+        // The second page waits for an in-flight slot
+        assertEquals(0L, lane.getStats().get("indexed"));
+        assertEquals(1, lane.getStats().get("queued"));
+
+        stored.complete(null);
+        await(lane, "indexed", 2);
+    }
+
+    @Test
+    void droppedAndAbandonedPagesAreReportedLost() {
+        CompletableFuture<Void> never = new CompletableFuture<>();
+        IndexingLane lane = open(1, 1, result -> never);
+
+        lane.offer(page("https://example.com/a"));
+        lane.offer(page("https://example.com/b"));
+        lane.offer(page("https://example.com/c"));
+        lane.offer(page("https://example.com/d"));
+        lane.close(200);
+        this.lane = null;
+
+        // One page was stuck in flight, the rest were dropped or left in the queue
+        assertEquals(3, lost.size());
+    }
+
+    @Test
+    void lostPageLogKeepsIdsUntilDrained(@TempDir Path directory) throws Exception {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        LostPageLog log = new LostPageLog(directory.resolve("lane.log"));
+        log.record(first);
+        log.record(second);
+        log.record(first);
+        log.close();
+
+        LostPageLog reopened = new LostPageLog(directory.resolve("lane.log"));
+        assertEquals(List.of(first, second), reopened.drain());
+        assertEquals(0, reopened.size());
+        assertTrue(reopened.drain().isEmpty());
+        reopened.close();
+    }
+}
@@ -0,0 +1,136 @@
+package com.devik.indexer;
+
+import com.devik.model.CrawlResult;
+import com.devik.repository.vector.VectorStore;
+import com.devik.service.embedder.EmbeddingService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LLMIndexerTest {
+
+    // Best hit first, as the vector store returns them
+    private final List<Map<String, Object>> hits = List.of(
+            hit("a", 0, 0.9),
+            hit("b", 0, 0.8),
+            hit("b", 3, 0.7),
+            hit("c", 1, 0.6),
+            hit("b", 5, 0.5));
+
+    @Test
+    void maxScoresEachPageByItsBestChunk() {
+        List<Map<String, Object>> pages = LLMIndexer.groupByPage(hits, false, 10);
+
+        assertEquals(List.of("a", "b", "c"), urls(pages));
+        assertEquals(0.8, (double) pages.get(1).get("score"), 1e-9);
+        assertFalse(pages.get(1).containsKey("parentId"));
+        assertFalse(pages.get(1).containsKey("chunk"));
+    }
+
+    @Test
+    void sumAddsUpTheChunksOfAPage() {
+        List<Map<String, Object>> pages = LLMIndexer.groupByPage(hits, true, 10);
+
+        assertEquals(List.of("b", "a", "c"), urls(pages));
+        assertEquals(2.0, (double) pages.get(0).get("score"), 1e-9);
+    }
+
+    @Test
+    void limitsTheNumberOfPages() {
+        assertEquals(List.of("a", "b"), urls(LLMIndexer.groupByPage(hits, false, 2)));
+    }
+
+    @Test
+    void hitsWithoutParentAreGroupedByUrl() {
+        List<Map<String, Object>> pages = LLMIndexer.groupByPage(List.of(
+                Map.of("url", "x", "score", 0.4),
+                Map.of("url", "x", "score", 0.3)), true, 10);
+
+        assertEquals(1, pages.size());
+        assertEquals(0.7, (double) pages.get(0).get("score"), 1e-9);
+    }
+
+    @Test
+    void batchThrowsWhenTheVectorStoreFailsAPage() {
+        LLMIndexer indexer = indexer(vectorStore(Set.of("https://example.com/bad")));
+
+        RuntimeException failure = assertThrows(RuntimeException.class, () -> indexer.indexDocuments(List.of(
+                CrawlResult.create("https://example.com/good", "Good", "some text", List.of()),
+                CrawlResult.create("https://example.com/bad", "Bad", "other text", List.of()))));
+        assertEquals("vector store is down", failure.getCause().getMessage());
+    }
+
+    @Test
+    void batchReturnsOnceEveryPageIsStored() {
+        Set<String> stored = ConcurrentHashMap.newKeySet();
+        LLMIndexer indexer = indexer(new FakeVectorStore(Set.of(), stored));
+
+        indexer.indexDocuments(List.of(
+                CrawlResult.create("https://example.com/a", "A", "some text", List.of()),
+                CrawlResult.create("https://example.com/b", "B", "other text", List.of())));
+        assertEquals(Set.of("https://example.com/a", "https://example.com/b"), stored);
+    }
+
+    private static LLMIndexer indexer(VectorStore vectorStore) {
+        EmbeddingService embeddings = new EmbeddingService() {
+            @Override
+            public float[] embed(String text) {
+                return new float[]{1, 0};
+            }
+
+            @Override
+            public List<float[]> embedBatch(List<String> texts) {
+                return texts.stream().map(this::embed).toList();
+            }
+        };
+        return new LLMIndexer(embeddings, embeddings, vectorStore, "chunked", 160, 32, 4, "max", 4);
+    }
+
+    private static VectorStore vectorStore(Set<String> failingUrls) {
+        return new FakeVectorStore(failingUrls, ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * Accepts writes asynchronously, failing those of some pages
+     */
+    private record FakeVectorStore(Set<String> failingUrls, Set<String> stored) implements VectorStore {
+
+        @Override
+        public CompletableFuture<Void> insertAsync(UUID id, float[] embedding, Map<String, Object> metadata) {
+            String url = (String) metadata.get("url");
+            return CompletableFuture.runAsync(() -> {
+                if (failingUrls.contains(url)) throw new IllegalStateException("vector store is down");
+                stored.add(url);
+            });
+        }
+
+        @Override
+        public void insert(UUID id, float[] embedding, Map<String, Object> metadata) {
+            insertAsync(id, embedding, metadata).join();
+        }
+
+        @Override
+        public List<Map<String, Object>> query(float[] embedding, int topK) {
+            return List.of();
+        }
+
+        @Override
+        public void delete(List<UUID> ids) {
+        }
+    }
+
+    private static Map<String, Object> hit(String page, int chunk, double score) {
+        return Map.of("url", page, "parentId", "id-" + page, "chunk", chunk, "score", score);
+    }
+
+    private static List<String> urls(List<Map<String, Object>> pages) {
+        return pages.stream().map(page -> (String) page.get("url")).toList();
+    }
+}
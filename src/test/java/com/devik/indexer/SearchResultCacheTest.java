@@ -0,0 +1,143 @@
+package com.devik.indexer;
+
+import com.devik.model.CrawlResult;
+import com.devik.model.SearchRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchResultCacheTest {
+
+    private final AtomicInteger searches = new AtomicInteger();
+    private final CompletableFuture<Void> pendingWrite = new CompletableFuture<>();
+
+    // Returns a fresh result for every backend call, so a cached answer is recognisable
+    private final IndexerStrategy backend = new IndexerStrategy() {
+        @Override
+        public void indexDocument(CrawlResult result) {
+        }
+
+        @Override
+        public CompletableFuture<Void> indexDocumentAsync(CrawlResult result) {
+            return pendingWrite;
+        }
+
+        @Override
+        public List<Map<String, Object>> search(SearchRequest request) {
+            int call = searches.incrementAndGet();
+            if ("fail".equals(request.getQuery())) throw new IllegalStateException("backend is down");
+            return List.of(Map.of("url", "https://example.com/" + call, "cursor", "c" + call));
+        }
+    };
+
+    private static IndexerStrategy cached(IndexerStrategy backend, long maxStalenessMillis) {
+        return new SearchResultCache(true, 100, 300, maxStalenessMillis).wrap("llm", backend);
+    }
+
+    private static SearchRequest request(String query, int page) {
+        SearchRequest request = new SearchRequest();
+        request.setQuery(query);
+        request.setPage(page);
+        return request;
+    }
+
+    private static CrawlResult page() {
+        return CrawlResult.create("https://example.com/new", "title", "content", List.of());
+    }
+
+    @Test
+    void queriesDifferingInCaseAndWhitespaceShareAnEntry() {
+        IndexerStrategy strategy = cached(backend, 60_000);
+
+        List<Map<String, Object>> first = strategy.search(request("Vector  Search", 0));
+        assertEquals(first, strategy.search(request("  vector search\t", 0)));
+        assertEquals(1, searches.get());
+    }
+
+    @Test
+    void pagesAndTuningAreCachedSeparately() {
+        IndexerStrategy strategy = cached(backend, 60_000);
+        strategy.search(request("query", 0));
+        strategy.search(request("query", 1));
+
+        SearchRequest exact = request("query", 0);
+        exact.setExact(true);
+        strategy.search(exact);
+
+        assertEquals(3, searches.get());
+    }
+
+    @Test
+    void cachedResultsCarryNoCursor() {
+        Map<String, Object> result = cached(backend, 60_000).search(request("query", 0)).get(0);
+
+        assertFalse(result.containsKey("cursor"));
+        assertEquals("https://example.com/1", result.get("url"));
+    }
+
+    @Test
+    void cursorSearchesBypassTheCache() {
+        IndexerStrategy strategy = cached(backend, 60_000);
+        SearchRequest request = request("query", 0);
+        request.setWithCursors(true);
+
+        assertEquals("c1", strategy.search(request).get(0).get("cursor"));
+        assertEquals("c2", strategy.search(request).get(0).get("cursor"));
+    }
+
+    @Test
+    void indexingStartsANewGenerationOnceTheStalenessWindowHasPassed() {
+        IndexerStrategy strategy = cached(backend, 0);
+        strategy.search(request("query", 0));
+        strategy.search(request("query", 0));
+        assertEquals(1, searches.get());
+
+        strategy.indexDocument(page());
+        strategy.search(request("query", 0));
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    void indexingWithinTheStalenessWindowKeepsServingTheCachedResults() {
+        IndexerStrategy strategy = cached(backend, 60_000);
+        strategy.search(request("query", 0));
+
+        strategy.indexDocuments(List.of(page()));
+        strategy.search(request("query", 0));
+        assertEquals(1, searches.get());
+    }
+
+    @Test
+    void asyncIndexingInvalidatesOnlyOnceTheWriteCompletes() {
+        IndexerStrategy strategy = cached(backend, 0);
+        strategy.search(request("query", 0));
+
+        CompletableFuture<Void> write = strategy.indexDocumentAsync(page());
+        strategy.search(request("query", 0));
+        assertEquals(1, searches.get());
+
+        pendingWrite.complete(null);
+        assertTrue(write.isDone());
+        strategy.search(request("query", 0));
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    void failedSearchesAreNotCached() {
+        IndexerStrategy strategy = cached(backend, 60_000);
+
+        assertThrows(IllegalStateException.class, () -> strategy.search(request("fail", 0)));
+        assertThrows(IllegalStateException.class, () -> strategy.search(request("fail", 0)));
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    void disabledCacheReturnsTheStrategyItself() {
+        assertSame(backend, new SearchResultCache(false, 100, 300, 0).wrap("llm", backend));
+    }
+}
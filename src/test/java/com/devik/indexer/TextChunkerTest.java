@@ -0,0 +1,51 @@
+package com.devik.indexer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextChunkerTest {
+
+    @Test
+    void splitsIntoOverlappingWindows() {
+        TextChunker chunker = new TextChunker(4, 1, 10);
+
+        List<String> chunks = chunker.split("one two three four five six seven eight nine ten");
+
+        assertEquals(List.of(
+                "one two three four",
+                "four five six seven",
+                "seven eight nine ten"), chunks);
+    }
+
+    @Test
+    void keepsOriginalWhitespaceInsideAWindow() {
+        TextChunker chunker = new TextChunker(3, 0, 10);
+
+        List<String> chunks = chunker.split("  alpha\n beta\tgamma   delta  ");
+
+        assertEquals(List.of("alpha\n beta\tgamma", "delta"), chunks);
+    }
+
+    @Test
+    void shortTextIsOneChunkAndBlankTextNone() {
+        TextChunker chunker = new TextChunker(8, 2, 10);
+
+        assertEquals(List.of("just a few words"), chunker.split("just a few words"));
+        assertTrue(chunker.split(" \n\t ").isEmpty());
+    }
+
+    @Test
+    void stopsAtMaxChunks() {
+        TextChunker chunker = new TextChunker(2, 0, 2);
+
+        assertEquals(List.of("a b", "c d"), chunker.split("a b c d e f g"));
+    }
+
+    @Test
+    void rejectsOverlapAsLargeAsTheWindow() {
+        assertThrows(IllegalArgumentException.class, () -> new TextChunker(4, 4, 10));
+    }
+}
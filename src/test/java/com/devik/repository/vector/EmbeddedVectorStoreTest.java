@@ -0,0 +1,184 @@
+package com.devik.repository.vector;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddedVectorStoreTest {
+
+    private static final int DIMENSIONS = 32;
+    private static final long NO_TIMED_CHECKPOINTS = 3_600_000;
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(42);
+    private final List<EmbeddedVectorStore> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeStores() {
+        opened.forEach(EmbeddedVectorStore::close);
+    }
+
+    private EmbeddedVectorStore open() {
+        EmbeddedVectorStore store = new EmbeddedVectorStore(directory.toString(), DIMENSIONS, 8, 64, 32, NO_TIMED_CHECKPOINTS);
+        opened.add(store);
+        return store;
+    }
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static List<Object> urls(List<Map<String, Object>> results) {
+        return results.stream().map(result -> result.get("url")).toList();
+    }
+
+    @Test
+    void graphSearchFindsMostOfTheExactNeighbours() {
+        EmbeddedVectorStore store = open();
+        for (int i = 0; i < 3000; i++) {
+            store.insert(UUID.randomUUID(), randomVector(), Map.of("url", "page-" + i));
+        }
+
+        int found = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = randomVector();
+            List<Object> exact = urls(store.query(query, 10, new VectorSearchOptions(null, true, null)));
+            List<Object> approximate = urls(store.query(query, 10, new VectorSearchOptions(100, null, null)));
+            found += (int) approximate.stream().filter(exact::contains).count();
+            assertTrue(exact.size() <= 10);
+        }
+        assertTrue(found >= 450, "Recall too low: " + found + " of 500");
+    }
+
+    @Test
+    void concurrentInsertsAreAllReachable() throws Exception {
+        EmbeddedVectorStore store = open();
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            vectors.add(randomVector());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> inserts = new ArrayList<>();
+        for (int i = 0; i < vectors.size(); i++) {
+            int index = i;
+            inserts.add(executor.submit(() -> store.insert(UUID.randomUUID(), vectors.get(index), Map.of("url", "page-" + index))));
+        }
+        for (Future<?> insert : inserts) {
+            insert.get();
+        }
+        executor.shutdown();
+
+        int missed = 0;
+        for (int i = 0; i < vectors.size(); i++) {
+            List<Map<String, Object>> results = store.query(vectors.get(i), 1);
+            if (results.isEmpty() || !("page-" + i).equals(results.get(0).get("url"))) missed++;
+        }
+        assertTrue(missed < vectors.size() / 100, missed + " vectors not found by their own query");
+    }
+
+    @Test
+    void reopensWithReplacedAndDeletedVectors() {
+        EmbeddedVectorStore store = open();
+        UUID kept = UUID.randomUUID();
+        UUID replaced = UUID.randomUUID();
+        UUID deleted = UUID.randomUUID();
+        float[] keptVector = randomVector();
+        float[] replacedVector = randomVector();
+        float[] deletedVector = randomVector();
+
+        store.insert(kept, keptVector, Map.of("url", "kept", "chunk", 3));
+        store.insert(replaced, replacedVector, Map.of("url", "old"));
+        store.insert(replaced, replacedVector, Map.of("url", "new"));
+        store.insert(deleted, deletedVector, Map.of("url", "deleted"));
+        store.delete(List.of(deleted));
+        store.close();
+        opened.remove(store);
+
+        EmbeddedVectorStore reopened = open();
+        Map<String, Object> top = reopened.query(keptVector, 1).get(0);
+        assertEquals("kept", top.get("url"));
+        assertEquals(3, top.get("chunk"));
+        assertEquals(List.of("new"), urls(reopened.query(replacedVector, 3)).stream().filter(url -> !"kept".equals(url)).toList());
+        assertFalse(urls(reopened.query(deletedVector, 3)).contains("deleted"));
+    }
+
+    @Test
+    void crashLosesOnlyInsertsAfterTheLastCheckpoint() {
+        EmbeddedVectorStore crashed = open();
+        opened.remove(crashed);
+        float[] durable = randomVector();
+        float[] lost = durable.clone();
+        lost[0] += 1;
+
+        crashed.insert(UUID.randomUUID(), durable, Map.of("url", "durable"));
+        crashed.checkpoint();
+        crashed.insert(UUID.randomUUID(), lost, Map.of("url", "lost"));
+
+        // Open the same files without closing the first store, as after a crash
+        EmbeddedVectorStore recovered = open();
+        assertEquals(List.of("durable"), urls(recovered.query(lost, 5)));
+
+        recovered.insert(UUID.randomUUID(), lost, Map.of("url", "again"));
+        assertEquals(List.of("again", "durable"), urls(recovered.query(lost, 5)));
+    }
+
+    @Test
+    void crashAfterReplacingKeepsTheCheckpointedVersion() {
+        EmbeddedVectorStore crashed = open();
+        opened.remove(crashed);
+        UUID id = UUID.randomUUID();
+        float[] vector = randomVector();
+
+        crashed.insert(id, vector, Map.of("url", "old"));
+        crashed.checkpoint();
+        crashed.insert(id, vector, Map.of("url", "new"));
+        assertEquals(List.of("new"), urls(crashed.query(vector, 5)));
+
+        // The files are shared with the first store, so anything it wrote to its mapped pages shows
+        EmbeddedVectorStore recovered = open();
+        assertEquals(List.of("old"), urls(recovered.query(vector, 5)));
+    }
+
+    @Test
+    void replacedVectorsDoNotCrowdOutResultsBeforeACheckpoint() {
+        EmbeddedVectorStore store = open();
+        float[] query = randomVector();
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            UUID id = UUID.randomUUID();
+            ids.add(id);
+            store.insert(id, query, Map.of("url", "page-" + i));
+        }
+        for (int i = 0; i < 20; i++) {
+            store.insert(UUID.randomUUID(), randomVector(), Map.of("url", "other-" + i));
+        }
+        for (int i = 0; i < 5; i++) {
+            float[] moved = randomVector();
+            store.insert(ids.get(i), moved, Map.of("url", "page-" + i));
+        }
+
+        // The replaced nodes are still the five closest, but only live vectors fill the results
+        List<Object> results = urls(store.query(query, 5, new VectorSearchOptions(null, true, null)));
+        assertEquals(5, results.size());
+        assertEquals(5, results.stream().distinct().count());
+    }
+}
@@ -0,0 +1,159 @@
+package com.devik.service.archive;
+
+import com.devik.service.fetcher.FetchedPage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageArchiveTest {
+
+    private static final int INDEX_ENTRY_BYTES = 24;
+
+    @TempDir
+    Path dir;
+
+    private PageArchive open() {
+        return new PageArchive(true, dir.toString(), 1, 6, 60_000);
+    }
+
+    private static FetchedPage page(String url) {
+        return FetchedPage.builder()
+                .url(url)
+                .statusCode(200)
+                .headers(Map.of())
+                .body(("<html><body>" + url.repeat(20) + "</body></html>").getBytes(StandardCharsets.UTF_8))
+                .charset("UTF-8")
+                .build();
+    }
+
+    private static void assertStored(PageArchive archive, UUID id, String url) {
+        PageArchive.ArchivedPage archived = archive.load(id).orElseThrow();
+        assertEquals(url, archived.url());
+        assertArrayEquals(page(url).getBody(), archived.page().getBody());
+    }
+
+    private void truncate(String file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve(file), StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private void overwrite(long location, int recordOffset, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve("pages-" + (location >>> 32) + ".seg"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), (location & 0xffffffffL) + recordOffset);
+        }
+    }
+
+    @Test
+    void storedPagesSurviveReopening() {
+        PageArchive archive = open();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        archive.store(first, "https://example.com/a", page("https://example.com/a"));
+        archive.store(second, "https://example.com/b", page("https://example.com/b"));
+        archive.close();
+
+        PageArchive reopened = open();
+        assertStored(reopened, first, "https://example.com/a");
+        assertStored(reopened, second, "https://example.com/b");
+        assertEquals(2, reopened.liveLocations().length);
+        reopened.close();
+    }
+
+    @Test
+    void recordsMissingFromATruncatedIndexLogAreRecovered() throws IOException {
+        PageArchive archive = open();
+        UUID[] ids = {UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()};
+        for (int i = 0; i < ids.length; i++) {
+            archive.store(ids[i], "https://example.com/" + i, page("https://example.com/" + i));
+        }
+        archive.close();
+
+        // Keep the first entry and half of the second
+        truncate("index.log", INDEX_ENTRY_BYTES + INDEX_ENTRY_BYTES / 2);
+
+        PageArchive reopened = open();
+        for (int i = 0; i < ids.length; i++) {
+            assertStored(reopened, ids[i], "https://example.com/" + i);
+        }
+        reopened.close();
+    }
+
+    @Test
+    void corruptTailRecordIsDroppedAndOverwritten() throws IOException {
+        PageArchive archive = open();
+        UUID kept = UUID.randomUUID();
+        UUID torn = UUID.randomUUID();
+        archive.store(kept, "https://example.com/kept", page("https://example.com/kept"));
+        archive.store(torn, "https://example.com/torn", page("https://example.com/torn"));
+        long tornLocation = archive.liveLocations()[1];
+        archive.close();
+
+        // A crash mid-write: the record body is damaged and its index entry never made it
+        truncate("index.log", INDEX_ENTRY_BYTES);
+        overwrite(tornLocation, 12 + 30, new byte[]{(byte) 0xff, (byte) 0xff});
+
+        PageArchive reopened = open();
+        assertStored(reopened, kept, "https://example.com/kept");
+        assertTrue(reopened.load(torn).isEmpty());
+
+        UUID next = UUID.randomUUID();
+        reopened.store(next, "https://example.com/next", page("https://example.com/next"));
+        assertEquals(tornLocation, reopened.liveLocations()[1]);
+        reopened.close();
+
+        PageArchive again = open();
+        assertStored(again, kept, "https://example.com/kept");
+        assertStored(again, next, "https://example.com/next");
+        assertTrue(again.load(torn).isEmpty());
+        again.close();
+    }
+
+    @Test
+    void indexEntriesPointingPastTheWrittenRecordsAreSkipped() throws IOException {
+        PageArchive archive = open();
+        UUID kept = UUID.randomUUID();
+        UUID lost = UUID.randomUUID();
+        archive.store(kept, "https://example.com/kept", page("https://example.com/kept"));
+        archive.store(lost, "https://example.com/lost", page("https://example.com/lost"));
+        long lostLocation = archive.liveLocations()[1];
+        archive.close();
+
+        // A power loss that kept the index entry but not the record it points at
+        overwrite(lostLocation, 0, new byte[12]);
+
+        PageArchive reopened = open();
+        assertStored(reopened, kept, "https://example.com/kept");
+        assertTrue(reopened.load(lost).isEmpty());
+        assertEquals(1, reopened.liveLocations().length);
+        reopened.close();
+    }
+
+    @Test
+    void removedPagesStayRemovedAfterReopening() {
+        PageArchive archive = open();
+        UUID kept = UUID.randomUUID();
+        UUID removed = UUID.randomUUID();
+        archive.store(kept, "https://example.com/kept", page("https://example.com/kept"));
+        archive.store(removed, "https://example.com/removed", page("https://example.com/removed"));
+        archive.remove(removed);
+        assertTrue(archive.load(removed).isEmpty());
+        archive.close();
+
+        PageArchive reopened = open();
+        assertStored(reopened, kept, "https://example.com/kept");
+        assertTrue(reopened.load(removed).isEmpty());
+        assertEquals(1, reopened.liveLocations().length);
+        reopened.close();
+    }
+}
@@ -0,0 +1,49 @@
+package com.devik.service.dedup;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearDuplicateIndexTest {
+
+    @Test
+    void bandingFindsEveryPairWithinMaxDistance() {
+        NearDuplicateIndex index = nearDuplicateIndex(3);
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            long fingerprint = random.nextLong();
+            long near = fingerprint;
+            for (int flip = 0; flip < 3; flip++) {
+                near ^= 1L << random.nextInt(SimHash.BITS);
+            }
+
+            Set<String> shared = new HashSet<>(index.bandKeys(fingerprint));
+            shared.retainAll(index.bandKeys(near));
+            assertFalse(shared.isEmpty(), "no shared band for " + Long.toHexString(fingerprint));
+        }
+    }
+
+    @Test
+    void bandsCoverAllBitsOnce() {
+        List<String> keys = nearDuplicateIndex(3).bandKeys(-1L);
+
+        assertEquals(4, keys.size());
+        // Four 16-bit bands of ones
+        keys.forEach(key -> assertTrue(key.endsWith(":ffff"), key));
+        assertEquals(List.of("simhash:band:0:0", "simhash:band:1:0", "simhash:band:2:0", "simhash:band:3:0"),
+                nearDuplicateIndex(3).bandKeys(0L));
+    }
+
+    private static NearDuplicateIndex nearDuplicateIndex(int maxDistance) {
+        NearDuplicateIndex index = new NearDuplicateIndex(null);
+        ReflectionTestUtils.setField(index, "maxDistance", maxDistance);
+        ReflectionTestUtils.setField(index, "keyPrefix", "simhash:");
+        return index;
+    }
+}
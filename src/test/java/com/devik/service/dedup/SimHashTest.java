@@ -0,0 +1,53 @@
+package com.devik.service.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimHashTest {
+
+    private static final String[] VOCABULARY = (
+            "crawler index page search vector query result score shard replica cluster node "
+                    + "document field token phrase match filter range term boost window cache "
+                    + "thread queue batch lane retry backoff timeout socket header body link anchor")
+            .split(" ");
+
+    private static String text(long seed, int words) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append(VOCABULARY[random.nextInt(VOCABULARY.length)]).append(' ');
+        }
+        return text.toString();
+    }
+
+    @Test
+    void identicalTextsIgnoringCaseAndPunctuationHaveTheSameFingerprint() {
+        String text = text(1, 200);
+        SimHash hash = SimHash.of(text);
+
+        assertEquals(0, hash.distance(SimHash.of(text.toUpperCase().replace(" ", ", ")).value()));
+        assertEquals(200, hash.tokens());
+    }
+
+    @Test
+    void pagesDifferingInAFewWordsAreNearDuplicates() {
+        for (long seed = 0; seed < 10; seed++) {
+            String text = text(seed, 2000);
+            // A changed date and a view counter in the footer
+            int distance = SimHash.of(text + " updated 2024 viewed 17 times")
+                    .distance(SimHash.of(text + " updated 2025 viewed 18 times").value());
+            assertTrue(distance <= 3, "seed " + seed + " was " + distance + " bits apart");
+        }
+    }
+
+    @Test
+    void unrelatedPagesDifferInAboutHalfTheBits() {
+        for (long seed = 10; seed < 20; seed++) {
+            int distance = SimHash.of(text(seed, 400)).distance(SimHash.of(text(seed + 100, 400)).value());
+            assertTrue(distance > 12, "seed " + seed + " was " + distance + " bits apart");
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.devik.service.extractor;
+
+import com.devik.service.fetcher.FetchedPage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageExtractorTest {
+
+    private static final String PAGE_URL = "https://www.example.com/articles/2024/page.html";
+
+    static Stream<String> savedPages() throws IOException {
+        Resource[] pages = new PathMatchingResourcePatternResolver().getResources("classpath:pages/*.html");
+        return Arrays.stream(pages).map(Resource::getFilename).sorted();
+    }
+
+    private static FetchedPage load(String name) throws IOException {
+        try (InputStream in = PageExtractorTest.class.getResourceAsStream("/pages/" + name)) {
+            assertNotNull(in, "missing test page " + name);
+            return FetchedPage.builder()
+                    .url(PAGE_URL)
+                    .statusCode(200)
+                    .headers(Map.of())
+                    .body(in.readAllBytes())
+                    // No Content-Type charset, so both extractors have to detect it
+                    .charset(null)
+                    .build();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("savedPages")
+    void streamingExtractionMatchesDom(String name) throws IOException {
+        FetchedPage page = load(name);
+
+        ExtractedPage dom = new DomPageExtractor(0).extract(page);
+        ExtractedPage streaming = new StreamingPageExtractor(0).extract(page);
+
+        assertFalse(dom.content().isEmpty());
+        assertEquals(dom.title(), streaming.title());
+        assertEquals(dom.content(), streaming.content());
+        assertEquals(dom.links(), streaming.links());
+    }
+
+    @ParameterizedTest
+    @MethodSource("savedPages")
+    void textCapGivesTheSamePrefix(String name) throws IOException {
+        FetchedPage page = load(name);
+
+        ExtractedPage dom = new DomPageExtractor(100).extract(page);
+        ExtractedPage streaming = new StreamingPageExtractor(100).extract(page);
+
+        assertEquals(100, streaming.content().length());
+        assertEquals(dom, streaming);
+    }
+
+    @Test
+    void detectsCharsetFromMetaTag() throws IOException {
+        ExtractedPage page = new StreamingPageExtractor(0).extract(load("news-latin1.html"));
+
+        assertEquals("Stadtnachrichten - Überschwemmung in Köln", page.title());
+    }
+
+    @Test
+    void resolvesLinksAgainstBaseElement() throws IOException {
+        ExtractedPage page = new StreamingPageExtractor(0).extract(load("docs-page.html"));
+
+        assertTrue(page.links().contains("https://docs.example.com/v3/guide/install.html"));
+        assertTrue(page.links().contains("https://docs.example.com/v3/api/index.html"));
+    }
+}
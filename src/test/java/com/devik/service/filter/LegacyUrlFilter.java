@@ -0,0 +1,62 @@
+package com.devik.service.filter;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The linear-scan filter that FilteringService used before UrlFilterEngine, kept as a baseline
+ */
+final class LegacyUrlFilter {
+
+    private final List<String> extensions;
+    private final List<String> paths;
+    private final List<String> domains;
+    private final Pattern[] patterns;
+
+    LegacyUrlFilter(UrlFilterRules rules) {
+        this.extensions = rules.getExtensions();
+        this.paths = rules.getPaths();
+        this.domains = rules.getDomains();
+        // The old java.util.regex patterns, equivalent to the default automaton patterns
+        this.patterns = new Pattern[]{
+                Pattern.compile(".*\\?.*&.*&.*&.*&.*"),
+                Pattern.compile(".*/(?:19|20)\\d{2}/(?:0[1-9]|1[0-2])/.*"),
+                Pattern.compile(".*(?:jsessionid|sessionid|sid|session_id)=.*"),
+                Pattern.compile(".*(?:utm_source|utm_medium|utm_campaign|fbclid|gclid)=.*"),
+                Pattern.compile(".*/\\d{10,}.*"),
+                Pattern.compile(".*/page/\\d+/.*"),
+                Pattern.compile(".*/comments/.*")
+        };
+    }
+
+    boolean isBlocked(String url) {
+        String lowerUrl = url.toLowerCase();
+
+        for (String ext : extensions) {
+            if (lowerUrl.endsWith(ext)) {
+                return true;
+            }
+        }
+
+        for (String path : paths) {
+            if (lowerUrl.contains(path.toLowerCase())) {
+                return true;
+            }
+        }
+
+        for (String domain : domains) {
+            if (lowerUrl.matches("https?://(?:www\\.)?" + domain + ".*") ||
+                    lowerUrl.matches("https?://.*\\." + domain + ".*")) {
+                return true;
+            }
+        }
+
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(url).matches()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,56 @@
+package com.devik.service.filter;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the compiled filter engine with the old linear scan.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.mainClass=com.devik.service.filter.UrlFilterBenchmark
+ * -Dexec.classpathScope=test}, or from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlFilterBenchmark {
+
+    private List<String> urls;
+    private LegacyUrlFilter legacy;
+    private UrlFilterEngine engine;
+
+    @Setup
+    public void setUp() {
+        urls = UrlFilterEngineTest.SAMPLE_URLS;
+        legacy = new LegacyUrlFilter(UrlFilterRules.defaults());
+        engine = UrlFilterEngine.compile(UrlFilterRules.defaults());
+    }
+
+    @Benchmark
+    public void legacyLinearScan(Blackhole blackhole) {
+        for (String url : urls) {
+            blackhole.consume(legacy.isBlocked(url));
+        }
+    }
+
+    @Benchmark
+    public void compiledEngine(Blackhole blackhole) {
+        for (String url : urls) {
+            blackhole.consume(engine.isBlocked(url));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(UrlFilterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
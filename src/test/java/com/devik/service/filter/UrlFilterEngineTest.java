@@ -0,0 +1,65 @@
+package com.devik.service.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlFilterEngineTest {
+
+    static final List<String> SAMPLE_URLS = List.of(
+            "https://example.com/blog/how-to-build-a-crawler",
+            "https://docs.example.org/guide/getting-started?lang=en",
+            "https://www.facebook.com/some.page",
+            "https://m.youtube.com/watch?v=abc",
+            "https://analytics.google.com/collect",
+            "https://example.com/files/report.PDF",
+            "https://example.com/assets/app.js",
+            "https://example.com/wp-admin/options.php",
+            "https://example.com/Login/",
+            "https://example.com/2023/05/archive-post",
+            "https://example.com/list?a=1&b=2&c=3&d=4&e=5",
+            "https://example.com/index;jsessionid=ABC123",
+            "https://example.com/product/12345678901",
+            "https://example.com/blog/page/3/",
+            "https://example.com/post/comments/7",
+            "https://news.example.net/world/europe",
+            "https://example.com/about-us",
+            "https://shop.example.com/category/shoes?color=red",
+            "https://example.com/tags/java/",
+            "https://github.com/deviknitkkr/Jemini"
+    );
+
+    private final UrlFilterEngine engine = UrlFilterEngine.compile(UrlFilterRules.defaults());
+
+    @Test
+    void agreesWithLegacyFilterOnSampleUrls() {
+        LegacyUrlFilter legacy = new LegacyUrlFilter(UrlFilterRules.defaults());
+        for (String url : SAMPLE_URLS) {
+            assertEquals(legacy.isBlocked(url), engine.isBlocked(url), url);
+        }
+    }
+
+    @Test
+    void matchesDomainsBySuffixOnly() {
+        assertTrue(engine.isBlocked("https://facebook.com/"));
+        assertTrue(engine.isBlocked("https://user@www.facebook.com:443/page"));
+        assertFalse(engine.isBlocked("https://notfacebook.com/"));
+        assertFalse(engine.isBlocked("https://example.com/share/facebook.com"));
+    }
+
+    @Test
+    void checksExtensionOfLastPathSegment() {
+        assertTrue(engine.isBlocked("https://example.com/report.pdf?download=1"));
+        assertFalse(engine.isBlocked("https://example.com/v1.2/docs"));
+        assertFalse(engine.isBlocked("https://example.com"));
+    }
+
+    @Test
+    void rejectsInvalidPatterns() {
+        UrlFilterRules rules = UrlFilterRules.defaults();
+        rules.setPatterns(List.of("(unclosed"));
+        assertThrows(IllegalArgumentException.class, () -> UrlFilterEngine.compile(rules));
+    }
+}
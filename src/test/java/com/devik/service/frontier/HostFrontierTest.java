@@ -0,0 +1,230 @@
+package com.devik.service.frontier;
+
+import com.devik.model.CrawlRequest;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class HostFrontierTest {
+
+    private static final int SLOW_RESPONSE_MILLIS = 300;
+
+    private HttpServer server;
+    private HostFrontier frontier;
+    private final AtomicInteger concurrentRequests = new AtomicInteger();
+    private final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+    private final Set<String> throttledOnce = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void startStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        if (frontier != null) frontier.shutdown();
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int current = concurrentRequests.incrementAndGet();
+        maxConcurrentRequests.accumulateAndGet(current, Math::max);
+        try {
+            String path = exchange.getRequestURI().toString();
+            if (path.startsWith("/throttled") && throttledOnce.add(path)) {
+                exchange.getResponseHeaders().add("Retry-After", "0");
+                exchange.sendResponseHeaders(429, -1);
+                return;
+            }
+
+            Thread.sleep(SLOW_RESPONSE_MILLIS);
+            byte[] body = "<html><head><title>stub</title></head><body>ok</body></html>".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            concurrentRequests.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private HostFrontier newFrontier(String executor, int fetchConcurrency, int hostConcurrency) {
+        HostFrontier hostFrontier = new HostFrontier();
+        ReflectionTestUtils.setField(hostFrontier, "executorMode", executor);
+        ReflectionTestUtils.setField(hostFrontier, "fetchConcurrency", fetchConcurrency);
+        ReflectionTestUtils.setField(hostFrontier, "maxPending", 10_000);
+        ReflectionTestUtils.setField(hostFrontier, "hostRate", 1000.0);
+        ReflectionTestUtils.setField(hostFrontier, "hostBurst", 1000);
+        ReflectionTestUtils.setField(hostFrontier, "hostConcurrency", hostConcurrency);
+        ReflectionTestUtils.setField(hostFrontier, "hostIdleEvictMillis", 600_000L);
+        ReflectionTestUtils.setField(hostFrontier, "throttleBackoffMillis", 50L);
+        ReflectionTestUtils.setField(hostFrontier, "maxThrottleBackoffMillis", 200L);
+        ReflectionTestUtils.setField(hostFrontier, "maxThrottleRetries", 3);
+        return hostFrontier;
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    private static CrawlRequest request(String url) {
+        CrawlRequest request = new CrawlRequest();
+        request.setUrl(url);
+        request.setDepth(1);
+        return request;
+    }
+
+    private static CrawlOutcome fetch(CrawlRequest request, CountDownLatch done) {
+        try {
+            Connection.Response response = Jsoup.connect(request.getUrl()).ignoreHttpErrors(true).timeout(10_000).execute();
+            if (response.statusCode() == 429) {
+                return CrawlOutcome.throttled(0);
+            }
+            response.parse();
+            done.countDown();
+        } catch (IOException e) {
+            fail("Fetch failed: " + e.getMessage());
+        }
+        return CrawlOutcome.done();
+    }
+
+    @Test
+    void keepsManySlowFetchesInFlightWithinTheCap() throws InterruptedException {
+        assumeTrue(FetchExecutors.virtualThreadsAvailable(), "virtual threads need Java 21+");
+        int urls = 200;
+        int cap = 100;
+        frontier = newFrontier(FetchExecutors.VIRTUAL, cap, 10);
+        CountDownLatch done = new CountDownLatch(urls);
+        frontier.start(request -> fetch(request, done), request -> fail("Gave up on " + request.getUrl()));
+        assertEquals(FetchExecutors.VIRTUAL, frontier.getStats().get("executor"));
+
+        long started = System.nanoTime();
+        for (int i = 0; i < urls; i++) {
+            frontier.submit(request(url("/page/" + i)), "host-" + (i % 20));
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS), "all fetches should complete");
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        // Serially this would take urls * SLOW_RESPONSE_MILLIS = 60s
+        assertTrue(elapsedMillis < urls * SLOW_RESPONSE_MILLIS / 4, "fetches should overlap, took " + elapsedMillis + "ms");
+        assertTrue(maxConcurrentRequests.get() <= cap, "in-flight cap exceeded: " + maxConcurrentRequests.get());
+    }
+
+    @Test
+    void limitsConcurrencyPerHost() throws InterruptedException {
+        int urls = 20;
+        frontier = newFrontier(FetchExecutors.PLATFORM, 50, 2);
+        CountDownLatch done = new CountDownLatch(urls);
+        frontier.start(request -> fetch(request, done), request -> fail("Gave up on " + request.getUrl()));
+
+        for (int i = 0; i < urls; i++) {
+            frontier.submit(request(url("/single/" + i)), "single-host");
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS), "all fetches should complete");
+        assertTrue(maxConcurrentRequests.get() <= 2, "per-host cap exceeded: " + maxConcurrentRequests.get());
+    }
+
+    @Test
+    void delaysThrottledUrlsInsteadOfDroppingThem() throws InterruptedException {
+        frontier = newFrontier(FetchExecutors.PLATFORM, 8, 2);
+        CountDownLatch done = new CountDownLatch(3);
+        frontier.start(request -> fetch(request, done), request -> fail("Gave up on " + request.getUrl()));
+
+        frontier.submit(request(url("/throttled/a")), "throttling-host");
+        frontier.submit(request(url("/throttled/b")), "throttling-host");
+        frontier.submit(request(url("/other")), "other-host");
+
+        assertTrue(done.await(30, TimeUnit.SECONDS), "throttled URLs should be retried");
+        assertEquals(0, frontier.getStats().get("droppedAfterRetries"));
+    }
+
+    @Test
+    void rateLimitsHostsThatGetOneUrlAtATime() throws InterruptedException {
+        frontier = newFrontier(FetchExecutors.PLATFORM, 8, 2);
+        ReflectionTestUtils.setField(frontier, "hostRate", 5.0);
+        ReflectionTestUtils.setField(frontier, "hostBurst", 1);
+        AtomicInteger fetched = new AtomicInteger();
+        frontier.start(request -> {
+            fetched.incrementAndGet();
+            return CrawlOutcome.done();
+        }, request -> fail("Gave up on " + request.getUrl()));
+
+        long started = System.nanoTime();
+        for (int i = 1; i <= 5; i++) {
+            frontier.submit(request(url("/trickle/" + i)), "trickle-host");
+            while (fetched.get() < i) {
+                Thread.sleep(5);
+            }
+        }
+
+        // The host drains after every URL; its bucket must still allow only 5 fetches a second
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        assertTrue(elapsedMillis >= 700, "host should be rate limited, took " + elapsedMillis + "ms");
+    }
+
+    @Test
+    void releasesUrlsItGivesUpOn() throws InterruptedException {
+        frontier = newFrontier(FetchExecutors.PLATFORM, 8, 2);
+        CountDownLatch gaveUp = new CountDownLatch(1);
+        frontier.start(request -> CrawlOutcome.throttled(0), request -> gaveUp.countDown());
+
+        frontier.submit(request(url("/always-throttled")), "throttling-host");
+
+        assertTrue(gaveUp.await(10, TimeUnit.SECONDS), "the give-up callback should run");
+        assertEquals(1, frontier.getStats().get("droppedAfterRetries"));
+    }
+
+    @Test
+    void evictsIdleHosts() throws InterruptedException {
+        frontier = newFrontier(FetchExecutors.PLATFORM, 8, 2);
+        ReflectionTestUtils.setField(frontier, "hostBurst", 1);
+        ReflectionTestUtils.setField(frontier, "hostIdleEvictMillis", 0L);
+        AtomicInteger fetched = new AtomicInteger();
+        frontier.start(request -> {
+            fetched.incrementAndGet();
+            return CrawlOutcome.done();
+        }, request -> fail("Gave up on " + request.getUrl()));
+
+        frontier.submit(request(url("/a")), "host-a");
+        while (fetched.get() < 1) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, frontier.getStats().get("trackedHosts"));
+
+        // Eviction runs at most once a second, when the dispatcher wakes up
+        Thread.sleep(1200);
+        frontier.submit(request(url("/b")), "host-b");
+        while (fetched.get() < 2) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, frontier.getStats().get("trackedHosts"));
+    }
+}